@@ -1,14 +1,21 @@
 package com.example.demo;
 
+import com.example.demo.models.Viewport;
 import com.example.demo.models.Widget;
 import com.example.demo.models.WidgetCreateRequest;
+import com.example.demo.models.WidgetPage;
 import com.example.demo.models.WidgetUpdateRequest;
+import com.example.demo.models.WidgetsByViewports;
+import com.example.demo.models.WidgetsSummary;
+import com.example.demo.widgetstorages.BoundsMode;
 import com.example.demo.widgetstorages.WidgetStorageWithPagingAndFiltering;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.util.ConcurrentModificationException;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @SuppressWarnings("unused")
@@ -31,6 +38,15 @@ public class WidgetsController {
         }
     }
 
+    @PostMapping("/batch")
+    public List<Widget> create(@RequestBody List<WidgetCreateRequest> widgetCreateRequests) {
+        try {
+            return widgetStorage.create(widgetCreateRequests);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST);
+        }
+    }
+
     @GetMapping("/{id}")
     public Widget read(@PathVariable("id") UUID id) {
         Widget widget = widgetStorage.read(id);
@@ -45,14 +61,100 @@ public class WidgetsController {
                              @RequestParam(required = false) Integer leftBound,
                              @RequestParam(required = false) Integer rightBound,
                              @RequestParam(required = false) Integer upperBound,
-                             @RequestParam(required = false) Integer lowerBound) {
+                             @RequestParam(required = false) Integer lowerBound,
+                             @RequestParam(defaultValue = "WITHIN") BoundsMode boundsMode) {
         try {
-            return widgetStorage.read(skip, take, leftBound, rightBound, upperBound, lowerBound);
+            return widgetStorage.read(skip, take, leftBound, rightBound, upperBound, lowerBound, boundsMode);
         } catch (IllegalArgumentException e) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST);
         }
     }
 
+    // widgets with fromZ <= z <= toZ, a missing end leaves the range open on that side
+    @GetMapping("/zrange")
+    public List<Widget> readZRange(@RequestParam(required = false) Integer fromZ,
+                                   @RequestParam(required = false) Integer toZ,
+                                   @RequestParam(required = false) Integer skip,
+                                   @RequestParam(required = false) Integer take) {
+        try {
+            return widgetStorage.readZRange(fromZ != null ? fromZ : Integer.MIN_VALUE, toZ != null ? toZ : Integer.MAX_VALUE, skip, take);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    // several viewports in one request, a widget shown in a few of them comes once; posted only because the viewports are a body
+    @PostMapping("/viewports")
+    public WidgetsByViewports readViewports(@RequestBody List<Viewport> viewports,
+                                            @RequestParam(defaultValue = "WITHIN") BoundsMode boundsMode) {
+        try {
+            return widgetStorage.readViewports(viewports, boundsMode);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    @GetMapping("/count")
+    public int count(@RequestParam(required = false) Integer leftBound,
+                     @RequestParam(required = false) Integer rightBound,
+                     @RequestParam(required = false) Integer upperBound,
+                     @RequestParam(required = false) Integer lowerBound,
+                     @RequestParam(defaultValue = "WITHIN") BoundsMode boundsMode) {
+        try {
+            return widgetStorage.count(leftBound, rightBound, upperBound, lowerBound, boundsMode);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    @GetMapping("/summary")
+    public WidgetsSummary summarize() {
+        return widgetStorage.summarize();
+    }
+
+    // the topmost widget at the point
+    @GetMapping("/at")
+    public Widget readAt(@RequestParam int x, @RequestParam int y) {
+        Widget widget = widgetStorage.readAt(x, y);
+        if (widget == null)
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        return widget;
+    }
+
+    // nearest widgets to either a point or the widget with the id, which itself is not counted
+    @GetMapping("/nearest")
+    public List<Widget> readNearest(@RequestParam(required = false) Integer x,
+                                    @RequestParam(required = false) Integer y,
+                                    @RequestParam(required = false) UUID id,
+                                    @RequestParam(required = false) Integer k) {
+        try {
+            if (id == null && x != null && y != null)
+                return widgetStorage.readNearest(x, y, k);
+            if (id == null || x != null || y != null)
+                throw new IllegalArgumentException();
+            List<Widget> widgets = widgetStorage.readNearest(id, k);
+            if (widgets == null)
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+            return widgets;
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    // pages in z order by a cursor: the nextCursor of a page gives the next one, a pinned scan fails with 409 once the widgets change
+    @GetMapping("/page")
+    public WidgetPage readPage(@RequestParam(required = false) String cursor,
+                               @RequestParam(required = false) Integer take,
+                               @RequestParam(defaultValue = "false") boolean pin) {
+        try {
+            return widgetStorage.readPage(cursor, take, pin);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST);
+        } catch (ConcurrentModificationException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT);
+        }
+    }
+
     @PatchMapping("/{id}")
     public Widget update(@PathVariable("id") UUID id, @RequestBody WidgetUpdateRequest widgetUpdateRequest) {
         try {
@@ -65,11 +167,43 @@ public class WidgetsController {
         }
     }
 
+    @PatchMapping("/batch")
+    public List<Widget> update(@RequestBody Map<UUID, WidgetUpdateRequest> widgetUpdateRequests) {
+        try {
+            List<Widget> widgets = widgetStorage.update(widgetUpdateRequests);
+            if (widgets == null)
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+            return widgets;
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST);
+        }
+    }
+
     @DeleteMapping("/{id}")
     public void delete(@PathVariable("id") UUID id) {
         Widget widget = widgetStorage.delete(id);
         if (widget == null)
             throw new ResponseStatusException(HttpStatus.NOT_FOUND);
     }
+
+    // either ids or all four bounds
+    @DeleteMapping
+    public List<Widget> delete(@RequestParam(required = false) List<UUID> ids,
+                               @RequestParam(required = false) Integer leftBound,
+                               @RequestParam(required = false) Integer rightBound,
+                               @RequestParam(required = false) Integer upperBound,
+                               @RequestParam(required = false) Integer lowerBound) {
+        boolean useBounds = leftBound != null && rightBound != null && upperBound != null && lowerBound != null;
+        boolean anyBound = leftBound != null || rightBound != null || upperBound != null || lowerBound != null;
+        try {
+            if (ids != null && !anyBound)
+                return widgetStorage.delete(ids);
+            if (ids == null && useBounds)
+                return widgetStorage.delete(leftBound, rightBound, upperBound, lowerBound);
+            throw new IllegalArgumentException();
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST);
+        }
+    }
 }
 
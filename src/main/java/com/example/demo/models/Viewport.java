@@ -0,0 +1,40 @@
+package com.example.demo.models;
+
+public class Viewport {
+    private int leftBound;
+    private int rightBound;
+    private int upperBound;
+    private int lowerBound;
+
+    public int getLeftBound() {
+        return leftBound;
+    }
+
+    public void setLeftBound(int leftBound) {
+        this.leftBound = leftBound;
+    }
+
+    public int getRightBound() {
+        return rightBound;
+    }
+
+    public void setRightBound(int rightBound) {
+        this.rightBound = rightBound;
+    }
+
+    public int getUpperBound() {
+        return upperBound;
+    }
+
+    public void setUpperBound(int upperBound) {
+        this.upperBound = upperBound;
+    }
+
+    public int getLowerBound() {
+        return lowerBound;
+    }
+
+    public void setLowerBound(int lowerBound) {
+        this.lowerBound = lowerBound;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.demo.models;
+
+import java.util.List;
+
+// widgets of one page in z order and the cursor of the next page, which is null after the last one
+public class WidgetPage {
+    private final List<Widget> widgets;
+    private final String nextCursor;
+
+    public WidgetPage(List<Widget> widgets, String nextCursor) {
+        this.widgets = widgets;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Widget> getWidgets() {
+        return widgets;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
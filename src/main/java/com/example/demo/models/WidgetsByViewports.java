@@ -0,0 +1,22 @@
+package com.example.demo.models;
+
+import java.util.List;
+
+// every widget found is here once, in z order; a viewport is the positions of its widgets in that list, ascending
+public class WidgetsByViewports {
+    private final List<Widget> widgets;
+    private final List<int[]> viewports;
+
+    public WidgetsByViewports(List<Widget> widgets, List<int[]> viewports) {
+        this.widgets = widgets;
+        this.viewports = viewports;
+    }
+
+    public List<Widget> getWidgets() {
+        return widgets;
+    }
+
+    public List<int[]> getViewports() {
+        return viewports;
+    }
+}
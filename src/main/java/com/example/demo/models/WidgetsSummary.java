@@ -0,0 +1,50 @@
+package com.example.demo.models;
+
+// the bounds and the z range are null when there are no widgets
+public class WidgetsSummary {
+    private final int count;
+    private final Integer leftBound;
+    private final Integer rightBound;
+    private final Integer upperBound;
+    private final Integer lowerBound;
+    private final Integer minZ;
+    private final Integer maxZ;
+
+    public WidgetsSummary(int count, Integer leftBound, Integer rightBound, Integer upperBound, Integer lowerBound, Integer minZ, Integer maxZ) {
+        this.count = count;
+        this.leftBound = leftBound;
+        this.rightBound = rightBound;
+        this.upperBound = upperBound;
+        this.lowerBound = lowerBound;
+        this.minZ = minZ;
+        this.maxZ = maxZ;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public Integer getLeftBound() {
+        return leftBound;
+    }
+
+    public Integer getRightBound() {
+        return rightBound;
+    }
+
+    public Integer getUpperBound() {
+        return upperBound;
+    }
+
+    public Integer getLowerBound() {
+        return lowerBound;
+    }
+
+    public Integer getMinZ() {
+        return minZ;
+    }
+
+    public Integer getMaxZ() {
+        return maxZ;
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.demo.widgetstorages;
+
+import java.util.Collection;
+
+public enum BoundsMode {
+    // widgets lying entirely inside the bounds
+    WITHIN,
+    // widgets having at least a point inside the bounds, bounds included, like everything a viewport shows a part of
+    INTERSECTING;
+
+    Collection<StoredWidget> find(SpatialIndex spatialIndex, int leftBound, int rightBound, int upperBound, int lowerBound) {
+        return this == WITHIN
+                ? spatialIndex.within(leftBound, rightBound, upperBound, lowerBound)
+                : spatialIndex.intersecting(leftBound, rightBound, upperBound, lowerBound);
+    }
+
+    int count(SpatialIndex spatialIndex, int leftBound, int rightBound, int upperBound, int lowerBound) {
+        return this == WITHIN
+                ? spatialIndex.countWithin(leftBound, rightBound, upperBound, lowerBound)
+                : spatialIndex.countIntersecting(leftBound, rightBound, upperBound, lowerBound);
+    }
+
+    boolean matches(StoredWidget widget, int leftBound, int rightBound, int upperBound, int lowerBound) {
+        return this == WITHIN
+                ? widget.isWithin(leftBound, rightBound, upperBound, lowerBound)
+                : widget.intersects(leftBound, rightBound, upperBound, lowerBound);
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.demo.widgetstorages;
+
+import com.example.demo.models.Widget;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.UUID;
+
+// keeps every widget field in its own primitive array (column) indexed by the widget's slot, so a widget costs no objects at all
+// and filtering scans a few int arrays sequentially; Widget objects are made only when they are returned;
+// slots of deleted widgets are reused, a free slot has width 0 (a stored widget never has)
+public class ColumnarWidgetStorage extends SlotWidgetStorage {
+    private final UuidIndex slotsById;
+    private long[] idMostSignificantBits;
+    private long[] idLeastSignificantBits;
+    private int[] xs;
+    private int[] ys;
+    private int[] zs;
+    private int[] widths;
+    private int[] heights;
+    private int[] leftBounds;
+    private int[] rightBounds;
+    private int[] upperBounds;
+    private int[] lowerBounds;
+    private long[] lastModifiedNanos; // since the epoch
+    private int slotCount; // slots ever used, the ones below it are either stored or free
+    private int[] freeSlots;
+    private int freeSlotCount;
+
+    public ColumnarWidgetStorage() {
+        this(MIN_CAPACITY);
+    }
+
+    public ColumnarWidgetStorage(int initialCapacity) {
+        super(initialCapacity);
+        int capacity = Math.max(initialCapacity, MIN_CAPACITY);
+        this.slotsById = new UuidIndex(capacity);
+        this.idMostSignificantBits = new long[capacity];
+        this.idLeastSignificantBits = new long[capacity];
+        this.xs = new int[capacity];
+        this.ys = new int[capacity];
+        this.zs = new int[capacity];
+        this.widths = new int[capacity];
+        this.heights = new int[capacity];
+        this.leftBounds = new int[capacity];
+        this.rightBounds = new int[capacity];
+        this.upperBounds = new int[capacity];
+        this.lowerBounds = new int[capacity];
+        this.lastModifiedNanos = new long[capacity];
+        this.freeSlots = new int[MIN_CAPACITY];
+    }
+
+    @Override
+    Widget toWidget(int slot, ZoneId zone) {
+        return new Widget(new UUID(idMostSignificantBits[slot], idLeastSignificantBits[slot]), xs[slot], ys[slot], zs[slot], widths[slot], heights[slot],
+                ZonedDateTime.ofInstant(Instant.ofEpochSecond(0, lastModifiedNanos[slot]), zone));
+    }
+
+    @Override
+    int allocate(UUID id) {
+        int slot;
+        if (freeSlotCount > 0) {
+            slot = freeSlots[--freeSlotCount];
+        } else {
+            if (slotCount == xs.length)
+                grow();
+            slot = slotCount++;
+        }
+        idMostSignificantBits[slot] = id.getMostSignificantBits();
+        idLeastSignificantBits[slot] = id.getLeastSignificantBits();
+        slotsById.put(id, slot);
+        return slot;
+    }
+
+    @Override
+    int find(UUID id) {
+        int slot = slotsById.get(id);
+        return slot == UuidIndex.NOT_FOUND ? NO_SLOT : slot;
+    }
+
+    @Override
+    void free(UUID id, int slot) {
+        slotsById.remove(id);
+        widths[slot] = 0;
+        if (freeSlotCount == freeSlots.length)
+            freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+        freeSlots[freeSlotCount++] = slot;
+    }
+
+    @Override
+    void setGeometry(int slot, int x, int y, int width, int height) {
+        xs[slot] = x;
+        ys[slot] = y;
+        widths[slot] = width;
+        heights[slot] = height;
+        leftBounds[slot] = x - width / 2;
+        rightBounds[slot] = x + width / 2;
+        upperBounds[slot] = y + height / 2;
+        lowerBounds[slot] = y - height / 2;
+    }
+
+    @Override
+    int getX(int slot) {
+        return xs[slot];
+    }
+
+    @Override
+    int getY(int slot) {
+        return ys[slot];
+    }
+
+    @Override
+    int getWidth(int slot) {
+        return widths[slot];
+    }
+
+    @Override
+    int getHeight(int slot) {
+        return heights[slot];
+    }
+
+    @Override
+    int getZ(int slot) {
+        return zs[slot];
+    }
+
+    @Override
+    void setZ(int slot, int z) {
+        zs[slot] = z;
+    }
+
+    @Override
+    long getLastModifiedNanos(int slot) {
+        return lastModifiedNanos[slot];
+    }
+
+    @Override
+    void setLastModifiedNanos(int slot, long lastModifiedNanos) {
+        this.lastModifiedNanos[slot] = lastModifiedNanos;
+    }
+
+    @Override
+    boolean isWithin(int slot, int leftBound, int rightBound, int upperBound, int lowerBound) {
+        return ((long) leftBounds[slot] - leftBound | (long) rightBound - rightBounds[slot] | (long) upperBound - upperBounds[slot] | (long) lowerBounds[slot] - lowerBound) >= 0;
+    }
+
+    // scans the bound columns slot by slot
+    @Override
+    void scanWithin(int leftBound, int rightBound, int upperBound, int lowerBound, Matches matches) {
+        int[] leftBounds = this.leftBounds, rightBounds = this.rightBounds, upperBounds = this.upperBounds, lowerBounds = this.lowerBounds;
+        for (int slot = 0; slot < slotCount; slot++) {
+            // all four differences are non-negative only inside the bounds; one well-predicted branch instead of four random ones
+            if (((long) leftBounds[slot] - leftBound | (long) rightBound - rightBounds[slot] | (long) upperBound - upperBounds[slot] | (long) lowerBounds[slot] - lowerBound) >= 0
+                    && widths[slot] != 0)
+                matches.add(slot, zs[slot]);
+        }
+    }
+
+    private void grow() {
+        int capacity = xs.length * 2;
+        idMostSignificantBits = Arrays.copyOf(idMostSignificantBits, capacity);
+        idLeastSignificantBits = Arrays.copyOf(idLeastSignificantBits, capacity);
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+        zs = Arrays.copyOf(zs, capacity);
+        widths = Arrays.copyOf(widths, capacity);
+        heights = Arrays.copyOf(heights, capacity);
+        leftBounds = Arrays.copyOf(leftBounds, capacity);
+        rightBounds = Arrays.copyOf(rightBounds, capacity);
+        upperBounds = Arrays.copyOf(upperBounds, capacity);
+        lowerBounds = Arrays.copyOf(lowerBounds, capacity);
+        lastModifiedNanos = Arrays.copyOf(lastModifiedNanos, capacity);
+    }
+}
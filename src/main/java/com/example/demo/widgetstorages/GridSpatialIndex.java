@@ -0,0 +1,142 @@
+package com.example.demo.widgetstorages;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+
+// uniform grid hashed by cell; a widget is kept only in the cell of its lower left corner,
+// which is enough to answer "lies entirely inside" queries; intersecting widgets are also looked for in the cells as far to the lower left
+// of the bounds as the biggest widget reaches
+public class GridSpatialIndex implements SpatialIndex {
+    private static final int DEFAULT_CELL_SIZE = 512;
+
+    private final HashMap<Long, List<StoredWidget>> cells;
+    private final int cellSize;
+    private int maxWidth; // of all the widgets ever put, never shrinks
+    private int maxHeight;
+
+    public GridSpatialIndex() {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    public GridSpatialIndex(int cellSize) {
+        if (cellSize <= 0)
+            throw new IllegalArgumentException("cellSize can not be less or equal to zero");
+        this.cells = new HashMap<>();
+        this.cellSize = cellSize;
+    }
+
+    private static long key(int column, int row) {
+        return ((long) column << 32) | (row & 0xFFFFFFFFL);
+    }
+
+    private static boolean isWithin(StoredWidget widget, int leftBound, int rightBound, int upperBound, int lowerBound) {
+        return leftBound <= widget.getLeftBound() && widget.getRightBound() <= rightBound
+                && widget.getUpperBound() <= upperBound && lowerBound <= widget.getLowerBound();
+    }
+
+    @Override
+    public void put(StoredWidget widget) {
+        extendMaxSize(widget);
+        put(cellOf(widget.getLeftBound(), widget.getLowerBound()), widget);
+    }
+
+    @Override
+    public void remove(StoredWidget widget) {
+        remove(cellOf(widget.getLeftBound(), widget.getLowerBound()), widget);
+    }
+
+    @Override
+    public void update(StoredWidget widget, int oldLeftBound, int oldRightBound, int oldUpperBound, int oldLowerBound) {
+        long oldCell = cellOf(oldLeftBound, oldLowerBound);
+        long newCell = cellOf(widget.getLeftBound(), widget.getLowerBound());
+        extendMaxSize(widget);
+        if (oldCell != newCell) {
+            remove(oldCell, widget);
+            put(newCell, widget);
+        }
+    }
+
+    @Override
+    public Collection<StoredWidget> within(int leftBound, int rightBound, int upperBound, int lowerBound) {
+        ArrayList<StoredWidget> result = new ArrayList<>();
+        int fromColumn = Math.floorDiv(leftBound, cellSize);
+        int toColumn = Math.floorDiv(rightBound, cellSize);
+        int fromRow = Math.floorDiv(lowerBound, cellSize);
+        int toRow = Math.floorDiv(upperBound, cellSize);
+        long cellsCovered = ((long) toColumn - fromColumn + 1) * ((long) toRow - fromRow + 1);
+        if (cellsCovered > cells.size()) { // huge viewport over a sparse board, cheaper to look through occupied cells only
+            for (List<StoredWidget> cell : cells.values())
+                collect(cell, leftBound, rightBound, upperBound, lowerBound, result);
+        } else {
+            for (int column = fromColumn; column <= toColumn; column++) {
+                for (int row = fromRow; row <= toRow; row++) {
+                    List<StoredWidget> cell = cells.get(key(column, row));
+                    if (cell != null)
+                        collect(cell, leftBound, rightBound, upperBound, lowerBound, result);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Collection<StoredWidget> intersecting(int leftBound, int rightBound, int upperBound, int lowerBound) {
+        ArrayList<StoredWidget> result = new ArrayList<>();
+        int fromColumn = (int) Math.floorDiv(Math.max((long) leftBound - maxWidth, Integer.MIN_VALUE), cellSize);
+        int toColumn = Math.floorDiv(rightBound, cellSize);
+        int fromRow = (int) Math.floorDiv(Math.max((long) lowerBound - maxHeight, Integer.MIN_VALUE), cellSize);
+        int toRow = Math.floorDiv(upperBound, cellSize);
+        long cellsCovered = ((long) toColumn - fromColumn + 1) * ((long) toRow - fromRow + 1);
+        if (cellsCovered > cells.size()) {
+            for (List<StoredWidget> cell : cells.values())
+                collectIntersecting(cell, leftBound, rightBound, upperBound, lowerBound, result);
+        } else {
+            for (int column = fromColumn; column <= toColumn; column++) {
+                for (int row = fromRow; row <= toRow; row++) {
+                    List<StoredWidget> cell = cells.get(key(column, row));
+                    if (cell != null)
+                        collectIntersecting(cell, leftBound, rightBound, upperBound, lowerBound, result);
+                }
+            }
+        }
+        return result;
+    }
+
+    private void collectIntersecting(List<StoredWidget> cell, int leftBound, int rightBound, int upperBound, int lowerBound, List<StoredWidget> result) {
+        for (StoredWidget widget : cell) {
+            if (widget.intersects(leftBound, rightBound, upperBound, lowerBound))
+                result.add(widget);
+        }
+    }
+
+    private void extendMaxSize(StoredWidget widget) {
+        maxWidth = (int) Math.min(Math.max(maxWidth, (long) widget.getRightBound() - widget.getLeftBound()), Integer.MAX_VALUE);
+        maxHeight = (int) Math.min(Math.max(maxHeight, (long) widget.getUpperBound() - widget.getLowerBound()), Integer.MAX_VALUE);
+    }
+
+    private void collect(List<StoredWidget> cell, int leftBound, int rightBound, int upperBound, int lowerBound, List<StoredWidget> result) {
+        for (StoredWidget widget : cell) {
+            if (isWithin(widget, leftBound, rightBound, upperBound, lowerBound))
+                result.add(widget);
+        }
+    }
+
+    private long cellOf(int x, int y) {
+        return key(Math.floorDiv(x, cellSize), Math.floorDiv(y, cellSize));
+    }
+
+    private void put(long cell, StoredWidget widget) {
+        cells.computeIfAbsent(cell, key -> new ArrayList<>()).add(widget);
+    }
+
+    private void remove(long cell, StoredWidget widget) {
+        List<StoredWidget> widgets = cells.get(cell);
+        if (widgets != null) {
+            widgets.remove(widget);
+            if (widgets.isEmpty())
+                cells.remove(cell);
+        }
+    }
+}
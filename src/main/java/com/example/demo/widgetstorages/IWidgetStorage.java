@@ -4,17 +4,46 @@ import com.example.demo.models.Widget;
 import com.example.demo.models.WidgetCreateRequest;
 import com.example.demo.models.WidgetUpdateRequest;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 public interface IWidgetStorage {
     Widget create(WidgetCreateRequest widgetCreateRequest);
 
+    // creates the widgets in the given order and returns them as they are after the last one is created;
+    // the default one creates them one by one, so a rejected request leaves the ones before it created
+    default List<Widget> create(List<WidgetCreateRequest> widgetCreateRequests) {
+        List<UUID> ids = widgetCreateRequests.stream().map(widgetCreateRequest -> create(widgetCreateRequest).getId()).collect(Collectors.toList());
+        return ids.stream().map(this::read).collect(Collectors.toUnmodifiableList());
+    }
+
     Widget read(UUID id);
 
     List<Widget> read();
 
+    // widgets with fromZ <= z <= toZ in z order, found without looking at the widgets outside of the range;
+    // skip and take page them like in read, take can't be greater than 500
+    List<Widget> readZRange(int fromZ, int toZ, Integer skip, Integer take);
+
     Widget update(UUID id, WidgetUpdateRequest widgetUpdateRequest);
 
+    // updates the widgets in the iteration order of the map and returns them in the same order as they are after the last update,
+    // or null if some of them don't exist; the default one updates them one by one, so a rejected request leaves the ones before it updated
+    default List<Widget> update(Map<UUID, WidgetUpdateRequest> widgetUpdateRequests) {
+        if (!widgetUpdateRequests.keySet().stream().allMatch(id -> read(id) != null))
+            return null;
+        widgetUpdateRequests.forEach(this::update);
+        return widgetUpdateRequests.keySet().stream().map(this::read).collect(Collectors.toUnmodifiableList());
+    }
+
     Widget delete(UUID id);
+
+    // unknown ids are skipped; the default one deletes the widgets one by one and returns them in the order of the ids
+    default List<Widget> delete(Collection<UUID> ids) {
+        return ids.stream().distinct().map(this::delete).filter(Objects::nonNull).collect(Collectors.toUnmodifiableList());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,425 @@
+package com.example.demo.widgetstorages;
+
+import java.util.*;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
+
+// sorted multimap from an int key (one of the bounds) to widgets: a B+tree whose nodes hold sorted int arrays of keys
+// next to arrays of widgets, so nothing is boxed and there is no map per distinct key; widgets with the same key are ordered by id,
+// which makes every entry unique and lets it be found in log time; leaves also keep the slot each widget has been put with,
+// so a key range can be turned into a SlotBitmap without touching the widgets; not thread-safe
+public class IntMultiTreeMap {
+    private static final int MAX_SIZE = 64; // entries of a leaf or children of an inner node
+    private static final int MIN_SIZE = MAX_SIZE / 2;
+
+    private final ToIntFunction<StoredWidget> keyExtractor;
+    private Node root;
+    private int size;
+
+    // the separator pushed up by the last split
+    private int splitKey;
+    private StoredWidget splitWidget;
+
+    public IntMultiTreeMap(ToIntFunction<StoredWidget> keyExtractor) {
+        this.keyExtractor = keyExtractor;
+        this.root = new Leaf();
+    }
+
+    private abstract static class Node {
+        final int[] keys;
+        final StoredWidget[] widgets;
+        int size;
+
+        Node(int capacity) {
+            keys = new int[capacity];
+            widgets = new StoredWidget[capacity];
+        }
+    }
+
+    // entries are kept in keys, widgets and slots
+    private static class Leaf extends Node {
+        final int[] slots = new int[MAX_SIZE + 1];
+        Leaf next;
+
+        Leaf() {
+            super(MAX_SIZE + 1); // one more to insert before splitting
+        }
+    }
+
+    // size is the number of children, keys and widgets hold size - 1 separators: the separator i is the first entry under the child i + 1
+    private static class Inner extends Node {
+        final Node[] children = new Node[MAX_SIZE + 1];
+
+        Inner() {
+            super(MAX_SIZE);
+        }
+    }
+
+    private static int compare(int key, StoredWidget widget, int otherKey, StoredWidget otherWidget) {
+        if (key != otherKey)
+            return Integer.compare(key, otherKey);
+        return widget.getId().compareTo(otherWidget.getId());
+    }
+
+    // index of the entry in the leaf or -(insertion point) - 1
+    private static int indexOf(Leaf leaf, int key, StoredWidget widget) {
+        int low = 0;
+        int high = leaf.size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compare(leaf.keys[middle], leaf.widgets[middle], key, widget);
+            if (comparison < 0)
+                low = middle + 1;
+            else if (comparison > 0)
+                high = middle - 1;
+            else
+                return middle;
+        }
+        return -(low + 1);
+    }
+
+    // the child which may hold the entry: the number of separators not greater than it
+    private static int childIndexOf(Inner inner, int key, StoredWidget widget) {
+        int low = 0;
+        int high = inner.size - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(inner.keys[middle], inner.widgets[middle], key, widget) <= 0)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    // the child which may hold the first entry with the key not less than the bound
+    private static int childIndexOf(Inner inner, int bound) {
+        int low = 0;
+        int high = inner.size - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (inner.keys[middle] < bound)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // the slot is a small non-negative number the caller gives the widget, see addRangeTo
+    public void put(StoredWidget widget, int slot) {
+        int key = keyExtractor.applyAsInt(widget);
+        Node sibling = put(root, key, widget, slot);
+        if (sibling != null) {
+            Inner newRoot = new Inner();
+            newRoot.children[0] = root;
+            newRoot.children[1] = sibling;
+            newRoot.keys[0] = splitKey;
+            newRoot.widgets[0] = splitWidget;
+            newRoot.size = 2;
+            root = newRoot;
+        }
+        splitWidget = null;
+    }
+
+    // returns the new right sibling if the node has been split
+    private Node put(Node node, int key, StoredWidget widget, int slot) {
+        if (node instanceof Leaf) {
+            Leaf leaf = (Leaf) node;
+            int index = indexOf(leaf, key, widget);
+            if (index >= 0) {
+                leaf.widgets[index] = widget;
+                leaf.slots[index] = slot;
+                return null;
+            }
+            index = -index - 1;
+            insert(leaf, index, key, widget, slot);
+            size++;
+            return leaf.size > MAX_SIZE ? split(leaf) : null;
+        }
+        Inner inner = (Inner) node;
+        int index = childIndexOf(inner, key, widget);
+        Node sibling = put(inner.children[index], key, widget, slot);
+        if (sibling == null)
+            return null;
+        insert(inner, index, splitKey, splitWidget);
+        System.arraycopy(inner.children, index + 1, inner.children, index + 2, inner.size - index - 2);
+        inner.children[index + 1] = sibling;
+        return inner.size > MAX_SIZE ? split(inner) : null;
+    }
+
+    private static void insert(Node node, int index, int key, StoredWidget widget) {
+        int entries = node instanceof Leaf ? node.size : node.size - 1;
+        System.arraycopy(node.keys, index, node.keys, index + 1, entries - index);
+        System.arraycopy(node.widgets, index, node.widgets, index + 1, entries - index);
+        node.keys[index] = key;
+        node.widgets[index] = widget;
+        node.size++;
+    }
+
+    private static void insert(Leaf leaf, int index, int key, StoredWidget widget, int slot) {
+        System.arraycopy(leaf.slots, index, leaf.slots, index + 1, leaf.size - index);
+        leaf.slots[index] = slot;
+        insert(leaf, index, key, widget);
+    }
+
+    private Leaf split(Leaf leaf) {
+        Leaf right = new Leaf();
+        int half = leaf.size / 2;
+        right.size = leaf.size - half;
+        System.arraycopy(leaf.keys, half, right.keys, 0, right.size);
+        System.arraycopy(leaf.widgets, half, right.widgets, 0, right.size);
+        System.arraycopy(leaf.slots, half, right.slots, 0, right.size);
+        Arrays.fill(leaf.widgets, half, leaf.size, null);
+        leaf.size = half;
+        right.next = leaf.next;
+        leaf.next = right;
+        splitKey = right.keys[0];
+        splitWidget = right.widgets[0];
+        return right;
+    }
+
+    private Inner split(Inner inner) {
+        Inner right = new Inner();
+        int half = inner.size / 2;
+        right.size = inner.size - half;
+        System.arraycopy(inner.children, half, right.children, 0, right.size);
+        System.arraycopy(inner.keys, half, right.keys, 0, right.size - 1);
+        System.arraycopy(inner.widgets, half, right.widgets, 0, right.size - 1);
+        splitKey = inner.keys[half - 1];
+        splitWidget = inner.widgets[half - 1];
+        Arrays.fill(inner.children, half, inner.size, null);
+        Arrays.fill(inner.widgets, half - 1, inner.size - 1, null);
+        inner.size = half;
+        return right;
+    }
+
+    // the key is the one the widget has been put with, it may have changed since then
+    public StoredWidget remove(int key, StoredWidget widget) {
+        StoredWidget removedWidget = remove(root, key, widget);
+        if (root instanceof Inner && root.size == 1)
+            root = ((Inner) root).children[0];
+        return removedWidget;
+    }
+
+    private StoredWidget remove(Node node, int key, StoredWidget widget) {
+        if (node instanceof Leaf) {
+            Leaf leaf = (Leaf) node;
+            int index = indexOf(leaf, key, widget);
+            if (index < 0)
+                return null;
+            StoredWidget removedWidget = leaf.widgets[index];
+            removeEntry(leaf, index);
+            size--;
+            return removedWidget;
+        }
+        Inner inner = (Inner) node;
+        int index = childIndexOf(inner, key, widget);
+        StoredWidget removedWidget = remove(inner.children[index], key, widget);
+        if (removedWidget != null && inner.children[index].size < MIN_SIZE)
+            rebalance(inner, index);
+        return removedWidget;
+    }
+
+    private static void removeEntry(Node node, int index, int entries) {
+        System.arraycopy(node.keys, index + 1, node.keys, index, entries - index - 1);
+        System.arraycopy(node.widgets, index + 1, node.widgets, index, entries - index - 1);
+        node.widgets[entries - 1] = null;
+    }
+
+    private static void removeEntry(Leaf leaf, int index) {
+        System.arraycopy(leaf.slots, index + 1, leaf.slots, index, leaf.size - index - 1);
+        removeEntry(leaf, index, leaf.size);
+        leaf.size--;
+    }
+
+    // the child has too few entries: it is merged with a sibling or takes one entry from it
+    private static void rebalance(Inner parent, int index) {
+        int separator = index > 0 ? index - 1 : index;
+        Node left = parent.children[separator];
+        Node right = parent.children[separator + 1];
+        if (left.size + right.size <= MAX_SIZE) {
+            if (left instanceof Leaf)
+                mergeLeaves((Leaf) left, (Leaf) right);
+            else
+                mergeInners((Inner) left, (Inner) right, parent.keys[separator], parent.widgets[separator]);
+            removeEntry(parent, separator, parent.size - 1);
+            System.arraycopy(parent.children, separator + 2, parent.children, separator + 1, parent.size - separator - 2);
+            parent.children[--parent.size] = null;
+        } else if (left instanceof Leaf) {
+            moveBetweenLeaves(parent, separator, (Leaf) left, (Leaf) right);
+        } else {
+            moveBetweenInners(parent, separator, (Inner) left, (Inner) right);
+        }
+    }
+
+    private static void mergeLeaves(Leaf left, Leaf right) {
+        System.arraycopy(right.keys, 0, left.keys, left.size, right.size);
+        System.arraycopy(right.widgets, 0, left.widgets, left.size, right.size);
+        System.arraycopy(right.slots, 0, left.slots, left.size, right.size);
+        left.size += right.size;
+        left.next = right.next;
+    }
+
+    private static void mergeInners(Inner left, Inner right, int separatorKey, StoredWidget separatorWidget) {
+        left.keys[left.size - 1] = separatorKey;
+        left.widgets[left.size - 1] = separatorWidget;
+        System.arraycopy(right.keys, 0, left.keys, left.size, right.size - 1);
+        System.arraycopy(right.widgets, 0, left.widgets, left.size, right.size - 1);
+        System.arraycopy(right.children, 0, left.children, left.size, right.size);
+        left.size += right.size;
+    }
+
+    private static void moveBetweenLeaves(Inner parent, int separator, Leaf left, Leaf right) {
+        if (left.size > right.size) {
+            insert(right, 0, left.keys[left.size - 1], left.widgets[left.size - 1], left.slots[left.size - 1]);
+            left.widgets[--left.size] = null;
+        } else {
+            insert(left, left.size, right.keys[0], right.widgets[0], right.slots[0]);
+            removeEntry(right, 0);
+        }
+        parent.keys[separator] = right.keys[0];
+        parent.widgets[separator] = right.widgets[0];
+    }
+
+    // the separator of the parent goes down and the outermost separator of the bigger sibling goes up
+    private static void moveBetweenInners(Inner parent, int separator, Inner left, Inner right) {
+        if (left.size > right.size) {
+            insert(right, 0, parent.keys[separator], parent.widgets[separator]);
+            System.arraycopy(right.children, 0, right.children, 1, right.size - 1);
+            right.children[0] = left.children[left.size - 1];
+            left.children[left.size - 1] = null;
+            parent.keys[separator] = left.keys[left.size - 2];
+            parent.widgets[separator] = left.widgets[left.size - 2];
+            left.widgets[left.size - 2] = null;
+            left.size--;
+        } else {
+            left.keys[left.size - 1] = parent.keys[separator];
+            left.widgets[left.size - 1] = parent.widgets[separator];
+            left.children[left.size++] = right.children[0];
+            parent.keys[separator] = right.keys[0];
+            parent.widgets[separator] = right.widgets[0];
+            removeEntry(right, 0, right.size - 1);
+            System.arraycopy(right.children, 1, right.children, 0, right.size - 1);
+            right.children[--right.size] = null;
+        }
+    }
+
+    public boolean contains(StoredWidget widget) {
+        int key = keyExtractor.applyAsInt(widget);
+        Node node = root;
+        while (node instanceof Inner)
+            node = ((Inner) node).children[childIndexOf((Inner) node, key, widget)];
+        return indexOf((Leaf) node, key, widget) >= 0;
+    }
+
+    // the key is compared first, so widgets out of the range don't cost a lookup
+    public Stream<StoredWidget> filterHeadFor(Stream<StoredWidget> widgets, int bound) {
+        return widgets.filter(widget -> keyExtractor.applyAsInt(widget) <= bound && contains(widget));
+    }
+
+    public Stream<StoredWidget> filterTailFor(Stream<StoredWidget> widgets, int bound) {
+        return widgets.filter(widget -> keyExtractor.applyAsInt(widget) >= bound && contains(widget));
+    }
+
+    @SuppressWarnings("unused")
+    public Collection<StoredWidget> unwrappedHead(int bound) {
+        return new Range(Integer.MIN_VALUE, bound);
+    }
+
+    // a view walking the leaves, nothing is copied
+    public Collection<StoredWidget> unwrappedTail(int bound) {
+        return new Range(bound, Integer.MAX_VALUE);
+    }
+
+    // adds slots of the widgets with keys in [minKey, maxKey], reading only the leaf arrays
+    public void addRangeTo(SlotBitmap bitmap, int minKey, int maxKey) {
+        Leaf leaf = leafOf(minKey);
+        int index = 0;
+        while (index < leaf.size && leaf.keys[index] < minKey)
+            index++;
+        for (; leaf != null; leaf = leaf.next, index = 0) {
+            int[] keys = leaf.keys;
+            int[] slots = leaf.slots;
+            int size = leaf.size;
+            for (; index < size; index++) {
+                if (keys[index] > maxKey)
+                    return;
+                bitmap.add(slots[index]);
+            }
+        }
+    }
+
+    // the leaf which may hold the first entry with the key not less than the bound
+    private Leaf leafOf(int bound) {
+        Node node = root;
+        while (node instanceof Inner)
+            node = ((Inner) node).children[childIndexOf((Inner) node, bound)];
+        return (Leaf) node;
+    }
+
+    // widgets with keys in [minKey, maxKey] in key order; size() walks the range
+    private class Range extends AbstractCollection<StoredWidget> {
+        private final int minKey;
+        private final int maxKey;
+
+        Range(int minKey, int maxKey) {
+            this.minKey = minKey;
+            this.maxKey = maxKey;
+        }
+
+        @Override
+        public Iterator<StoredWidget> iterator() {
+            Leaf leaf = leafOf(minKey);
+            int index = 0;
+            while (index < leaf.size && leaf.keys[index] < minKey)
+                index++;
+            return new RangeIterator(leaf, index, maxKey);
+        }
+
+        @Override
+        public int size() {
+            int size = 0;
+            for (Iterator<StoredWidget> iterator = iterator(); iterator.hasNext(); iterator.next())
+                size++;
+            return size;
+        }
+
+        @Override
+        public Spliterator<StoredWidget> spliterator() {
+            return Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED | Spliterator.NONNULL);
+        }
+    }
+
+    private static class RangeIterator implements Iterator<StoredWidget> {
+        private Leaf leaf;
+        private int index;
+        private final int maxKey;
+
+        RangeIterator(Leaf leaf, int index, int maxKey) {
+            this.leaf = leaf;
+            this.index = index;
+            this.maxKey = maxKey;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (leaf != null && index >= leaf.size) {
+                leaf = leaf.next;
+                index = 0;
+            }
+            return leaf != null && leaf.keys[index] <= maxKey;
+        }
+
+        @Override
+        public StoredWidget next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return leaf.widgets[index++];
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.demo.widgetstorages;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+// loose quadtree over the whole int plane: every node accepts widgets sticking out of it by half of its size,
+// so a widget goes down by its center and size only and never has to be split between nodes
+public class LooseQuadTreeSpatialIndex implements SpatialIndex {
+    private static final int MAX_DEPTH = 24; // the smallest node is 256 x 256
+
+    private final Node root;
+
+    public LooseQuadTreeSpatialIndex() {
+        root = new Node(Integer.MIN_VALUE, Integer.MIN_VALUE, 1L << 32);
+    }
+
+    @Override
+    public void put(StoredWidget widget) {
+        int leftBound = widget.getLeftBound();
+        int rightBound = widget.getRightBound();
+        int upperBound = widget.getUpperBound();
+        int lowerBound = widget.getLowerBound();
+        Node node = root;
+        for (int depth = 0; depth < MAX_DEPTH; depth++) {
+            int quadrant = node.quadrantOf(leftBound, rightBound, upperBound, lowerBound);
+            Node child = node.children[quadrant];
+            if (child == null) {
+                child = node.createChild(quadrant);
+                if (!child.looselyContains(leftBound, rightBound, upperBound, lowerBound))
+                    break;
+                node.children[quadrant] = child;
+            } else if (!child.looselyContains(leftBound, rightBound, upperBound, lowerBound)) {
+                break;
+            }
+            node = child;
+        }
+        if (node.widgets == null)
+            node.widgets = new ArrayList<>();
+        node.widgets.add(widget);
+    }
+
+    @Override
+    public void remove(StoredWidget widget) {
+        remove(root, 0, widget, widget.getLeftBound(), widget.getRightBound(), widget.getUpperBound(), widget.getLowerBound());
+    }
+
+    @Override
+    public void update(StoredWidget widget, int oldLeftBound, int oldRightBound, int oldUpperBound, int oldLowerBound) {
+        if (remove(root, 0, widget, oldLeftBound, oldRightBound, oldUpperBound, oldLowerBound) != Removal.NOT_FOUND)
+            put(widget);
+    }
+
+    @Override
+    public Collection<StoredWidget> within(int leftBound, int rightBound, int upperBound, int lowerBound) {
+        ArrayList<StoredWidget> result = new ArrayList<>();
+        within(root, leftBound, rightBound, upperBound, lowerBound, result);
+        return result;
+    }
+
+    private void within(Node node, int leftBound, int rightBound, int upperBound, int lowerBound, List<StoredWidget> result) {
+        if (node != root) {
+            if (!node.looselyIntersects(leftBound, rightBound, upperBound, lowerBound))
+                return;
+            if (node.looselyWithin(leftBound, rightBound, upperBound, lowerBound)) {
+                collect(node, result);
+                return;
+            }
+        }
+        if (node.widgets != null) {
+            for (StoredWidget widget : node.widgets) {
+                if (leftBound <= widget.getLeftBound() && widget.getRightBound() <= rightBound
+                        && widget.getUpperBound() <= upperBound && lowerBound <= widget.getLowerBound())
+                    result.add(widget);
+            }
+        }
+        for (Node child : node.children) {
+            if (child != null)
+                within(child, leftBound, rightBound, upperBound, lowerBound, result);
+        }
+    }
+
+    @Override
+    public Collection<StoredWidget> intersecting(int leftBound, int rightBound, int upperBound, int lowerBound) {
+        ArrayList<StoredWidget> result = new ArrayList<>();
+        intersecting(root, leftBound, rightBound, upperBound, lowerBound, result);
+        return result;
+    }
+
+    // a widget intersecting the bounds lies in a node whose loose bounds intersect them too
+    private void intersecting(Node node, int leftBound, int rightBound, int upperBound, int lowerBound, List<StoredWidget> result) {
+        if (node != root) {
+            if (!node.looselyIntersects(leftBound, rightBound, upperBound, lowerBound))
+                return;
+            if (node.looselyWithin(leftBound, rightBound, upperBound, lowerBound)) {
+                collect(node, result);
+                return;
+            }
+        }
+        if (node.widgets != null) {
+            for (StoredWidget widget : node.widgets) {
+                if (widget.intersects(leftBound, rightBound, upperBound, lowerBound))
+                    result.add(widget);
+            }
+        }
+        for (Node child : node.children) {
+            if (child != null)
+                intersecting(child, leftBound, rightBound, upperBound, lowerBound, result);
+        }
+    }
+
+    private void collect(Node node, List<StoredWidget> result) {
+        if (node.widgets != null)
+            result.addAll(node.widgets);
+        for (Node child : node.children) {
+            if (child != null)
+                collect(child, result);
+        }
+    }
+
+    // follows the same path put took for these bounds, dropping nodes left without widgets on the way back
+    private Removal remove(Node node, int depth, StoredWidget widget, int leftBound, int rightBound, int upperBound, int lowerBound) {
+        Removal removal = Removal.NOT_FOUND;
+        int quadrant = node.quadrantOf(leftBound, rightBound, upperBound, lowerBound);
+        Node child = node.children[quadrant];
+        if (depth < MAX_DEPTH && child != null && child.looselyContains(leftBound, rightBound, upperBound, lowerBound)) {
+            removal = remove(child, depth + 1, widget, leftBound, rightBound, upperBound, lowerBound);
+            if (removal == Removal.REMOVED_AND_EMPTY) {
+                node.children[quadrant] = null;
+                removal = Removal.REMOVED;
+            }
+        } else if (node.widgets != null && node.widgets.remove(widget)) {
+            if (node.widgets.isEmpty())
+                node.widgets = null;
+            removal = Removal.REMOVED;
+        }
+        if (removal != Removal.NOT_FOUND && node.isEmpty())
+            return Removal.REMOVED_AND_EMPTY;
+        return removal;
+    }
+
+    private enum Removal {
+        NOT_FOUND,
+        REMOVED,
+        REMOVED_AND_EMPTY
+    }
+
+    private static final class Node {
+        private final long minX;
+        private final long minY;
+        private final long size;
+        private final Node[] children = new Node[4];
+        private List<StoredWidget> widgets;
+
+        private Node(long minX, long minY, long size) {
+            this.minX = minX;
+            this.minY = minY;
+            this.size = size;
+        }
+
+        private int quadrantOf(int leftBound, int rightBound, int upperBound, int lowerBound) {
+            long centerX = ((long) leftBound + rightBound) >> 1;
+            long centerY = ((long) lowerBound + upperBound) >> 1;
+            long half = size >> 1;
+            return (centerX >= minX + half ? 1 : 0) | (centerY >= minY + half ? 2 : 0);
+        }
+
+        private Node createChild(int quadrant) {
+            long half = size >> 1;
+            return new Node(minX + ((quadrant & 1) == 0 ? 0 : half), minY + ((quadrant & 2) == 0 ? 0 : half), half);
+        }
+
+        private long looseMinX() {
+            return minX - (size >> 1);
+        }
+
+        private long looseMaxX() {
+            return minX + size + (size >> 1);
+        }
+
+        private long looseMinY() {
+            return minY - (size >> 1);
+        }
+
+        private long looseMaxY() {
+            return minY + size + (size >> 1);
+        }
+
+        private boolean looselyContains(int leftBound, int rightBound, int upperBound, int lowerBound) {
+            return looseMinX() <= leftBound && rightBound <= looseMaxX() && looseMinY() <= lowerBound && upperBound <= looseMaxY();
+        }
+
+        private boolean looselyIntersects(int leftBound, int rightBound, int upperBound, int lowerBound) {
+            return looseMinX() <= rightBound && leftBound <= looseMaxX() && looseMinY() <= upperBound && lowerBound <= looseMaxY();
+        }
+
+        private boolean looselyWithin(int leftBound, int rightBound, int upperBound, int lowerBound) {
+            return leftBound <= looseMinX() && looseMaxX() <= rightBound && lowerBound <= looseMinY() && looseMaxY() <= upperBound;
+        }
+
+        private boolean isEmpty() {
+            return widgets == null && children[0] == null && children[1] == null && children[2] == null && children[3] == null;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.demo.widgetstorages;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+
+public class MultiTreeMapSpatialIndex implements SpatialIndex {
+    private final IntMultiTreeMap widgetsSortedByLeftBound;
+    private final IntMultiTreeMap widgetsSortedByRightBound;
+    private final IntMultiTreeMap widgetsSortedByUpperBound;
+    private final IntMultiTreeMap widgetsSortedByLowerBound;
+    // every widget gets a slot, so each bound can give a SlotBitmap of its range and a query is an intersection of four of them
+    private final UuidIndex slotsById;
+    private StoredWidget[] widgetsBySlot;
+    private int[] freeSlots;
+    private int freeSlotCount;
+    private int slotCount;
+
+    public MultiTreeMapSpatialIndex() {
+        this.widgetsSortedByLeftBound = new IntMultiTreeMap(StoredWidget::getLeftBound);
+        this.widgetsSortedByRightBound = new IntMultiTreeMap(StoredWidget::getRightBound);
+        this.widgetsSortedByUpperBound = new IntMultiTreeMap(StoredWidget::getUpperBound);
+        this.widgetsSortedByLowerBound = new IntMultiTreeMap(StoredWidget::getLowerBound);
+        this.slotsById = new UuidIndex();
+        this.widgetsBySlot = new StoredWidget[16];
+        this.freeSlots = new int[16];
+    }
+
+    @Override
+    public void put(StoredWidget widget) {
+        int slot = slotsById.get(widget.getId());
+        if (slot == UuidIndex.NOT_FOUND) {
+            slot = allocateSlot();
+            slotsById.put(widget.getId(), slot);
+        }
+        widgetsBySlot[slot] = widget;
+        widgetsSortedByLeftBound.put(widget, slot);
+        widgetsSortedByRightBound.put(widget, slot);
+        widgetsSortedByUpperBound.put(widget, slot);
+        widgetsSortedByLowerBound.put(widget, slot);
+    }
+
+    private int allocateSlot() {
+        if (freeSlotCount > 0)
+            return freeSlots[--freeSlotCount];
+        if (slotCount == widgetsBySlot.length)
+            widgetsBySlot = Arrays.copyOf(widgetsBySlot, slotCount * 2);
+        return slotCount++;
+    }
+
+    @Override
+    public void remove(StoredWidget widget) {
+        int slot = slotsById.remove(widget.getId());
+        if (slot == UuidIndex.NOT_FOUND)
+            return;
+        widgetsBySlot[slot] = null;
+        if (freeSlotCount == freeSlots.length)
+            freeSlots = Arrays.copyOf(freeSlots, freeSlotCount * 2);
+        freeSlots[freeSlotCount++] = slot;
+        widgetsSortedByLeftBound.remove(widget.getLeftBound(), widget);
+        widgetsSortedByRightBound.remove(widget.getRightBound(), widget);
+        widgetsSortedByUpperBound.remove(widget.getUpperBound(), widget);
+        widgetsSortedByLowerBound.remove(widget.getLowerBound(), widget);
+    }
+
+    @Override
+    public void update(StoredWidget widget, int oldLeftBound, int oldRightBound, int oldUpperBound, int oldLowerBound) {
+        int slot = slotsById.get(widget.getId());
+        if (widget.getLeftBound() != oldLeftBound && widgetsSortedByLeftBound.remove(oldLeftBound, widget) != null)
+            widgetsSortedByLeftBound.put(widget, slot);
+        if (widget.getRightBound() != oldRightBound && widgetsSortedByRightBound.remove(oldRightBound, widget) != null)
+            widgetsSortedByRightBound.put(widget, slot);
+        if (widget.getUpperBound() != oldUpperBound && widgetsSortedByUpperBound.remove(oldUpperBound, widget) != null)
+            widgetsSortedByUpperBound.put(widget, slot);
+        if (widget.getLowerBound() != oldLowerBound && widgetsSortedByLowerBound.remove(oldLowerBound, widget) != null)
+            widgetsSortedByLowerBound.put(widget, slot);
+    }
+
+    @Override
+    public Collection<StoredWidget> within(int leftBound, int rightBound, int upperBound, int lowerBound) {
+        SlotBitmap widgetsFilteredByBounds = new SlotBitmap(slotCount);
+        SlotBitmap widgetsInRange = new SlotBitmap(slotCount);
+        widgetsSortedByLeftBound.addRangeTo(widgetsFilteredByBounds, leftBound, Integer.MAX_VALUE);
+        intersect(widgetsFilteredByBounds, widgetsInRange, widgetsSortedByRightBound, Integer.MIN_VALUE, rightBound);
+        intersect(widgetsFilteredByBounds, widgetsInRange, widgetsSortedByUpperBound, Integer.MIN_VALUE, upperBound);
+        intersect(widgetsFilteredByBounds, widgetsInRange, widgetsSortedByLowerBound, lowerBound, Integer.MAX_VALUE);
+        ArrayList<StoredWidget> widgets = new ArrayList<>(widgetsFilteredByBounds.cardinality());
+        widgetsFilteredByBounds.forEach(slot -> widgets.add(widgetsBySlot[slot]));
+        return widgets;
+    }
+
+    @Override
+    public Collection<StoredWidget> intersecting(int leftBound, int rightBound, int upperBound, int lowerBound) {
+        SlotBitmap widgetsIntersecting = new SlotBitmap(slotCount);
+        SlotBitmap widgetsInRange = new SlotBitmap(slotCount);
+        widgetsSortedByLeftBound.addRangeTo(widgetsIntersecting, Integer.MIN_VALUE, rightBound);
+        intersect(widgetsIntersecting, widgetsInRange, widgetsSortedByRightBound, leftBound, Integer.MAX_VALUE);
+        intersect(widgetsIntersecting, widgetsInRange, widgetsSortedByUpperBound, lowerBound, Integer.MAX_VALUE);
+        intersect(widgetsIntersecting, widgetsInRange, widgetsSortedByLowerBound, Integer.MIN_VALUE, upperBound);
+        ArrayList<StoredWidget> widgets = new ArrayList<>(widgetsIntersecting.cardinality());
+        widgetsIntersecting.forEach(slot -> widgets.add(widgetsBySlot[slot]));
+        return widgets;
+    }
+
+    private static void intersect(SlotBitmap widgetsFiltered, SlotBitmap widgetsInRange, IntMultiTreeMap widgetsSortedByBound, int minKey, int maxKey) {
+        if (widgetsFiltered.isEmpty())
+            return;
+        widgetsInRange.clear();
+        widgetsSortedByBound.addRangeTo(widgetsInRange, minKey, maxKey);
+        widgetsFiltered.and(widgetsInRange);
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.demo.widgetstorages;
+
+import com.example.demo.models.Widget;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+// keeps widget records and the id hash table in direct buffers outside of the heap, so the GC neither copies nor traces them;
+// Widget objects are made only when they are returned; the z order is a plain int array of slots, it has no references for the GC to trace;
+// the memory is given back when the storage is collected, its size is limited by -XX:MaxDirectMemorySize
+public class OffHeapWidgetStorage extends SlotWidgetStorage {
+    // record layout, 64 bytes so a record never spans two cache lines
+    private static final int RECORD_SIZE = 64;
+    private static final int ID_MOST_SIGNIFICANT_BITS = 0;
+    private static final int ID_LEAST_SIGNIFICANT_BITS = 8;
+    private static final int LAST_MODIFIED_NANOS = 16;
+    private static final int X = 24;
+    private static final int Y = 28;
+    private static final int Z = 32;
+    private static final int WIDTH = 36; // 0 marks a free record, its X then holds the next free slot
+    private static final int HEIGHT = 40;
+    private static final int LEFT_BOUND = 44;
+    private static final int RIGHT_BOUND = 48;
+    private static final int UPPER_BOUND = 52;
+    private static final int LOWER_BOUND = 56;
+
+    private static final int CHUNK_SHIFT = 14; // records are allocated 16 384 at a time (1 MB)
+    private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+
+    private final List<ByteBuffer> chunks;
+    private int slotCount;
+    private int freeSlot;
+    // open-addressing table of slot + 1 (0 is an empty cell, a new direct buffer is zeroed), ids are compared in the records
+    private ByteBuffer table;
+    private int tableMask;
+    private volatile long allocatedBytes;
+
+    public OffHeapWidgetStorage() {
+        super(MIN_CAPACITY);
+        this.chunks = new ArrayList<>();
+        this.freeSlot = NO_SLOT;
+        this.table = allocateDirect(MIN_CAPACITY * 4);
+        this.tableMask = MIN_CAPACITY - 1;
+    }
+
+    // direct memory taken by the records and the id table; it never shrinks, records of deleted widgets are reused
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    private ByteBuffer allocateDirect(int bytes) {
+        allocatedBytes += bytes;
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+
+    private ByteBuffer chunk(int slot) {
+        return chunks.get(slot >>> CHUNK_SHIFT);
+    }
+
+    private static int offset(int slot) {
+        return (slot & CHUNK_MASK) * RECORD_SIZE;
+    }
+
+    private int getInt(int slot, int field) {
+        return chunk(slot).getInt(offset(slot) + field);
+    }
+
+    private void putInt(int slot, int field, int value) {
+        chunk(slot).putInt(offset(slot) + field, value);
+    }
+
+    @Override
+    Widget toWidget(int slot, ZoneId zone) {
+        ByteBuffer chunk = chunk(slot);
+        int offset = offset(slot);
+        return new Widget(
+                new UUID(chunk.getLong(offset + ID_MOST_SIGNIFICANT_BITS), chunk.getLong(offset + ID_LEAST_SIGNIFICANT_BITS)),
+                chunk.getInt(offset + X),
+                chunk.getInt(offset + Y),
+                chunk.getInt(offset + Z),
+                chunk.getInt(offset + WIDTH),
+                chunk.getInt(offset + HEIGHT),
+                ZonedDateTime.ofInstant(Instant.ofEpochSecond(0, chunk.getLong(offset + LAST_MODIFIED_NANOS)), zone));
+    }
+
+    @Override
+    int allocate(UUID id) {
+        int slot;
+        if (freeSlot != NO_SLOT) {
+            slot = freeSlot;
+            freeSlot = getInt(slot, X);
+        } else {
+            if (slotCount == chunks.size() << CHUNK_SHIFT)
+                chunks.add(allocateDirect((CHUNK_MASK + 1) * RECORD_SIZE));
+            slot = slotCount++;
+        }
+        ByteBuffer chunk = chunk(slot);
+        int offset = offset(slot);
+        chunk.putLong(offset + ID_MOST_SIGNIFICANT_BITS, id.getMostSignificantBits());
+        chunk.putLong(offset + ID_LEAST_SIGNIFICANT_BITS, id.getLeastSignificantBits());
+        putInTable(slot);
+        return slot;
+    }
+
+    @Override
+    void free(UUID id, int slot) {
+        removeFromTable(slot);
+        putInt(slot, WIDTH, 0);
+        putInt(slot, X, freeSlot);
+        freeSlot = slot;
+    }
+
+    @Override
+    int getX(int slot) {
+        return getInt(slot, X);
+    }
+
+    @Override
+    int getY(int slot) {
+        return getInt(slot, Y);
+    }
+
+    @Override
+    int getWidth(int slot) {
+        return getInt(slot, WIDTH);
+    }
+
+    @Override
+    int getHeight(int slot) {
+        return getInt(slot, HEIGHT);
+    }
+
+    @Override
+    int getZ(int slot) {
+        return getInt(slot, Z);
+    }
+
+    @Override
+    void setZ(int slot, int z) {
+        putInt(slot, Z, z);
+    }
+
+    @Override
+    long getLastModifiedNanos(int slot) {
+        return chunk(slot).getLong(offset(slot) + LAST_MODIFIED_NANOS);
+    }
+
+    @Override
+    void setLastModifiedNanos(int slot, long lastModifiedNanos) {
+        chunk(slot).putLong(offset(slot) + LAST_MODIFIED_NANOS, lastModifiedNanos);
+    }
+
+    @Override
+    boolean isWithin(int slot, int leftBound, int rightBound, int upperBound, int lowerBound) {
+        ByteBuffer chunk = chunk(slot);
+        int offset = offset(slot);
+        return ((long) chunk.getInt(offset + LEFT_BOUND) - leftBound | (long) rightBound - chunk.getInt(offset + RIGHT_BOUND)
+                | (long) upperBound - chunk.getInt(offset + UPPER_BOUND) | (long) chunk.getInt(offset + LOWER_BOUND) - lowerBound) >= 0;
+    }
+
+    // scans the records chunk by chunk
+    @Override
+    void scanWithin(int leftBound, int rightBound, int upperBound, int lowerBound, Matches matches) {
+        for (int chunkIndex = 0; chunkIndex < chunks.size(); chunkIndex++) {
+            ByteBuffer chunk = chunks.get(chunkIndex);
+            int firstSlot = chunkIndex << CHUNK_SHIFT;
+            int slotsInChunk = Math.min(CHUNK_MASK + 1, slotCount - firstSlot);
+            for (int i = 0, offset = 0; i < slotsInChunk; i++, offset += RECORD_SIZE) {
+                // all four differences are non-negative only inside the bounds; one well-predicted branch instead of four random ones
+                if (((long) chunk.getInt(offset + LEFT_BOUND) - leftBound | (long) rightBound - chunk.getInt(offset + RIGHT_BOUND)
+                        | (long) upperBound - chunk.getInt(offset + UPPER_BOUND) | (long) chunk.getInt(offset + LOWER_BOUND) - lowerBound) >= 0
+                        && chunk.getInt(offset + WIDTH) != 0)
+                    matches.add(firstSlot + i, chunk.getInt(offset + Z));
+            }
+        }
+    }
+
+    @Override
+    void setGeometry(int slot, int x, int y, int width, int height) {
+        ByteBuffer chunk = chunk(slot);
+        int offset = offset(slot);
+        chunk.putInt(offset + X, x);
+        chunk.putInt(offset + Y, y);
+        chunk.putInt(offset + WIDTH, width);
+        chunk.putInt(offset + HEIGHT, height);
+        chunk.putInt(offset + LEFT_BOUND, x - width / 2);
+        chunk.putInt(offset + RIGHT_BOUND, x + width / 2);
+        chunk.putInt(offset + UPPER_BOUND, y + height / 2);
+        chunk.putInt(offset + LOWER_BOUND, y - height / 2);
+    }
+
+    private int hash(int slot) {
+        ByteBuffer chunk = chunk(slot);
+        int offset = offset(slot);
+        return UuidTable.hash(chunk.getLong(offset + ID_MOST_SIGNIFICANT_BITS), chunk.getLong(offset + ID_LEAST_SIGNIFICANT_BITS));
+    }
+
+    @Override
+    int find(UUID id) {
+        long mostSignificantBits = id.getMostSignificantBits();
+        long leastSignificantBits = id.getLeastSignificantBits();
+        for (int cell = UuidTable.hash(mostSignificantBits, leastSignificantBits) & tableMask; ; cell = (cell + 1) & tableMask) {
+            int slot = table.getInt(cell * 4) - 1;
+            if (slot == NO_SLOT)
+                return NO_SLOT;
+            ByteBuffer chunk = chunk(slot);
+            int offset = offset(slot);
+            if (chunk.getLong(offset + ID_MOST_SIGNIFICANT_BITS) == mostSignificantBits && chunk.getLong(offset + ID_LEAST_SIGNIFICANT_BITS) == leastSignificantBits)
+                return slot;
+        }
+    }
+
+    // the table is kept at most half full, every probe compares an id in a record, so short runs matter more than the table size
+    private void putInTable(int slot) {
+        if ((size() + 1) * 2L > tableMask + 1)
+            growTable();
+        int cell = hash(slot) & tableMask;
+        while (table.getInt(cell * 4) != 0)
+            cell = (cell + 1) & tableMask;
+        table.putInt(cell * 4, slot + 1);
+    }
+
+    private void removeFromTable(int slot) {
+        int cell = hash(slot) & tableMask;
+        while (table.getInt(cell * 4) != slot + 1)
+            cell = (cell + 1) & tableMask;
+        // every following entry of the run that could live in the freed cell is moved there, so probing never stops early
+        for (int next = (cell + 1) & tableMask; table.getInt(next * 4) != 0; next = (next + 1) & tableMask) {
+            int home = hash(table.getInt(next * 4) - 1) & tableMask;
+            if (((next - home) & tableMask) >= ((next - cell) & tableMask)) {
+                table.putInt(cell * 4, table.getInt(next * 4));
+                cell = next;
+            }
+        }
+        table.putInt(cell * 4, 0);
+    }
+
+    private void growTable() {
+        ByteBuffer oldTable = table;
+        int oldCapacity = tableMask + 1;
+        table = allocateDirect(oldCapacity * 2 * 4);
+        allocatedBytes -= oldCapacity * 4; // the old table is given back once it is collected
+        tableMask = oldCapacity * 2 - 1;
+        for (int i = 0; i < oldCapacity; i++) {
+            int entry = oldTable.getInt(i * 4);
+            if (entry == 0)
+                continue;
+            int cell = hash(entry - 1) & tableMask;
+            while (table.getInt(cell * 4) != 0)
+                cell = (cell + 1) & tableMask;
+            table.putInt(cell * 4, entry);
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.example.demo.widgetstorages;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// treap where every node knows the size of its subtree, so finding an element by its position is as cheap as finding it by value;
+// elements are allowed to change in place as long as their relative order doesn't change
+public class OrderStatisticTree<E> extends AbstractCollection<E> {
+    private final Comparator<? super E> comparator;
+    private Node<E> root;
+
+    @SuppressWarnings("unchecked")
+    public OrderStatisticTree() {
+        this((Comparator<? super E>) Comparator.naturalOrder());
+    }
+
+    public OrderStatisticTree(Comparator<? super E> comparator) {
+        this.comparator = comparator;
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    @Override
+    public boolean add(E element) {
+        root = insert(root, element);
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object element) {
+        @SuppressWarnings("unchecked")
+        E key = (E) element;
+        int sizeBefore = size();
+        root = delete(root, key);
+        return size() != sizeBefore;
+    }
+
+    // an empty tree is built at once in O(n log n) instead of n separate insertions
+    @Override
+    public boolean addAll(Collection<? extends E> elements) {
+        if (root != null || elements.isEmpty())
+            return super.addAll(elements);
+        ArrayList<E> sortedElements = new ArrayList<>(elements);
+        sortedElements.sort(comparator);
+        root = build(sortedElements);
+        return true;
+    }
+
+    // removing k elements one by one costs O(k log n), rebuilding the tree out of the rest costs O(n)
+    @Override
+    public boolean removeAll(Collection<?> elements) {
+        if (elements.size() * 16L < size()) {
+            boolean changed = false;
+            for (Object element : elements)
+                changed |= remove(element);
+            return changed;
+        }
+        HashSet<?> elementsToRemove = new HashSet<>(elements);
+        ArrayList<E> rest = new ArrayList<>(size());
+        for (E element : this) {
+            if (!elementsToRemove.contains(element))
+                rest.add(element);
+        }
+        if (rest.size() == size())
+            return false;
+        root = build(rest);
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+    }
+
+    public E first() {
+        if (root == null)
+            throw new NoSuchElementException();
+        Node<E> node = root;
+        while (node.left != null)
+            node = node.left;
+        return node.element;
+    }
+
+    public E last() {
+        if (root == null)
+            throw new NoSuchElementException();
+        Node<E> node = root;
+        while (node.right != null)
+            node = node.right;
+        return node.element;
+    }
+
+    public E get(int index) {
+        if (index < 0 || index >= size())
+            throw new IndexOutOfBoundsException();
+        Node<E> node = root;
+        for (; ; ) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node.element;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    // number of elements less than the given one, which is its position if it is in the tree
+    public int indexOf(E element) {
+        int index = 0;
+        Node<E> node = root;
+        while (node != null) {
+            int comparison = comparator.compare(element, node.element);
+            if (comparison <= 0) {
+                node = node.left;
+            } else {
+                index += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return index;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return iterator(0);
+    }
+
+    public Iterator<E> iterator(int fromIndex) {
+        TreeIterator<E> iterator = new TreeIterator<>();
+        Node<E> node = root;
+        while (node != null) {
+            int leftSize = size(node.left);
+            if (fromIndex < leftSize) {
+                iterator.path.push(node);
+                node = node.left;
+            } else if (fromIndex == leftSize) {
+                iterator.path.push(node);
+                break;
+            } else {
+                fromIndex -= leftSize + 1;
+                node = node.right;
+            }
+        }
+        return iterator;
+    }
+
+    // iterates over elements greater or equal to the given one
+    public Iterator<E> tailIterator(E fromElement) {
+        TreeIterator<E> iterator = new TreeIterator<>();
+        Node<E> node = root;
+        while (node != null) {
+            if (comparator.compare(node.element, fromElement) >= 0) {
+                iterator.path.push(node);
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return iterator;
+    }
+
+    public Stream<E> stream(int fromIndex) {
+        return StreamSupport.stream(Spliterators.spliterator(iterator(fromIndex), Math.max(size() - fromIndex, 0),
+                Spliterator.ORDERED | Spliterator.SIZED | Spliterator.NONNULL), false);
+    }
+
+    // builds the treap out of sorted elements in O(n), keeping the right spine of the tree on a stack
+    private static <E> Node<E> build(List<E> sortedElements) {
+        ArrayDeque<Node<E>> rightSpine = new ArrayDeque<>();
+        for (E element : sortedElements) {
+            Node<E> node = new Node<>(element);
+            Node<E> lastPopped = null;
+            while (!rightSpine.isEmpty() && rightSpine.peek().priority < node.priority)
+                lastPopped = rightSpine.pop();
+            node.left = lastPopped;
+            if (!rightSpine.isEmpty())
+                rightSpine.peek().right = node;
+            rightSpine.push(node);
+        }
+        Node<E> root = rightSpine.peekLast();
+        updateSizes(root);
+        return root;
+    }
+
+    private static int updateSizes(Node<?> node) {
+        if (node == null)
+            return 0;
+        node.size = 1 + updateSizes(node.left) + updateSizes(node.right);
+        return node.size;
+    }
+
+    private Node<E> insert(Node<E> node, E element) {
+        if (node == null)
+            return new Node<>(element);
+        if (comparator.compare(element, node.element) < 0) {
+            node.left = insert(node.left, element);
+            if (node.left.priority > node.priority)
+                node = rotateRight(node);
+        } else {
+            node.right = insert(node.right, element);
+            if (node.right.priority > node.priority)
+                node = rotateLeft(node);
+        }
+        node.updateSize();
+        return node;
+    }
+
+    private Node<E> delete(Node<E> node, E element) {
+        if (node == null)
+            return null;
+        int comparison = comparator.compare(element, node.element);
+        if (comparison < 0) {
+            node.left = delete(node.left, element);
+        } else if (comparison > 0) {
+            node.right = delete(node.right, element);
+        } else {
+            return merge(node.left, node.right);
+        }
+        node.updateSize();
+        return node;
+    }
+
+    private Node<E> merge(Node<E> left, Node<E> right) {
+        if (left == null)
+            return right;
+        if (right == null)
+            return left;
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            left.updateSize();
+            return left;
+        } else {
+            right.left = merge(left, right.left);
+            right.updateSize();
+            return right;
+        }
+    }
+
+    private Node<E> rotateRight(Node<E> node) {
+        Node<E> left = node.left;
+        node.left = left.right;
+        left.right = node;
+        node.updateSize();
+        return left;
+    }
+
+    private Node<E> rotateLeft(Node<E> node) {
+        Node<E> right = node.right;
+        node.right = right.left;
+        right.left = node;
+        node.updateSize();
+        return right;
+    }
+
+    private static final class Node<E> {
+        private final E element;
+        private final int priority;
+        private Node<E> left;
+        private Node<E> right;
+        private int size;
+
+        private Node(E element) {
+            this.element = element;
+            this.priority = ThreadLocalRandom.current().nextInt();
+            this.size = 1;
+        }
+
+        private void updateSize() {
+            size = 1 + OrderStatisticTree.size(left) + OrderStatisticTree.size(right);
+        }
+    }
+
+    private static final class TreeIterator<E> implements Iterator<E> {
+        private final ArrayDeque<Node<E>> path = new ArrayDeque<>();
+
+        @Override
+        public boolean hasNext() {
+            return !path.isEmpty();
+        }
+
+        @Override
+        public E next() {
+            if (path.isEmpty())
+                throw new NoSuchElementException();
+            Node<E> node = path.pop();
+            for (Node<E> next = node.right; next != null; next = next.left)
+                path.push(next);
+            return node.element;
+        }
+    }
+}
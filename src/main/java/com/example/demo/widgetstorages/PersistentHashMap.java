@@ -0,0 +1,224 @@
+package com.example.demo.widgetstorages;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+// hash array mapped trie: put and remove return a new map which shares all untouched nodes with the old one,
+// so the old map stays valid and can be read without any synchronization
+public final class PersistentHashMap<K, V> {
+    private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(BitmapNode.EMPTY, 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentHashMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> empty() {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    private static int hash(Object key) {
+        int hash = Objects.hashCode(key);
+        return hash ^ (hash >>> 16);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(K key) {
+        return (V) root.get(key, hash(key), 0);
+    }
+
+    public PersistentHashMap<K, V> put(K key, V value) {
+        boolean[] added = new boolean[1];
+        Node newRoot = root.put(key, value, hash(key), 0, added);
+        if (newRoot == root)
+            return this;
+        return new PersistentHashMap<>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    public PersistentHashMap<K, V> remove(K key) {
+        Node newRoot = root.remove(key, hash(key), 0);
+        if (newRoot == root)
+            return this;
+        return newRoot == null ? empty() : new PersistentHashMap<>(newRoot, size - 1);
+    }
+
+    private interface Node {
+        Object get(Object key, int hash, int shift);
+
+        Node put(Object key, Object value, int hash, int shift, boolean[] added);
+
+        // null if the node became empty
+        Node remove(Object key, int hash, int shift);
+    }
+
+    // up to 32 slots selected by 5 bits of the hash, a slot holds either a key and its value or null and a child node
+    private static final class BitmapNode implements Node {
+        private static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        private final int bitmap;
+        private final Object[] array;
+
+        private BitmapNode(int bitmap, Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        private static int bit(int hash, int shift) {
+            return 1 << ((hash >>> shift) & 31);
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        public Object get(Object key, int hash, int shift) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0)
+                return null;
+            int index = index(bit);
+            Object keyOrNull = array[2 * index];
+            if (keyOrNull == null)
+                return ((Node) array[2 * index + 1]).get(key, hash, shift + 5);
+            return keyOrNull.equals(key) ? array[2 * index + 1] : null;
+        }
+
+        @Override
+        public Node put(Object key, Object value, int hash, int shift, boolean[] added) {
+            int bit = bit(hash, shift);
+            int index = index(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] newArray = new Object[array.length + 2];
+                System.arraycopy(array, 0, newArray, 0, 2 * index);
+                newArray[2 * index] = key;
+                newArray[2 * index + 1] = value;
+                System.arraycopy(array, 2 * index, newArray, 2 * index + 2, array.length - 2 * index);
+                added[0] = true;
+                return new BitmapNode(bitmap | bit, newArray);
+            }
+            Object keyOrNull = array[2 * index];
+            Object valueOrNode = array[2 * index + 1];
+            if (keyOrNull == null) {
+                Node child = (Node) valueOrNode;
+                Node newChild = child.put(key, value, hash, shift + 5, added);
+                return newChild == child ? this : withSlot(index, null, newChild);
+            }
+            if (keyOrNull.equals(key))
+                return valueOrNode == value ? this : withSlot(index, key, value);
+            added[0] = true;
+            return withSlot(index, null, createNode(shift + 5, keyOrNull, valueOrNode, key, value, hash));
+        }
+
+        @Override
+        public Node remove(Object key, int hash, int shift) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0)
+                return this;
+            int index = index(bit);
+            Object keyOrNull = array[2 * index];
+            if (keyOrNull == null) {
+                Node child = (Node) array[2 * index + 1];
+                Node newChild = child.remove(key, hash, shift + 5);
+                if (newChild == child)
+                    return this;
+                if (newChild != null)
+                    return withSlot(index, null, newChild);
+            } else if (!keyOrNull.equals(key)) {
+                return this;
+            }
+            if (bitmap == bit)
+                return null;
+            Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, 2 * index);
+            System.arraycopy(array, 2 * index + 2, newArray, 2 * index, newArray.length - 2 * index);
+            return new BitmapNode(bitmap & ~bit, newArray);
+        }
+
+        private BitmapNode withSlot(int index, Object keyOrNull, Object valueOrNode) {
+            Object[] newArray = array.clone();
+            newArray[2 * index] = keyOrNull;
+            newArray[2 * index + 1] = valueOrNode;
+            return new BitmapNode(bitmap, newArray);
+        }
+
+        // two different hashes always differ in some of the 5 bit chunks before the shift reaches 32
+        private static Node createNode(int shift, Object key1, Object value1, Object key2, Object value2, int hash2) {
+            int hash1 = hash(key1);
+            if (hash1 == hash2)
+                return new CollisionNode(hash1, new Object[]{key1, value1, key2, value2});
+            boolean[] added = new boolean[1];
+            return EMPTY.put(key1, value1, hash1, shift, added).put(key2, value2, hash2, shift, added);
+        }
+    }
+
+    // keys with the same full hash
+    private static final class CollisionNode implements Node {
+        private final int hash;
+        private final Object[] array;
+
+        private CollisionNode(int hash, Object[] array) {
+            this.hash = hash;
+            this.array = array;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (array[i].equals(key))
+                    return i;
+            }
+            return -1;
+        }
+
+        @Override
+        public Object get(Object key, int hash, int shift) {
+            int index = indexOf(key);
+            return index < 0 ? null : array[index + 1];
+        }
+
+        @Override
+        public Node put(Object key, Object value, int hash, int shift, boolean[] added) {
+            if (hash != this.hash) {
+                BitmapNode parent = new BitmapNode(BitmapNode.bit(this.hash, shift), new Object[]{null, this});
+                return parent.put(key, value, hash, shift, added);
+            }
+            int index = indexOf(key);
+            if (index >= 0) {
+                if (array[index + 1] == value)
+                    return this;
+                Object[] newArray = array.clone();
+                newArray[index + 1] = value;
+                return new CollisionNode(hash, newArray);
+            }
+            Object[] newArray = Arrays.copyOf(array, array.length + 2);
+            newArray[array.length] = key;
+            newArray[array.length + 1] = value;
+            added[0] = true;
+            return new CollisionNode(hash, newArray);
+        }
+
+        @Override
+        public Node remove(Object key, int hash, int shift) {
+            int index = indexOf(key);
+            if (index < 0)
+                return this;
+            if (array.length == 2)
+                return null;
+            Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, index);
+            System.arraycopy(array, index + 2, newArray, index, newArray.length - index);
+            return new CollisionNode(hash, newArray);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.demo.widgetstorages;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// immutable counterpart of OrderStatisticTree: every change copies the path from the root to the changed node only
+// and returns a new tree, the old one stays valid and can be read without any synchronization
+public final class PersistentOrderStatisticTree<E> {
+    private final Comparator<? super E> comparator;
+    private final Node<E> root;
+
+    private PersistentOrderStatisticTree(Comparator<? super E> comparator, Node<E> root) {
+        this.comparator = comparator;
+        this.root = root;
+    }
+
+    public static <E> PersistentOrderStatisticTree<E> empty(Comparator<? super E> comparator) {
+        return new PersistentOrderStatisticTree<>(comparator, null);
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    public PersistentOrderStatisticTree<E> with(E element) {
+        return new PersistentOrderStatisticTree<>(comparator, insert(root, element, ThreadLocalRandom.current().nextInt()));
+    }
+
+    public PersistentOrderStatisticTree<E> without(E element) {
+        Node<E> newRoot = delete(root, element);
+        return newRoot == root ? this : new PersistentOrderStatisticTree<>(comparator, newRoot);
+    }
+
+    // the new element has to take the same place in the order as the replaced one
+    public PersistentOrderStatisticTree<E> withReplaced(int index, E element) {
+        if (index < 0 || index >= size())
+            throw new IndexOutOfBoundsException();
+        return new PersistentOrderStatisticTree<>(comparator, replace(root, index, element));
+    }
+
+    public E last() {
+        if (root == null)
+            throw new NoSuchElementException();
+        Node<E> node = root;
+        while (node.right != null)
+            node = node.right;
+        return node.element;
+    }
+
+    public E get(int index) {
+        if (index < 0 || index >= size())
+            throw new IndexOutOfBoundsException();
+        Node<E> node = root;
+        for (; ; ) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node.element;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    // number of elements less than the given one, which is its position if it is in the tree
+    public int indexOf(E element) {
+        int index = 0;
+        Node<E> node = root;
+        while (node != null) {
+            if (comparator.compare(element, node.element) <= 0) {
+                node = node.left;
+            } else {
+                index += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return index;
+    }
+
+    public Iterator<E> iterator(int fromIndex) {
+        ArrayDeque<Node<E>> path = new ArrayDeque<>();
+        Node<E> node = root;
+        while (node != null) {
+            int leftSize = size(node.left);
+            if (fromIndex < leftSize) {
+                path.push(node);
+                node = node.left;
+            } else if (fromIndex == leftSize) {
+                path.push(node);
+                break;
+            } else {
+                fromIndex -= leftSize + 1;
+                node = node.right;
+            }
+        }
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !path.isEmpty();
+            }
+
+            @Override
+            public E next() {
+                if (path.isEmpty())
+                    throw new NoSuchElementException();
+                Node<E> node = path.pop();
+                for (Node<E> next = node.right; next != null; next = next.left)
+                    path.push(next);
+                return node.element;
+            }
+        };
+    }
+
+    public Stream<E> stream(int fromIndex) {
+        return StreamSupport.stream(Spliterators.spliterator(iterator(fromIndex), Math.max(size() - fromIndex, 0),
+                Spliterator.ORDERED | Spliterator.SIZED | Spliterator.NONNULL | Spliterator.IMMUTABLE), false);
+    }
+
+    // read-only list view, get is O(log n)
+    public List<E> asList() {
+        return new AbstractList<>() {
+            @Override
+            public E get(int index) {
+                return PersistentOrderStatisticTree.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return PersistentOrderStatisticTree.this.size();
+            }
+
+            @Override
+            public Iterator<E> iterator() {
+                return PersistentOrderStatisticTree.this.iterator(0);
+            }
+        };
+    }
+
+    private Node<E> insert(Node<E> node, E element, int priority) {
+        if (node == null)
+            return new Node<>(element, priority, null, null);
+        if (comparator.compare(element, node.element) < 0) {
+            Node<E> left = insert(node.left, element, priority);
+            if (left.priority > node.priority)
+                return new Node<>(left.element, left.priority, left.left, new Node<>(node.element, node.priority, left.right, node.right));
+            return new Node<>(node.element, node.priority, left, node.right);
+        } else {
+            Node<E> right = insert(node.right, element, priority);
+            if (right.priority > node.priority)
+                return new Node<>(right.element, right.priority, new Node<>(node.element, node.priority, node.left, right.left), right.right);
+            return new Node<>(node.element, node.priority, node.left, right);
+        }
+    }
+
+    private Node<E> delete(Node<E> node, E element) {
+        if (node == null)
+            return null;
+        int comparison = comparator.compare(element, node.element);
+        if (comparison < 0) {
+            Node<E> left = delete(node.left, element);
+            return left == node.left ? node : new Node<>(node.element, node.priority, left, node.right);
+        } else if (comparison > 0) {
+            Node<E> right = delete(node.right, element);
+            return right == node.right ? node : new Node<>(node.element, node.priority, node.left, right);
+        } else {
+            return merge(node.left, node.right);
+        }
+    }
+
+    private Node<E> merge(Node<E> left, Node<E> right) {
+        if (left == null)
+            return right;
+        if (right == null)
+            return left;
+        if (left.priority > right.priority)
+            return new Node<>(left.element, left.priority, left.left, merge(left.right, right));
+        return new Node<>(right.element, right.priority, merge(left, right.left), right.right);
+    }
+
+    private Node<E> replace(Node<E> node, int index, E element) {
+        int leftSize = size(node.left);
+        if (index < leftSize)
+            return new Node<>(node.element, node.priority, replace(node.left, index, element), node.right);
+        if (index == leftSize)
+            return new Node<>(element, node.priority, node.left, node.right);
+        return new Node<>(node.element, node.priority, node.left, replace(node.right, index - leftSize - 1, element));
+    }
+
+    private static final class Node<E> {
+        private final E element;
+        private final int priority;
+        private final Node<E> left;
+        private final Node<E> right;
+        private final int size;
+
+        private Node(E element, int priority, Node<E> left, Node<E> right) {
+            this.element = element;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.size = 1 + PersistentOrderStatisticTree.size(left) + PersistentOrderStatisticTree.size(right);
+        }
+    }
+}
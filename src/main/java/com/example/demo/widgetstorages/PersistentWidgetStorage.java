@@ -0,0 +1,189 @@
+package com.example.demo.widgetstorages;
+
+import com.example.demo.models.Widget;
+import com.example.demo.models.WidgetCreateRequest;
+import com.example.demo.models.WidgetUpdateRequest;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+// every mutation builds a new snapshot out of persistent structures and publishes it through a volatile field,
+// so readers never lock and never retry; writers are still serialized against each other
+public class PersistentWidgetStorage implements IWidgetStorage {
+    private volatile Snapshot snapshot;
+    private final ReentrantLock writeLock;
+
+    public PersistentWidgetStorage() {
+        this.snapshot = new Snapshot(PersistentHashMap.empty(), PersistentOrderStatisticTree.empty(Comparator.comparingInt(Widget::getZ)));
+        this.writeLock = new ReentrantLock();
+    }
+
+    private static void validate(int width, int height) throws IllegalArgumentException {
+        if (width <= 0)
+            throw new IllegalArgumentException("width can not be less or equal to zero");
+        if (height <= 0)
+            throw new IllegalArgumentException("height can not be less or equal to zero");
+    }
+
+    private static Widget withZ(Widget widget, int z) {
+        return new Widget(widget.getId(), widget.getX(), widget.getY(), z, widget.getWidth(), widget.getHeight(), ZonedDateTime.now());
+    }
+
+    public Widget create(WidgetCreateRequest widgetCreateRequest) {
+        validate(widgetCreateRequest.getWidth(), widgetCreateRequest.getHeight());
+        UUID id = UUID.randomUUID();
+        writeLock.lock();
+        try {
+            Snapshot current = snapshot;
+            int z = widgetCreateRequest.getZ() == null ? getTopZ(current) : widgetCreateRequest.getZ();
+            Widget newWidget = new Widget(id, widgetCreateRequest.getX(), widgetCreateRequest.getY(), z,
+                    widgetCreateRequest.getWidth(), widgetCreateRequest.getHeight(), ZonedDateTime.now());
+            snapshot = insert(current, newWidget);
+            return newWidget;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // the whole batch is published as one snapshot, readers see either none or all of the new widgets
+    public List<Widget> create(List<WidgetCreateRequest> widgetCreateRequests) {
+        for (WidgetCreateRequest widgetCreateRequest : widgetCreateRequests) {
+            if (widgetCreateRequest == null)
+                throw new IllegalArgumentException("request can not be null");
+            validate(widgetCreateRequest.getWidth(), widgetCreateRequest.getHeight());
+        }
+        List<UUID> ids = new ArrayList<>(widgetCreateRequests.size());
+        writeLock.lock();
+        try {
+            Snapshot next = snapshot;
+            for (WidgetCreateRequest widgetCreateRequest : widgetCreateRequests) {
+                int z = widgetCreateRequest.getZ() == null ? getTopZ(next) : widgetCreateRequest.getZ();
+                Widget newWidget = new Widget(UUID.randomUUID(), widgetCreateRequest.getX(), widgetCreateRequest.getY(), z,
+                        widgetCreateRequest.getWidth(), widgetCreateRequest.getHeight(), ZonedDateTime.now());
+                next = insert(next, newWidget);
+                ids.add(newWidget.getId());
+            }
+            snapshot = next;
+            PersistentHashMap<UUID, Widget> widgetsById = next.widgetsById;
+            return ids.stream().map(widgetsById::get).collect(Collectors.toUnmodifiableList());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public Widget read(UUID id) {
+        return snapshot.widgetsById.get(id);
+    }
+
+    public List<Widget> read() {
+        return snapshot.widgetsSortedByZ.asList();
+    }
+
+    public List<Widget> read(Integer skip, Integer take) {
+        if (skip == null) skip = 0;
+        if (take == null) take = 10;
+        if (skip < 0 || take < 0) throw new IllegalArgumentException();
+        if (take > 500) throw new IllegalArgumentException();
+        return snapshot.widgetsSortedByZ.stream(skip).limit(take).collect(Collectors.toUnmodifiableList());
+    }
+
+    public List<Widget> readZRange(int fromZ, int toZ, Integer skip, Integer take) {
+        if (skip == null) skip = 0;
+        if (take == null) take = 10;
+        if (skip < 0 || take < 0) throw new IllegalArgumentException();
+        if (take > 500) throw new IllegalArgumentException();
+        if (fromZ > toZ) throw new IllegalArgumentException();
+        PersistentOrderStatisticTree<Widget> widgetsSortedByZ = snapshot.widgetsSortedByZ;
+        int fromIndex = widgetsSortedByZ.indexOf(new Widget(null, 0, 0, fromZ, 0, 0, null));
+        int toIndex = toZ == Integer.MAX_VALUE ? widgetsSortedByZ.size() : widgetsSortedByZ.indexOf(new Widget(null, 0, 0, toZ + 1, 0, 0, null));
+        int from = (int) Math.min((long) fromIndex + skip, toIndex);
+        return widgetsSortedByZ.stream(from).limit(Math.min(take, toIndex - from)).collect(Collectors.toUnmodifiableList());
+    }
+
+    public Widget update(UUID id, WidgetUpdateRequest widgetUpdateRequest) {
+        writeLock.lock();
+        try {
+            Snapshot current = snapshot;
+            Widget widget = current.widgetsById.get(id);
+            if (widget == null)
+                return null;
+            if (widgetUpdateRequest.getX() == null && widgetUpdateRequest.getY() == null && widgetUpdateRequest.getZ() == null
+                    && widgetUpdateRequest.getWidth() == null && widgetUpdateRequest.getHeight() == null)
+                return widget;
+            // all the values are checked before anything is published, so a rejected update changes nothing
+            int width = widgetUpdateRequest.getWidth() != null ? widgetUpdateRequest.getWidth() : widget.getWidth();
+            int height = widgetUpdateRequest.getHeight() != null ? widgetUpdateRequest.getHeight() : widget.getHeight();
+            validate(width, height);
+            Widget updatedWidget = new Widget(
+                    id,
+                    widgetUpdateRequest.getX() != null ? widgetUpdateRequest.getX() : widget.getX(),
+                    widgetUpdateRequest.getY() != null ? widgetUpdateRequest.getY() : widget.getY(),
+                    widgetUpdateRequest.getZ() != null ? widgetUpdateRequest.getZ() : widget.getZ(),
+                    width,
+                    height,
+                    ZonedDateTime.now());
+            if (updatedWidget.getZ() != widget.getZ()) {
+                snapshot = insert(new Snapshot(current.widgetsById, current.widgetsSortedByZ.without(widget)), updatedWidget);
+            } else {
+                int index = current.widgetsSortedByZ.indexOf(widget);
+                snapshot = new Snapshot(current.widgetsById.put(id, updatedWidget), current.widgetsSortedByZ.withReplaced(index, updatedWidget));
+            }
+            return updatedWidget;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public Widget delete(UUID id) {
+        writeLock.lock();
+        try {
+            Snapshot current = snapshot;
+            Widget widget = current.widgetsById.get(id);
+            if (widget != null)
+                snapshot = new Snapshot(current.widgetsById.remove(id), current.widgetsSortedByZ.without(widget));
+            return widget;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private static int getTopZ(Snapshot snapshot) {
+        if (snapshot.widgetsSortedByZ.isEmpty())
+            return 0;
+        return snapshot.widgetsSortedByZ.last().getZ() + 1; // TODO: can cause type overflow
+    }
+
+    private static Snapshot insert(Snapshot snapshot, Widget widget) {
+        PersistentHashMap<UUID, Widget> widgetsById = snapshot.widgetsById;
+        PersistentOrderStatisticTree<Widget> widgetsSortedByZ = snapshot.widgetsSortedByZ;
+        // widgets are immutable, so every shifted widget is replaced by a copy; the order doesn't change, so they are replaced in place
+        int index = widgetsSortedByZ.indexOf(widget);
+        Iterator<Widget> widgetsWithSameOrGreaterZ = widgetsSortedByZ.iterator(index);
+        int z = widget.getZ();
+        while (widgetsWithSameOrGreaterZ.hasNext()) {
+            Widget widgetToShift = widgetsWithSameOrGreaterZ.next();
+            if (widgetToShift.getZ() != z)
+                break;
+            Widget shiftedWidget = withZ(widgetToShift, ++z); // TODO: can cause type overflow
+            widgetsSortedByZ = widgetsSortedByZ.withReplaced(index++, shiftedWidget);
+            widgetsById = widgetsById.put(shiftedWidget.getId(), shiftedWidget);
+        }
+        return new Snapshot(widgetsById.put(widget.getId(), widget), widgetsSortedByZ.with(widget));
+    }
+
+    private static final class Snapshot {
+        private final PersistentHashMap<UUID, Widget> widgetsById;
+        private final PersistentOrderStatisticTree<Widget> widgetsSortedByZ;
+
+        private Snapshot(PersistentHashMap<UUID, Widget> widgetsById, PersistentOrderStatisticTree<Widget> widgetsSortedByZ) {
+            this.widgetsById = widgetsById;
+            this.widgetsSortedByZ = widgetsSortedByZ;
+        }
+    }
+}
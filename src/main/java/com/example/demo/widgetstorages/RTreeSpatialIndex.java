@@ -0,0 +1,563 @@
+package com.example.demo.widgetstorages;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.BiConsumer;
+import java.util.function.ToLongFunction;
+
+// Guttman's R-tree with quadratic split; leaf entries keep a copy of the bounds the widget was indexed with,
+// so an entry can always be found again even after the widget itself has been moved;
+// every node knows how many widgets its subtree holds, so counting doesn't have to go into the nodes lying inside the bounds
+public class RTreeSpatialIndex implements SpatialIndex {
+    private static final int MAX_ENTRIES = 16;
+    private static final int MIN_ENTRIES = 6;
+
+    private Node root;
+    private int size;
+
+    public RTreeSpatialIndex() {
+        root = new Node(true);
+    }
+
+    private static boolean contains(int outerLeft, int outerRight, int outerUpper, int outerLower,
+                                    int innerLeft, int innerRight, int innerUpper, int innerLower) {
+        return outerLeft <= innerLeft && innerRight <= outerRight && innerUpper <= outerUpper && outerLower <= innerLower;
+    }
+
+    private static boolean intersects(int left1, int right1, int upper1, int lower1,
+                                      int left2, int right2, int upper2, int lower2) {
+        return left1 <= right2 && left2 <= right1 && lower1 <= upper2 && lower2 <= upper1;
+    }
+
+    private static double squaredDistance(int left1, int right1, int upper1, int lower1,
+                                          int left2, int right2, int upper2, int lower2) {
+        double dx = Math.max(0, Math.max((long) left1 - right2, (long) left2 - right1));
+        double dy = Math.max(0, Math.max((long) lower1 - upper2, (long) lower2 - upper1));
+        return dx * dx + dy * dy;
+    }
+
+    private static long area(int left, int right, int upper, int lower) {
+        return ((long) right - left) * ((long) upper - lower);
+    }
+
+    private static long enlargement(Node node, int i, int left, int right, int upper, int lower) {
+        return area(Math.min(node.leftBounds[i], left), Math.max(node.rightBounds[i], right),
+                Math.max(node.upperBounds[i], upper), Math.min(node.lowerBounds[i], lower))
+                - node.area(i);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void put(StoredWidget widget) {
+        insert(widget, widget.getLeftBound(), widget.getRightBound(), widget.getUpperBound(), widget.getLowerBound());
+        size++;
+    }
+
+    // an empty tree is bulk loaded with Sort-Tile-Recursive: the entries are cut into vertical slices by x and every slice into nodes by y,
+    // so the nodes come out full and nearly square, which is also better for queries than a tree grown by insertions
+    @Override
+    public void putAll(Collection<StoredWidget> widgets) {
+        if (size != 0 || widgets.size() <= MAX_ENTRIES) {
+            SpatialIndex.super.putAll(widgets);
+            return;
+        }
+        List<Node> level = pack(new ArrayList<>(widgets), true,
+                widget -> (long) widget.getLeftBound() + widget.getRightBound(),
+                widget -> (long) widget.getLowerBound() + widget.getUpperBound(),
+                (node, widget) -> node.add(widget.getLeftBound(), widget.getRightBound(), widget.getUpperBound(), widget.getLowerBound(), widget));
+        while (level.size() > 1)
+            level = pack(level, false, Node::centerX, Node::centerY, Node::add);
+        root = level.get(0);
+        size = widgets.size();
+    }
+
+    private static <T> List<Node> pack(List<T> entries, boolean leaf, ToLongFunction<T> centerX, ToLongFunction<T> centerY, BiConsumer<Node, T> add) {
+        int nodeCount = (entries.size() + MAX_ENTRIES - 1) / MAX_ENTRIES;
+        int sliceCount = (int) Math.ceil(Math.sqrt(nodeCount));
+        entries.sort(Comparator.comparingLong(centerX));
+        List<Node> nodes = new ArrayList<>(nodeCount);
+        // slices and nodes are cut evenly, so none of them is left with less than MIN_ENTRIES
+        for (int slice = 0; slice < sliceCount; slice++) {
+            List<T> sliceEntries = entries.subList((int) ((long) entries.size() * slice / sliceCount), (int) ((long) entries.size() * (slice + 1) / sliceCount));
+            sliceEntries.sort(Comparator.comparingLong(centerY));
+            int sliceNodeCount = (sliceEntries.size() + MAX_ENTRIES - 1) / MAX_ENTRIES;
+            for (int i = 0; i < sliceNodeCount; i++) {
+                Node node = new Node(leaf);
+                for (T entry : sliceEntries.subList(sliceEntries.size() * i / sliceNodeCount, sliceEntries.size() * (i + 1) / sliceNodeCount))
+                    add.accept(node, entry);
+                nodes.add(node);
+            }
+        }
+        return nodes;
+    }
+
+    @Override
+    public void remove(StoredWidget widget) {
+        remove(widget, widget.getLeftBound(), widget.getRightBound(), widget.getUpperBound(), widget.getLowerBound());
+    }
+
+    @Override
+    public void update(StoredWidget widget, int oldLeftBound, int oldRightBound, int oldUpperBound, int oldLowerBound) {
+        if (remove(widget, oldLeftBound, oldRightBound, oldUpperBound, oldLowerBound))
+            put(widget);
+    }
+
+    @Override
+    public List<StoredWidget> within(int leftBound, int rightBound, int upperBound, int lowerBound) {
+        ArrayList<StoredWidget> result = new ArrayList<>();
+        within(root, leftBound, rightBound, upperBound, lowerBound, result);
+        return result;
+    }
+
+    private void within(Node node, int leftBound, int rightBound, int upperBound, int lowerBound, List<StoredWidget> result) {
+        for (int i = 0; i < node.size; i++) {
+            if (node.leaf) {
+                if (contains(leftBound, rightBound, upperBound, lowerBound,
+                        node.leftBounds[i], node.rightBounds[i], node.upperBounds[i], node.lowerBounds[i]))
+                    result.add((StoredWidget) node.children[i]);
+            } else if (contains(leftBound, rightBound, upperBound, lowerBound,
+                    node.leftBounds[i], node.rightBounds[i], node.upperBounds[i], node.lowerBounds[i])) {
+                collect((Node) node.children[i], result); // the whole subtree is inside, no need to check every entry
+            } else if (intersects(leftBound, rightBound, upperBound, lowerBound,
+                    node.leftBounds[i], node.rightBounds[i], node.upperBounds[i], node.lowerBounds[i])) {
+                within((Node) node.children[i], leftBound, rightBound, upperBound, lowerBound, result);
+            }
+        }
+    }
+
+    @Override
+    public List<StoredWidget> intersecting(int leftBound, int rightBound, int upperBound, int lowerBound) {
+        ArrayList<StoredWidget> result = new ArrayList<>();
+        intersecting(root, leftBound, rightBound, upperBound, lowerBound, result);
+        return result;
+    }
+
+    private void intersecting(Node node, int leftBound, int rightBound, int upperBound, int lowerBound, List<StoredWidget> result) {
+        for (int i = 0; i < node.size; i++) {
+            if (!intersects(leftBound, rightBound, upperBound, lowerBound,
+                    node.leftBounds[i], node.rightBounds[i], node.upperBounds[i], node.lowerBounds[i]))
+                continue;
+            if (node.leaf)
+                result.add((StoredWidget) node.children[i]);
+            else if (contains(leftBound, rightBound, upperBound, lowerBound,
+                    node.leftBounds[i], node.rightBounds[i], node.upperBounds[i], node.lowerBounds[i]))
+                collect((Node) node.children[i], result);
+            else
+                intersecting((Node) node.children[i], leftBound, rightBound, upperBound, lowerBound, result);
+        }
+    }
+
+    // one walk for all the rectangles: a node is opened once if any of them reaches it, and only the rectangles reaching it are checked inside;
+    // a rectangle holding an entire subtree collects it at once and isn't carried further down
+    @Override
+    public List<Collection<StoredWidget>> matchingEach(BoundsMode boundsMode, int[][] rectangles) {
+        if (rectangles.length > Long.SIZE)
+            return SpatialIndex.super.matchingEach(boundsMode, rectangles);
+        List<List<StoredWidget>> widgets = new ArrayList<>(rectangles.length);
+        for (int i = 0; i < rectangles.length; i++)
+            widgets.add(new ArrayList<>());
+        matchingEach(root, boundsMode, rectangles, rectangles.length == Long.SIZE ? -1L : (1L << rectangles.length) - 1, widgets);
+        return new ArrayList<>(widgets);
+    }
+
+    private void matchingEach(Node node, BoundsMode boundsMode, int[][] rectangles, long reaching, List<List<StoredWidget>> widgets) {
+        for (int i = 0; i < node.size; i++) {
+            long reachingEntry = 0;
+            for (long remaining = reaching; remaining != 0; remaining &= remaining - 1) {
+                int rectangle = Long.numberOfTrailingZeros(remaining);
+                int[] bounds = rectangles[rectangle];
+                if (!intersects(bounds[0], bounds[1], bounds[2], bounds[3],
+                        node.leftBounds[i], node.rightBounds[i], node.upperBounds[i], node.lowerBounds[i]))
+                    continue;
+                if (contains(bounds[0], bounds[1], bounds[2], bounds[3],
+                        node.leftBounds[i], node.rightBounds[i], node.upperBounds[i], node.lowerBounds[i])) {
+                    if (node.leaf)
+                        widgets.get(rectangle).add((StoredWidget) node.children[i]);
+                    else
+                        collect((Node) node.children[i], widgets.get(rectangle));
+                } else if (!node.leaf) {
+                    reachingEntry |= Long.lowestOneBit(remaining);
+                } else if (boundsMode == BoundsMode.INTERSECTING) {
+                    widgets.get(rectangle).add((StoredWidget) node.children[i]);
+                }
+            }
+            if (reachingEntry != 0)
+                matchingEach((Node) node.children[i], boundsMode, rectangles, reachingEntry, widgets);
+        }
+    }
+
+    @Override
+    public int countWithin(int leftBound, int rightBound, int upperBound, int lowerBound) {
+        return count(root, leftBound, rightBound, upperBound, lowerBound, BoundsMode.WITHIN);
+    }
+
+    @Override
+    public int countIntersecting(int leftBound, int rightBound, int upperBound, int lowerBound) {
+        return count(root, leftBound, rightBound, upperBound, lowerBound, BoundsMode.INTERSECTING);
+    }
+
+    private int count(Node node, int leftBound, int rightBound, int upperBound, int lowerBound, BoundsMode boundsMode) {
+        int count = 0;
+        for (int i = 0; i < node.size; i++) {
+            if (contains(leftBound, rightBound, upperBound, lowerBound,
+                    node.leftBounds[i], node.rightBounds[i], node.upperBounds[i], node.lowerBounds[i])) {
+                count += node.leaf ? 1 : ((Node) node.children[i]).count;
+            } else if (intersects(leftBound, rightBound, upperBound, lowerBound,
+                    node.leftBounds[i], node.rightBounds[i], node.upperBounds[i], node.lowerBounds[i])) {
+                if (!node.leaf)
+                    count += count((Node) node.children[i], leftBound, rightBound, upperBound, lowerBound, boundsMode);
+                else if (boundsMode == BoundsMode.INTERSECTING)
+                    count++;
+            }
+        }
+        return count;
+    }
+
+    // the entries of the root are tight, so their union is
+    @Override
+    public int[] boundingBox() {
+        if (size == 0)
+            return null;
+        Bounds bounds = new Bounds(root, 0);
+        for (int i = 1; i < root.size; i++)
+            bounds.extend(root, i);
+        return new int[]{bounds.leftBound, bounds.rightBound, bounds.upperBound, bounds.lowerBound};
+    }
+
+    // best-first search: entries are taken from a queue by their distance, and an entry of a node is never nearer than the node itself,
+    // so a widget taken from the queue is nearer than everything left there; only the nodes around the k widgets get opened
+    @Override
+    public List<StoredWidget> nearest(int leftBound, int rightBound, int upperBound, int lowerBound, int k) {
+        List<StoredWidget> result = new ArrayList<>(Math.min(k, size));
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>();
+        candidates.add(new Candidate(root, 0));
+        while (result.size() < k && !candidates.isEmpty()) {
+            Object entry = candidates.poll().entry;
+            if (entry instanceof StoredWidget) {
+                result.add((StoredWidget) entry);
+                continue;
+            }
+            Node node = (Node) entry;
+            for (int i = 0; i < node.size; i++) {
+                candidates.add(new Candidate(node.children[i], squaredDistance(leftBound, rightBound, upperBound, lowerBound,
+                        node.leftBounds[i], node.rightBounds[i], node.upperBounds[i], node.lowerBounds[i])));
+            }
+        }
+        return result;
+    }
+
+    private void collect(Node node, List<StoredWidget> result) {
+        for (int i = 0; i < node.size; i++) {
+            if (node.leaf)
+                result.add((StoredWidget) node.children[i]);
+            else
+                collect((Node) node.children[i], result);
+        }
+    }
+
+    private void insert(StoredWidget widget, int leftBound, int rightBound, int upperBound, int lowerBound) {
+        Node sibling = insert(root, widget, leftBound, rightBound, upperBound, lowerBound);
+        if (sibling != null) {
+            Node newRoot = new Node(false);
+            newRoot.add(root);
+            newRoot.add(sibling);
+            root = newRoot;
+        }
+    }
+
+    private Node insert(Node node, StoredWidget widget, int leftBound, int rightBound, int upperBound, int lowerBound) {
+        if (node.leaf) {
+            node.add(leftBound, rightBound, upperBound, lowerBound, widget);
+        } else {
+            int i = chooseSubtree(node, leftBound, rightBound, upperBound, lowerBound);
+            Node child = (Node) node.children[i];
+            Node sibling = insert(child, widget, leftBound, rightBound, upperBound, lowerBound);
+            if (sibling == null) {
+                node.extend(i, leftBound, rightBound, upperBound, lowerBound);
+                node.count++;
+            } else {
+                node.setBounds(i, child);
+                node.count += 1 - sibling.count; // the widgets of the sibling are still counted in the child, add() counts them again
+                node.add(sibling);
+            }
+        }
+        return node.size > MAX_ENTRIES ? split(node) : null;
+    }
+
+    private int chooseSubtree(Node node, int leftBound, int rightBound, int upperBound, int lowerBound) {
+        int best = 0;
+        long bestEnlargement = Long.MAX_VALUE;
+        long bestArea = Long.MAX_VALUE;
+        for (int i = 0; i < node.size; i++) {
+            long enlargement = enlargement(node, i, leftBound, rightBound, upperBound, lowerBound);
+            long area = node.area(i);
+            if (enlargement < bestEnlargement || (enlargement == bestEnlargement && area < bestArea)) {
+                best = i;
+                bestEnlargement = enlargement;
+                bestArea = area;
+            }
+        }
+        return best;
+    }
+
+    // quadratic split: the pair wasting the most area become seeds, then the entry with the strongest preference goes next
+    private Node split(Node node) {
+        Node entries = node.copy();
+        Node sibling = new Node(node.leaf);
+        node.clear();
+
+        int firstSeed = 0;
+        int secondSeed = 1;
+        long worstWaste = Long.MIN_VALUE;
+        for (int i = 0; i < entries.size; i++) {
+            for (int j = i + 1; j < entries.size; j++) {
+                long waste = enlargement(entries, i, entries.leftBounds[j], entries.rightBounds[j], entries.upperBounds[j], entries.lowerBounds[j])
+                        - entries.area(j);
+                if (waste > worstWaste) {
+                    worstWaste = waste;
+                    firstSeed = i;
+                    secondSeed = j;
+                }
+            }
+        }
+        boolean[] assigned = new boolean[entries.size];
+        node.add(entries, firstSeed);
+        sibling.add(entries, secondSeed);
+        assigned[firstSeed] = true;
+        assigned[secondSeed] = true;
+        Bounds nodeBounds = new Bounds(entries, firstSeed);
+        Bounds siblingBounds = new Bounds(entries, secondSeed);
+
+        for (int remaining = entries.size - 2; remaining > 0; remaining--) {
+            if (node.size + remaining <= MIN_ENTRIES || sibling.size + remaining <= MIN_ENTRIES) {
+                Node target = node.size + remaining <= MIN_ENTRIES ? node : sibling;
+                for (int i = 0; i < entries.size; i++) {
+                    if (!assigned[i])
+                        target.add(entries, i);
+                }
+                break;
+            }
+            int next = -1;
+            long nextPreference = -1;
+            long nextNodeEnlargement = 0;
+            long nextSiblingEnlargement = 0;
+            for (int i = 0; i < entries.size; i++) {
+                if (assigned[i])
+                    continue;
+                long nodeEnlargement = nodeBounds.enlargement(entries, i);
+                long siblingEnlargement = siblingBounds.enlargement(entries, i);
+                long preference = Math.abs(nodeEnlargement - siblingEnlargement);
+                if (preference > nextPreference) {
+                    next = i;
+                    nextPreference = preference;
+                    nextNodeEnlargement = nodeEnlargement;
+                    nextSiblingEnlargement = siblingEnlargement;
+                }
+            }
+            assigned[next] = true;
+            boolean toNode = nextNodeEnlargement != nextSiblingEnlargement
+                    ? nextNodeEnlargement < nextSiblingEnlargement
+                    : node.size <= sibling.size;
+            if (toNode) {
+                node.add(entries, next);
+                nodeBounds.extend(entries, next);
+            } else {
+                sibling.add(entries, next);
+                siblingBounds.extend(entries, next);
+            }
+        }
+        return sibling;
+    }
+
+    private boolean remove(StoredWidget widget, int leftBound, int rightBound, int upperBound, int lowerBound) {
+        List<StoredWidget> orphans = new ArrayList<>();
+        if (!remove(root, widget, leftBound, rightBound, upperBound, lowerBound, orphans))
+            return false;
+        size--;
+        while (!root.leaf && root.size == 1)
+            root = (Node) root.children[0];
+        if (!root.leaf && root.size == 0)
+            root = new Node(true);
+        for (StoredWidget orphan : orphans) {
+            insert(orphan, orphan.getLeftBound(), orphan.getRightBound(), orphan.getUpperBound(), orphan.getLowerBound());
+        }
+        return true;
+    }
+
+    private boolean remove(Node node, StoredWidget widget, int leftBound, int rightBound, int upperBound, int lowerBound, List<StoredWidget> orphans) {
+        for (int i = 0; i < node.size; i++) {
+            if (node.leaf) {
+                if (node.children[i] == widget) {
+                    node.removeAt(i);
+                    return true;
+                }
+            } else if (contains(node.leftBounds[i], node.rightBounds[i], node.upperBounds[i], node.lowerBounds[i],
+                    leftBound, rightBound, upperBound, lowerBound)) {
+                Node child = (Node) node.children[i];
+                if (remove(child, widget, leftBound, rightBound, upperBound, lowerBound, orphans)) {
+                    if (child.size < MIN_ENTRIES) {
+                        node.removeAt(i);
+                        collect(child, orphans);
+                    } else {
+                        node.setBounds(i, child);
+                    }
+                    node.recount(); // orphans of the subtree are gone from it as well, until they are inserted again
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static final class Node {
+        private final boolean leaf;
+        private final int[] leftBounds = new int[MAX_ENTRIES + 1];
+        private final int[] rightBounds = new int[MAX_ENTRIES + 1];
+        private final int[] upperBounds = new int[MAX_ENTRIES + 1];
+        private final int[] lowerBounds = new int[MAX_ENTRIES + 1];
+        private final Object[] children = new Object[MAX_ENTRIES + 1];
+        private int size;
+        private int count; // widgets in the subtree
+
+        private Node(boolean leaf) {
+            this.leaf = leaf;
+        }
+
+        // doubled centers of the node's bounds, used for sorting only
+        private long centerX() {
+            int leftBound = leftBounds[0], rightBound = rightBounds[0];
+            for (int i = 1; i < size; i++) {
+                leftBound = Math.min(leftBound, leftBounds[i]);
+                rightBound = Math.max(rightBound, rightBounds[i]);
+            }
+            return (long) leftBound + rightBound;
+        }
+
+        private long centerY() {
+            int lowerBound = lowerBounds[0], upperBound = upperBounds[0];
+            for (int i = 1; i < size; i++) {
+                lowerBound = Math.min(lowerBound, lowerBounds[i]);
+                upperBound = Math.max(upperBound, upperBounds[i]);
+            }
+            return (long) lowerBound + upperBound;
+        }
+
+        private long area(int i) {
+            return RTreeSpatialIndex.area(leftBounds[i], rightBounds[i], upperBounds[i], lowerBounds[i]);
+        }
+
+        private void add(int leftBound, int rightBound, int upperBound, int lowerBound, Object child) {
+            leftBounds[size] = leftBound;
+            rightBounds[size] = rightBound;
+            upperBounds[size] = upperBound;
+            lowerBounds[size] = lowerBound;
+            children[size] = child;
+            size++;
+            count += child instanceof Node ? ((Node) child).count : 1;
+        }
+
+        private void add(Node child) {
+            add(0, 0, 0, 0, child);
+            setBounds(size - 1, child);
+        }
+
+        private void add(Node entries, int i) {
+            add(entries.leftBounds[i], entries.rightBounds[i], entries.upperBounds[i], entries.lowerBounds[i], entries.children[i]);
+        }
+
+        private void recount() {
+            count = 0;
+            for (int i = 0; i < size; i++)
+                count += children[i] instanceof Node ? ((Node) children[i]).count : 1;
+        }
+
+        private void removeAt(int i) {
+            count -= children[i] instanceof Node ? ((Node) children[i]).count : 1;
+            size--;
+            leftBounds[i] = leftBounds[size];
+            rightBounds[i] = rightBounds[size];
+            upperBounds[i] = upperBounds[size];
+            lowerBounds[i] = lowerBounds[size];
+            children[i] = children[size];
+            children[size] = null;
+        }
+
+        private void extend(int i, int leftBound, int rightBound, int upperBound, int lowerBound) {
+            leftBounds[i] = Math.min(leftBounds[i], leftBound);
+            rightBounds[i] = Math.max(rightBounds[i], rightBound);
+            upperBounds[i] = Math.max(upperBounds[i], upperBound);
+            lowerBounds[i] = Math.min(lowerBounds[i], lowerBound);
+        }
+
+        private void setBounds(int i, Node child) {
+            leftBounds[i] = child.leftBounds[0];
+            rightBounds[i] = child.rightBounds[0];
+            upperBounds[i] = child.upperBounds[0];
+            lowerBounds[i] = child.lowerBounds[0];
+            for (int j = 1; j < child.size; j++)
+                extend(i, child.leftBounds[j], child.rightBounds[j], child.upperBounds[j], child.lowerBounds[j]);
+        }
+
+        private void clear() {
+            Arrays.fill(children, 0, size, null);
+            size = 0;
+            count = 0;
+        }
+
+        private Node copy() {
+            Node copy = new Node(leaf);
+            for (int i = 0; i < size; i++)
+                copy.add(this, i);
+            return copy;
+        }
+    }
+
+    private static final class Candidate implements Comparable<Candidate> {
+        private final Object entry; // a node or a widget
+        private final double squaredDistance;
+
+        private Candidate(Object entry, double squaredDistance) {
+            this.entry = entry;
+            this.squaredDistance = squaredDistance;
+        }
+
+        @Override
+        public int compareTo(Candidate o) {
+            return Double.compare(squaredDistance, o.squaredDistance);
+        }
+    }
+
+    private static final class Bounds {
+        private int leftBound;
+        private int rightBound;
+        private int upperBound;
+        private int lowerBound;
+
+        private Bounds(Node entries, int i) {
+            leftBound = entries.leftBounds[i];
+            rightBound = entries.rightBounds[i];
+            upperBound = entries.upperBounds[i];
+            lowerBound = entries.lowerBounds[i];
+        }
+
+        private long enlargement(Node entries, int i) {
+            return area(Math.min(leftBound, entries.leftBounds[i]), Math.max(rightBound, entries.rightBounds[i]),
+                    Math.max(upperBound, entries.upperBounds[i]), Math.min(lowerBound, entries.lowerBounds[i]))
+                    - area(leftBound, rightBound, upperBound, lowerBound);
+        }
+
+        private void extend(Node entries, int i) {
+            leftBound = Math.min(leftBound, entries.leftBounds[i]);
+            rightBound = Math.max(rightBound, entries.rightBounds[i]);
+            upperBound = Math.max(upperBound, entries.upperBounds[i]);
+            lowerBound = Math.min(lowerBound, entries.lowerBounds[i]);
+        }
+    }
+}
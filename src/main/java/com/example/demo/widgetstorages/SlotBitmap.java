@@ -0,0 +1,190 @@
+package com.example.demo.widgetstorages;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+// set of slots (small non-negative ints) split into chunks of 65536 like a roaring bitmap: a sparse chunk keeps its slots
+// in a char array, a dense one keeps a bit per slot; slots may be added in any order, arrays are sorted when they are first read;
+// slots are dense, so chunks are found by index instead of a search; not thread-safe
+public class SlotBitmap {
+    private static final int CHUNK_BITS = 16;
+    private static final int WORDS = (1 << CHUNK_BITS) / Long.SIZE;
+    private static final int ARRAY_LIMIT = 4096; // a bigger array takes more memory than the bits
+
+    private final char[][] arrays;
+    private final int[] arraySizes;
+    private final boolean[] arraySorted;
+    private final long[][] bits; // when not null, the chunk is kept as bits and its array isn't used
+
+    // slots must be less than the capacity
+    public SlotBitmap(int capacity) {
+        int chunks = (capacity + (1 << CHUNK_BITS) - 1) >>> CHUNK_BITS;
+        arrays = new char[chunks][];
+        arraySizes = new int[chunks];
+        arraySorted = new boolean[chunks];
+        bits = new long[chunks][];
+    }
+
+    public void add(int slot) {
+        int chunk = slot >>> CHUNK_BITS;
+        long[] words = bits[chunk];
+        if (words != null) {
+            words[(char) slot >>> 6] |= 1L << slot;
+            return;
+        }
+        char[] array = arrays[chunk];
+        int size = arraySizes[chunk];
+        if (array == null) {
+            array = arrays[chunk] = new char[16];
+        } else if (size == array.length) {
+            if (size == ARRAY_LIMIT) {
+                words = bits[chunk] = toBits(array, size);
+                arrays[chunk] = null;
+                arraySizes[chunk] = 0; // isEmpty and and() read the size before they look at the bits
+                words[(char) slot >>> 6] |= 1L << slot;
+                return;
+            }
+            array = arrays[chunk] = Arrays.copyOf(array, size * 2);
+        }
+        array[size] = (char) slot;
+        arraySizes[chunk] = size + 1;
+        arraySorted[chunk] = false;
+    }
+
+    private static long[] toBits(char[] array, int size) {
+        long[] words = new long[WORDS];
+        for (int i = 0; i < size; i++)
+            words[array[i] >>> 6] |= 1L << array[i];
+        return words;
+    }
+
+    private char[] sortedArray(int chunk) {
+        if (!arraySorted[chunk]) {
+            Arrays.sort(arrays[chunk], 0, arraySizes[chunk]);
+            arraySorted[chunk] = true;
+        }
+        return arrays[chunk];
+    }
+
+    // keeps only the slots the other bitmap has as well; the bitmaps must have the same capacity
+    public void and(SlotBitmap other) {
+        for (int chunk = 0; chunk < bits.length; chunk++) {
+            long[] words = bits[chunk];
+            long[] otherWords = other.bits[chunk];
+            if (words != null && otherWords != null) {
+                for (int i = 0; i < WORDS; i++)
+                    words[i] &= otherWords[i];
+            } else if (words != null) {
+                // the result can't have more slots than the other array, it becomes the array of this chunk
+                int otherSize = other.arraySizes[chunk];
+                char[] array = new char[Math.max(otherSize, 1)];
+                int size = 0;
+                for (int i = 0; i < otherSize; i++) {
+                    char slot = other.arrays[chunk][i];
+                    if ((words[slot >>> 6] & 1L << slot) != 0)
+                        array[size++] = slot;
+                }
+                bits[chunk] = null;
+                setArray(chunk, array, size, other.arraySorted[chunk]);
+            } else if (arraySizes[chunk] == 0) {
+                continue;
+            } else if (otherWords != null) {
+                char[] array = arrays[chunk];
+                int size = 0;
+                for (int i = 0; i < arraySizes[chunk]; i++) {
+                    char slot = array[i];
+                    if ((otherWords[slot >>> 6] & 1L << slot) != 0)
+                        array[size++] = slot;
+                }
+                arraySizes[chunk] = size;
+            } else {
+                intersectArrays(chunk, other);
+            }
+        }
+    }
+
+    private void setArray(int chunk, char[] array, int size, boolean sorted) {
+        arrays[chunk] = array;
+        arraySizes[chunk] = size;
+        arraySorted[chunk] = sorted;
+    }
+
+    private void intersectArrays(int chunk, SlotBitmap other) {
+        int otherSize = other.arraySizes[chunk];
+        if (otherSize == 0) {
+            arraySizes[chunk] = 0;
+            return;
+        }
+        char[] array = sortedArray(chunk);
+        char[] otherArray = other.sortedArray(chunk);
+        int size = 0;
+        for (int i = 0, j = 0; i < arraySizes[chunk] && j < otherSize; ) {
+            if (array[i] < otherArray[j]) {
+                i++;
+            } else if (array[i] > otherArray[j]) {
+                j++;
+            } else {
+                array[size++] = array[i];
+                i++;
+                j++;
+            }
+        }
+        arraySizes[chunk] = size;
+    }
+
+    // keeps the memory of the chunks, so the bitmap can be filled again without allocating
+    public void clear() {
+        for (int chunk = 0; chunk < bits.length; chunk++) {
+            if (bits[chunk] != null)
+                Arrays.fill(bits[chunk], 0);
+            arraySizes[chunk] = 0;
+        }
+    }
+
+    public boolean isEmpty() {
+        for (int chunk = 0; chunk < bits.length; chunk++) {
+            if (arraySizes[chunk] != 0)
+                return false;
+            if (bits[chunk] != null) {
+                for (long word : bits[chunk]) {
+                    if (word != 0)
+                        return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    public int cardinality() {
+        int cardinality = 0;
+        for (int chunk = 0; chunk < bits.length; chunk++) {
+            if (bits[chunk] == null) {
+                cardinality += arraySizes[chunk];
+                continue;
+            }
+            for (long word : bits[chunk])
+                cardinality += Long.bitCount(word);
+        }
+        return cardinality;
+    }
+
+    // slots in ascending order
+    public void forEach(IntConsumer action) {
+        for (int chunk = 0; chunk < bits.length; chunk++) {
+            int base = chunk << CHUNK_BITS;
+            long[] words = bits[chunk];
+            if (words == null) {
+                if (arraySizes[chunk] == 0)
+                    continue;
+                char[] array = sortedArray(chunk);
+                for (int i = 0; i < arraySizes[chunk]; i++)
+                    action.accept(base | array[i]);
+                continue;
+            }
+            for (int i = 0; i < WORDS; i++) {
+                for (long word = words[i]; word != 0; word &= word - 1)
+                    action.accept(base | i << 6 | Long.numberOfTrailingZeros(word));
+            }
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package com.example.demo.widgetstorages;
+
+import com.example.demo.models.Widget;
+import com.example.demo.models.WidgetCreateRequest;
+import com.example.demo.models.WidgetUpdateRequest;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+
+// a storage keeping every widget in a numbered record (slot) instead of an object; a subclass decides where the records are
+// and how a slot is found by id, the z order, paging and filtering are done here on slots;
+// the z order is a plain int array of slots sorted by z, it gives paging by index, and putting a widget anywhere but on top moves the part of the array above it
+public abstract class SlotWidgetStorage implements IWidgetStorage {
+    static final int NO_SLOT = -1;
+    static final int MIN_CAPACITY = 16;
+
+    private final StampedLock lock;
+    private int[] slotsSortedByZ;
+    private int size;
+
+    SlotWidgetStorage(int initialCapacity) {
+        this.lock = new StampedLock();
+        this.slotsSortedByZ = new int[Math.max(initialCapacity, MIN_CAPACITY)];
+    }
+
+    static long now() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000_000L + now.getNano();
+    }
+
+    private static void validate(int width, int height) throws IllegalArgumentException {
+        if (width <= 0)
+            throw new IllegalArgumentException("width can not be less or equal to zero");
+        if (height <= 0)
+            throw new IllegalArgumentException("height can not be less or equal to zero");
+    }
+
+    // the number of stored widgets
+    int size() {
+        return size;
+    }
+
+    // takes a free slot, puts the id into it and makes it findable by the id
+    abstract int allocate(UUID id);
+
+    // the slot of the widget with the given id, or NO_SLOT
+    abstract int find(UUID id);
+
+    // forgets the id of the widget and gives its slot back, the slot is already out of the z order
+    abstract void free(UUID id, int slot);
+
+    abstract Widget toWidget(int slot, ZoneId zone);
+
+    abstract void setGeometry(int slot, int x, int y, int width, int height);
+
+    abstract int getX(int slot);
+
+    abstract int getY(int slot);
+
+    abstract int getWidth(int slot);
+
+    abstract int getHeight(int slot);
+
+    abstract int getZ(int slot);
+
+    abstract void setZ(int slot, int z);
+
+    abstract long getLastModifiedNanos(int slot); // since the epoch
+
+    abstract void setLastModifiedNanos(int slot, long lastModifiedNanos);
+
+    // whether the widget lies entirely inside the bounds
+    abstract boolean isWithin(int slot, int leftBound, int rightBound, int upperBound, int lowerBound);
+
+    // adds every stored widget lying entirely inside the bounds to the matches, in whatever order the records are kept in
+    abstract void scanWithin(int leftBound, int rightBound, int upperBound, int lowerBound, Matches matches);
+
+    private Widget toWidget(int slot) {
+        if (slot == NO_SLOT)
+            return null;
+        return toWidget(slot, ZoneId.systemDefault());
+    }
+
+    private List<Widget> toWidgets(int from, int to) {
+        ZoneId zone = ZoneId.systemDefault();
+        Widget[] widgets = new Widget[to - from];
+        for (int i = from; i < to; i++)
+            widgets[i - from] = toWidget(slotsSortedByZ[i], zone);
+        return List.of(widgets);
+    }
+
+    public Widget create(WidgetCreateRequest widgetCreateRequest) {
+        validate(widgetCreateRequest.getWidth(), widgetCreateRequest.getHeight());
+        UUID id = UUID.randomUUID();
+        long stamp = lock.writeLock();
+        try {
+            int slot = allocate(id);
+            setGeometry(slot, widgetCreateRequest.getX(), widgetCreateRequest.getY(), widgetCreateRequest.getWidth(), widgetCreateRequest.getHeight());
+            setLastModifiedNanos(slot, now());
+            if (size == slotsSortedByZ.length)
+                slotsSortedByZ = Arrays.copyOf(slotsSortedByZ, size * 2);
+            if (widgetCreateRequest.getZ() == null) {
+                setZ(slot, getTopZ());
+                slotsSortedByZ[size++] = slot;
+            } else {
+                insert(slot, widgetCreateRequest.getZ());
+            }
+            return toWidget(slot);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public Widget read(UUID id) {
+        long stamp = lock.readLock();
+        try {
+            return toWidget(find(id));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public List<Widget> read() {
+        return read(null, null, null, null, null, null);
+    }
+
+    public List<Widget> read(Integer skip, Integer take) {
+        return read(skip, take, null, null, null, null);
+    }
+
+    public List<Widget> read(Integer leftBound, Integer rightBound, Integer upperBound, Integer lowerBound) {
+        return read(null, null, leftBound, rightBound, upperBound, lowerBound);
+    }
+
+    // bounds without skip and take give all the widgets inside them, with skip or take they give a page of them
+    public List<Widget> read(Integer skip, Integer take, Integer leftBound, Integer rightBound, Integer upperBound, Integer lowerBound) {
+        boolean usePaging = skip != null || take != null;
+        if (skip == null) skip = 0;
+        if (take == null) take = 10;
+        if (skip < 0 || take < 0) throw new IllegalArgumentException();
+        if (take > 500) throw new IllegalArgumentException();
+
+        boolean useBounds = (leftBound != null && rightBound != null && upperBound != null && lowerBound != null);
+        if (useBounds) {
+            if (leftBound > rightBound || upperBound < lowerBound)
+                throw new IllegalArgumentException();
+        } else {
+            if (leftBound != null || rightBound != null || upperBound != null || lowerBound != null)
+                throw new IllegalArgumentException();
+        }
+
+        long stamp = lock.readLock();
+        try {
+            if (useBounds && usePaging)
+                return pageWithin(skip, take, leftBound, rightBound, upperBound, lowerBound);
+            if (useBounds)
+                return within(leftBound, rightBound, upperBound, lowerBound);
+            int from = (int) Math.min(size, (long) skip);
+            int to = (int) Math.min(size, (long) from + take);
+            return toWidgets(from, to);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public List<Widget> readZRange(int fromZ, int toZ, Integer skip, Integer take) {
+        if (skip == null) skip = 0;
+        if (take == null) take = 10;
+        if (skip < 0 || take < 0) throw new IllegalArgumentException();
+        if (take > 500) throw new IllegalArgumentException();
+        if (fromZ > toZ) throw new IllegalArgumentException();
+        long stamp = lock.readLock();
+        try {
+            int toPosition = toZ == Integer.MAX_VALUE ? size : positionOf(toZ + 1);
+            int from = (int) Math.min(toPosition, (long) positionOf(fromZ) + skip);
+            int to = (int) Math.min(toPosition, (long) from + take);
+            return toWidgets(from, to);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public Widget update(UUID id, WidgetUpdateRequest widgetUpdateRequest) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = find(id);
+            if (slot == NO_SLOT)
+                return null;
+            if (widgetUpdateRequest.getX() == null && widgetUpdateRequest.getY() == null && widgetUpdateRequest.getZ() == null
+                    && widgetUpdateRequest.getWidth() == null && widgetUpdateRequest.getHeight() == null)
+                return toWidget(slot);
+            // all the values are checked before anything is changed, so a rejected update changes nothing
+            int width = widgetUpdateRequest.getWidth() != null ? widgetUpdateRequest.getWidth() : getWidth(slot);
+            int height = widgetUpdateRequest.getHeight() != null ? widgetUpdateRequest.getHeight() : getHeight(slot);
+            validate(width, height);
+            setGeometry(slot,
+                    widgetUpdateRequest.getX() != null ? widgetUpdateRequest.getX() : getX(slot),
+                    widgetUpdateRequest.getY() != null ? widgetUpdateRequest.getY() : getY(slot),
+                    width,
+                    height);
+            setLastModifiedNanos(slot, now());
+            if (widgetUpdateRequest.getZ() != null && widgetUpdateRequest.getZ() != getZ(slot)) {
+                removeFromZOrder(slot);
+                insert(slot, widgetUpdateRequest.getZ());
+            }
+            return toWidget(slot);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public Widget delete(UUID id) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = find(id);
+            if (slot == NO_SLOT)
+                return null;
+            Widget widget = toWidget(slot);
+            removeFromZOrder(slot);
+            free(id, slot);
+            return widget;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // walks the z order until skip + take widgets inside the bounds are found
+    private List<Widget> pageWithin(int skip, int take, int leftBound, int rightBound, int upperBound, int lowerBound) {
+        long wanted = (long) skip + take;
+        ZoneId zone = ZoneId.systemDefault();
+        List<Widget> page = new ArrayList<>(take);
+        for (int i = 0, found = 0; i < size && found < wanted; i++) {
+            int slot = slotsSortedByZ[i];
+            if (isWithin(slot, leftBound, rightBound, upperBound, lowerBound) && found++ >= skip)
+                page.add(toWidget(slot, zone));
+        }
+        return Collections.unmodifiableList(page);
+    }
+
+    // scans the records and sorts what matched by z
+    private List<Widget> within(int leftBound, int rightBound, int upperBound, int lowerBound) {
+        Matches matches = new Matches();
+        scanWithin(leftBound, rightBound, upperBound, lowerBound, matches);
+        Arrays.sort(matches.keys, 0, matches.count);
+        ZoneId zone = ZoneId.systemDefault();
+        Widget[] widgets = new Widget[matches.count];
+        for (int i = 0; i < matches.count; i++)
+            widgets[i] = toWidget((int) matches.keys[i], zone);
+        return List.of(widgets);
+    }
+
+    private int getTopZ() {
+        if (size == 0)
+            return 0;
+        return getZ(slotsSortedByZ[size - 1]) + 1; // TODO: can cause type overflow
+    }
+
+    // the first position in slotsSortedByZ whose z is not less than the given one
+    private int positionOf(int z) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (getZ(slotsSortedByZ[middle]) < z)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    private void insert(int slot, int z) {
+        int position = positionOf(z);
+        long now = getLastModifiedNanos(slot);
+        // shifting the run of consecutive widgets by one doesn't change their order, so they are shifted in place
+        for (int i = position, shiftedZ = z; i < size && getZ(slotsSortedByZ[i]) == shiftedZ; i++) {
+            setZ(slotsSortedByZ[i], ++shiftedZ); // TODO: can cause type overflow
+            setLastModifiedNanos(slotsSortedByZ[i], now);
+        }
+        setZ(slot, z);
+        System.arraycopy(slotsSortedByZ, position, slotsSortedByZ, position + 1, size - position);
+        slotsSortedByZ[position] = slot;
+        size++;
+    }
+
+    private void removeFromZOrder(int slot) {
+        int position = positionOf(getZ(slot));
+        size--;
+        System.arraycopy(slotsSortedByZ, position + 1, slotsSortedByZ, position, size - position);
+    }
+
+    // slots of the widgets found by scanWithin, each with its z in the upper half of a long, so sorting them sorts the slots by z
+    static final class Matches {
+        private long[] keys = new long[16];
+        private int count;
+
+        void add(int slot, int z) {
+            if (count == keys.length)
+                keys = Arrays.copyOf(keys, count * 2);
+            keys[count++] = (long) z << 32 | slot;
+        }
+    }
+}
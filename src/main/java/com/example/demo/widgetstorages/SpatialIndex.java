@@ -0,0 +1,91 @@
+package com.example.demo.widgetstorages;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+public interface SpatialIndex {
+    void put(StoredWidget widget);
+
+    // lets an index build itself at once when it is filled from scratch
+    default void putAll(Collection<StoredWidget> widgets) {
+        for (StoredWidget widget : widgets)
+            put(widget);
+    }
+
+    void remove(StoredWidget widget);
+
+    // has to be called after the widget has been moved, old bounds are used to find it in the index
+    void update(StoredWidget widget, int oldLeftBound, int oldRightBound, int oldUpperBound, int oldLowerBound);
+
+    // widgets lying entirely inside the given bounds, in no particular order
+    Collection<StoredWidget> within(int leftBound, int rightBound, int upperBound, int lowerBound);
+
+    // widgets having at least a point inside the given bounds, bounds included, in no particular order
+    Collection<StoredWidget> intersecting(int leftBound, int rightBound, int upperBound, int lowerBound);
+
+    // widgets covering the point, bounds included, in no particular order
+    default Collection<StoredWidget> containing(int x, int y) {
+        return intersecting(x, x, y, y);
+    }
+
+    // the widgets matching each of the rectangles given as {left, right, upper, lower}, in no particular order;
+    // this one queries the rectangles one by one
+    default List<Collection<StoredWidget>> matchingEach(BoundsMode boundsMode, int[][] rectangles) {
+        List<Collection<StoredWidget>> widgets = new ArrayList<>(rectangles.length);
+        for (int[] rectangle : rectangles)
+            widgets.add(boundsMode.find(this, rectangle[0], rectangle[1], rectangle[2], rectangle[3]));
+        return widgets;
+    }
+
+    default int countWithin(int leftBound, int rightBound, int upperBound, int lowerBound) {
+        return within(leftBound, rightBound, upperBound, lowerBound).size();
+    }
+
+    default int countIntersecting(int leftBound, int rightBound, int upperBound, int lowerBound) {
+        return intersecting(leftBound, rightBound, upperBound, lowerBound).size();
+    }
+
+    // the smallest bounds holding all the widgets as {left, right, upper, lower}, or null when there are none
+    default int[] boundingBox() {
+        int[] boundingBox = null;
+        for (StoredWidget widget : intersecting(Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE)) {
+            if (boundingBox == null) {
+                boundingBox = new int[]{widget.getLeftBound(), widget.getRightBound(), widget.getUpperBound(), widget.getLowerBound()};
+                continue;
+            }
+            boundingBox[0] = Math.min(boundingBox[0], widget.getLeftBound());
+            boundingBox[1] = Math.max(boundingBox[1], widget.getRightBound());
+            boundingBox[2] = Math.max(boundingBox[2], widget.getUpperBound());
+            boundingBox[3] = Math.min(boundingBox[3], widget.getLowerBound());
+        }
+        return boundingBox;
+    }
+
+    // up to k widgets nearest to the bounds (see StoredWidget.squaredDistanceTo), nearest first;
+    // this one grows a square around the bounds until it holds k widgets, then takes the k nearest from a square reaching the k-th of them
+    default List<StoredWidget> nearest(int leftBound, int rightBound, int upperBound, int lowerBound, int k) {
+        Comparator<StoredWidget> byDistance = Comparator.comparingDouble(widget -> widget.squaredDistanceTo(leftBound, rightBound, upperBound, lowerBound));
+        List<StoredWidget> widgets;
+        for (long margin = 1; ; margin *= 4) {
+            int left = (int) Math.max((long) leftBound - margin, Integer.MIN_VALUE);
+            int right = (int) Math.min((long) rightBound + margin, Integer.MAX_VALUE);
+            int upper = (int) Math.min((long) upperBound + margin, Integer.MAX_VALUE);
+            int lower = (int) Math.max((long) lowerBound - margin, Integer.MIN_VALUE);
+            widgets = new ArrayList<>(intersecting(left, right, upper, lower));
+            if (widgets.size() >= k || (left == Integer.MIN_VALUE && right == Integer.MAX_VALUE && upper == Integer.MAX_VALUE && lower == Integer.MIN_VALUE))
+                break;
+        }
+        widgets.sort(byDistance);
+        if (widgets.size() >= k) {
+            // a widget nearer than the k-th one can be in a corner outside of the square, which is only reached by the circle of its distance
+            long margin = (long) Math.ceil(Math.sqrt(widgets.get(k - 1).squaredDistanceTo(leftBound, rightBound, upperBound, lowerBound)));
+            widgets = new ArrayList<>(intersecting(
+                    (int) Math.max((long) leftBound - margin, Integer.MIN_VALUE), (int) Math.min((long) rightBound + margin, Integer.MAX_VALUE),
+                    (int) Math.min((long) upperBound + margin, Integer.MAX_VALUE), (int) Math.max((long) lowerBound - margin, Integer.MIN_VALUE)));
+            widgets.sort(byDistance);
+        }
+        return widgets.size() > k ? widgets.subList(0, k) : widgets;
+    }
+}
@@ -11,6 +11,7 @@ public class StoredWidget implements Comparable<StoredWidget> {
     private int width;
     private int height;
     private ZonedDateTime lastModifiedDate;
+    private long orderKey; // position in ZOrdering.DENSE, the widget isn't considered modified when it changes
 
     public StoredWidget(UUID id, int x, int y, int z, int width, int height) {
         this.id = id;
@@ -21,6 +22,20 @@ public class StoredWidget implements Comparable<StoredWidget> {
         setHeight(height);
     }
 
+    // restores a widget exactly as it was, lastModifiedDate included; skips the setters, so nothing is marked modified
+    StoredWidget(UUID id, int x, int y, int z, int width, int height, ZonedDateTime lastModifiedDate, long orderKey) {
+        if (width <= 0 || height <= 0)
+            throw new IllegalArgumentException("width and height must be greater than zero");
+        this.id = id;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.width = width;
+        this.height = height;
+        this.lastModifiedDate = lastModifiedDate;
+        this.orderKey = orderKey;
+    }
+
     public UUID getId() {
         return id;
     }
@@ -52,6 +67,14 @@ public class StoredWidget implements Comparable<StoredWidget> {
         updateLastModifiedDate();
     }
 
+    public long getOrderKey() {
+        return orderKey;
+    }
+
+    public void setOrderKey(long orderKey) {
+        this.orderKey = orderKey;
+    }
+
     public int getWidth() {
         return width;
     }
@@ -102,4 +125,22 @@ public class StoredWidget implements Comparable<StoredWidget> {
     public int getLowerBound() {
         return y - height / 2;
     }
+
+    public boolean isWithin(int leftBound, int rightBound, int upperBound, int lowerBound) {
+        return leftBound <= getLeftBound() && getRightBound() <= rightBound
+                && getUpperBound() <= upperBound && lowerBound <= getLowerBound();
+    }
+
+    // euclidean, between the nearest points of the widget and the bounds, so it is 0 when they intersect
+    public double squaredDistanceTo(int leftBound, int rightBound, int upperBound, int lowerBound) {
+        double dx = Math.max(0, Math.max((long) getLeftBound() - rightBound, (long) leftBound - getRightBound()));
+        double dy = Math.max(0, Math.max((long) getLowerBound() - upperBound, (long) lowerBound - getUpperBound()));
+        return dx * dx + dy * dy;
+    }
+
+    // the bounds are included, like in isWithin
+    public boolean intersects(int leftBound, int rightBound, int upperBound, int lowerBound) {
+        return getLeftBound() <= rightBound && leftBound <= getRightBound()
+                && getLowerBound() <= upperBound && lowerBound <= getUpperBound();
+    }
 }
\ No newline at end of file
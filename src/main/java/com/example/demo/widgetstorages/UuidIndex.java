@@ -0,0 +1,81 @@
+package com.example.demo.widgetstorages;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+// UuidTable from a widget id to a non-negative int (a slot), the values are a plain int array
+public class UuidIndex extends UuidTable<int[]> {
+    public static final int NOT_FOUND = -1; // also marks an empty cell
+
+    public UuidIndex() {
+        this(MIN_CAPACITY);
+    }
+
+    public UuidIndex(int expectedSize) {
+        super(expectedSize);
+    }
+
+    @Override
+    int[] newValues(int capacity) {
+        int[] values = new int[capacity];
+        Arrays.fill(values, NOT_FOUND);
+        return values;
+    }
+
+    @Override
+    int capacity(int[] values) {
+        return values.length;
+    }
+
+    @Override
+    boolean isEmpty(int[] values, int cell) {
+        return values[cell] == NOT_FOUND;
+    }
+
+    @Override
+    void moveValue(int[] from, int fromCell, int[] to, int toCell) {
+        to[toCell] = from[fromCell];
+    }
+
+    @Override
+    void clearValue(int cell) {
+        values[cell] = NOT_FOUND;
+    }
+
+    @Override
+    void clearValues() {
+        Arrays.fill(values, NOT_FOUND);
+    }
+
+    public int get(UUID id) {
+        return get(id.getMostSignificantBits(), id.getLeastSignificantBits());
+    }
+
+    public int get(long mostSignificantBits, long leastSignificantBits) {
+        int[] values = this.values;
+        return values[find(values, mostSignificantBits, leastSignificantBits)];
+    }
+
+    // returns the previous value or NOT_FOUND
+    public int put(UUID id, int value) {
+        return put(id.getMostSignificantBits(), id.getLeastSignificantBits(), value);
+    }
+
+    public int put(long mostSignificantBits, long leastSignificantBits, int value) {
+        if (value < 0)
+            throw new IllegalArgumentException("value can not be less than zero");
+        int cell = findOrAdd(mostSignificantBits, leastSignificantBits);
+        int previousValue = values[cell];
+        values[cell] = value;
+        return previousValue;
+    }
+
+    // returns the removed value or NOT_FOUND
+    public int remove(UUID id) {
+        int cell = find(id);
+        int removedValue = values[cell];
+        if (removedValue != NOT_FOUND)
+            removeAt(cell);
+        return removedValue;
+    }
+}
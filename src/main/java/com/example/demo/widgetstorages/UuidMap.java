@@ -0,0 +1,72 @@
+package com.example.demo.widgetstorages;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+// UuidTable with object values, it replaces HashMap<UUID, V> in the storages: no node per entry and the two longs of the id are compared in place;
+// null marks an empty cell, so null values aren't allowed
+public class UuidMap<V> extends UuidTable<V[]> {
+    public UuidMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public UuidMap(int expectedSize) {
+        super(expectedSize);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    V[] newValues(int capacity) {
+        return (V[]) new Object[capacity];
+    }
+
+    @Override
+    int capacity(V[] values) {
+        return values.length;
+    }
+
+    @Override
+    boolean isEmpty(V[] values, int cell) {
+        return values[cell] == null;
+    }
+
+    @Override
+    void moveValue(V[] from, int fromCell, V[] to, int toCell) {
+        to[toCell] = from[fromCell];
+    }
+
+    @Override
+    void clearValue(int cell) {
+        values[cell] = null;
+    }
+
+    @Override
+    void clearValues() {
+        Arrays.fill(values, null);
+    }
+
+    // can be called under an optimistic read of a StampedLock, see UuidTable.find
+    public V get(UUID id) {
+        V[] values = this.values;
+        return values[find(values, id.getMostSignificantBits(), id.getLeastSignificantBits())];
+    }
+
+    // returns the previous value or null
+    public V put(UUID id, V value) {
+        if (value == null)
+            throw new IllegalArgumentException("value can not be null");
+        int cell = findOrAdd(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        V previousValue = values[cell];
+        values[cell] = value;
+        return previousValue;
+    }
+
+    // returns the removed value or null
+    public V remove(UUID id) {
+        int cell = find(id);
+        V removedValue = values[cell];
+        if (removedValue != null)
+            removeAt(cell);
+        return removedValue;
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.demo.widgetstorages;
+
+import java.util.UUID;
+
+// open-addressing hash table keyed by the two longs of a UUID, so there is no object per entry and no UUID.hashCode/equals calls;
+// linear probing, removal shifts the following entries back instead of leaving tombstones; a subclass decides how the values are kept
+// (A is the type of the value array) and which value marks an empty cell; not thread-safe
+public abstract class UuidTable<A> {
+    static final int MIN_CAPACITY = 16;
+
+    private long[] mostSignificantBits;
+    private long[] leastSignificantBits;
+    A values;
+    private int size;
+
+    UuidTable(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3L / 4 < expectedSize) // the load factor is kept under 3/4
+            capacity <<= 1;
+        allocate(capacity);
+    }
+
+    // random UUIDs are well spread already, but ids made some other way may not be, so the bits are mixed (murmur3 finalizer)
+    static int hash(long mostSignificantBits, long leastSignificantBits) {
+        long hash = mostSignificantBits * 0x9e3779b97f4a7c15L ^ leastSignificantBits;
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return (int) (hash ^ (hash >>> 33));
+    }
+
+    // a value array of the given capacity with every cell empty
+    abstract A newValues(int capacity);
+
+    abstract int capacity(A values);
+
+    abstract boolean isEmpty(A values, int cell);
+
+    abstract void moveValue(A from, int fromCell, A to, int toCell);
+
+    abstract void clearValue(int cell);
+
+    abstract void clearValues();
+
+    private void allocate(int capacity) {
+        mostSignificantBits = new long[capacity];
+        leastSignificantBits = new long[capacity];
+        values = newValues(capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        clearValues();
+        size = 0;
+    }
+
+    // the cell holding the id or the empty cell where it would be put, within the given value array;
+    // can be called while a writer changes the table, under an optimistic read of a StampedLock: the cell may be wrong then,
+    // but it is inside the value array and the call never fails or hangs, so the reader gets to validate its stamp
+    int find(A values, long mostSignificantBits, long leastSignificantBits) {
+        long[] allMostSignificantBits = this.mostSignificantBits;
+        long[] allLeastSignificantBits = this.leastSignificantBits;
+        int mask = Math.min(capacity(values), Math.min(allMostSignificantBits.length, allLeastSignificantBits.length)) - 1;
+        int cell = hash(mostSignificantBits, leastSignificantBits) & mask;
+        for (int probes = 0; probes < mask && !isEmpty(values, cell)
+                && (allMostSignificantBits[cell] != mostSignificantBits || allLeastSignificantBits[cell] != leastSignificantBits); probes++)
+            cell = (cell + 1) & mask;
+        return cell;
+    }
+
+    int find(UUID id) {
+        return find(values, id.getMostSignificantBits(), id.getLeastSignificantBits());
+    }
+
+    // the cell holding the id; an id that isn't there gets a new entry whose value is still empty, for the caller to set
+    int findOrAdd(long mostSignificantBits, long leastSignificantBits) {
+        int cell = find(values, mostSignificantBits, leastSignificantBits);
+        if (isEmpty(values, cell)) {
+            if ((size + 1) > capacity(values) * 3L / 4) {
+                grow();
+                cell = find(values, mostSignificantBits, leastSignificantBits);
+            }
+            this.mostSignificantBits[cell] = mostSignificantBits;
+            this.leastSignificantBits[cell] = leastSignificantBits;
+            size++;
+        }
+        return cell;
+    }
+
+    // removes the entry in the given (non-empty) cell
+    void removeAt(int cell) {
+        int mask = capacity(values) - 1;
+        // every following entry of the run that could live in the freed cell is moved there, so probing never stops early
+        for (int next = (cell + 1) & mask; !isEmpty(values, next); next = (next + 1) & mask) {
+            int home = hash(mostSignificantBits[next], leastSignificantBits[next]) & mask;
+            if (((next - home) & mask) >= ((next - cell) & mask)) {
+                mostSignificantBits[cell] = mostSignificantBits[next];
+                leastSignificantBits[cell] = leastSignificantBits[next];
+                moveValue(values, next, values, cell);
+                cell = next;
+            }
+        }
+        clearValue(cell);
+        size--;
+    }
+
+    private void grow() {
+        long[] oldMostSignificantBits = mostSignificantBits;
+        long[] oldLeastSignificantBits = leastSignificantBits;
+        A oldValues = values;
+        int oldCapacity = capacity(oldValues);
+        allocate(oldCapacity * 2);
+        for (int i = 0; i < oldCapacity; i++) {
+            if (isEmpty(oldValues, i))
+                continue;
+            int cell = find(values, oldMostSignificantBits[i], oldLeastSignificantBits[i]);
+            mostSignificantBits[cell] = oldMostSignificantBits[i];
+            leastSignificantBits[cell] = oldLeastSignificantBits[i];
+            moveValue(oldValues, i, values, cell);
+        }
+    }
+}
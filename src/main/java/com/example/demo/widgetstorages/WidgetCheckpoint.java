@@ -0,0 +1,186 @@
+package com.example.demo.widgetstorages;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+// binary image of a storage written through a memory-mapped file: header (magic, log position, count), widget records sorted by z, crc;
+// a new checkpoint is written next to the old one and moved over it once synced, so the file is always a whole checkpoint
+public class WidgetCheckpoint implements AutoCloseable {
+    private static final int MAGIC = 0x57434b31;
+    private static final int HEADER_SIZE = 4 + 8 + 4;
+    private static final int CRC_SIZE = 4;
+
+    private final Path path;
+    private final Path temporaryPath;
+    private final long intervalMillis;
+    private ScheduledExecutorService scheduler;
+    private volatile Exception failure;
+
+    public WidgetCheckpoint(Path path) {
+        this(path, 0);
+    }
+
+    // with intervalMillis greater than zero the storage writes a checkpoint every intervalMillis by itself
+    public WidgetCheckpoint(Path path, long intervalMillis) {
+        if (intervalMillis < 0)
+            throw new IllegalArgumentException("intervalMillis can not be less than zero");
+        this.path = path;
+        this.temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+        this.intervalMillis = intervalMillis;
+    }
+
+    // the widgets of the checkpoint sorted by z and the position in the log the checkpoint was taken at, null if there is no checkpoint yet
+    Snapshot load() throws IOException {
+        if (!Files.exists(path))
+            return null;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + CRC_SIZE || size > Integer.MAX_VALUE)
+                throw new IOException("checkpoint is corrupted");
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int magic = buffer.getInt();
+            long logPosition = buffer.getLong();
+            int count = buffer.getInt();
+            if (magic != MAGIC || count < 0 || (long) count * WidgetLog.PUT_SIZE != size - HEADER_SIZE - CRC_SIZE)
+                throw new IOException("checkpoint is corrupted");
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate().rewind().limit((int) size - CRC_SIZE));
+            if ((int) crc.getValue() != buffer.getInt((int) size - CRC_SIZE))
+                throw new IOException("checkpoint is corrupted");
+            List<StoredWidget> widgets = new ArrayList<>(count);
+            ZoneId zone = ZoneId.systemDefault();
+            for (int i = 0; i < count; i++)
+                widgets.add(WidgetLog.getWidget(buffer, zone));
+            return new Snapshot(widgets, logPosition);
+        }
+    }
+
+    // maps a new checkpoint file for the given number of widgets; only one checkpoint can be written at a time
+    Writer begin(int count, long logPosition) throws IOException {
+        long size = HEADER_SIZE + (long) count * WidgetLog.PUT_SIZE + CRC_SIZE;
+        if (size > Integer.MAX_VALUE)
+            throw new IOException("too many widgets for one checkpoint");
+        FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MAGIC);
+            buffer.putLong(logPosition);
+            buffer.putInt(count);
+            return new Writer(channel, buffer);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // runs the checkpoint every intervalMillis; a failed checkpoint is tried again next time, the last failure is thrown by close
+    void schedule(Callable<?> checkpoint) {
+        if (intervalMillis == 0)
+            return;
+        synchronized (this) {
+            if (scheduler != null)
+                throw new IllegalStateException("checkpoint is already used by a storage");
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "widget-checkpointer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                checkpoint.call();
+                failure = null;
+            } catch (Exception e) {
+                failure = e;
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // stops writing checkpoints; the storage has to be closed before its log
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (scheduler == null)
+                return;
+            scheduler.shutdown();
+        }
+        try {
+            scheduler.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Exception lastFailure = failure;
+        if (lastFailure instanceof IOException)
+            throw (IOException) lastFailure;
+        if (lastFailure != null)
+            throw new IOException(lastFailure);
+    }
+
+    static final class Snapshot {
+        private final List<StoredWidget> widgets;
+        private final long logPosition;
+
+        private Snapshot(List<StoredWidget> widgets, long logPosition) {
+            this.widgets = widgets;
+            this.logPosition = logPosition;
+        }
+
+        List<StoredWidget> getWidgets() {
+            return widgets;
+        }
+
+        long getLogPosition() {
+            return logPosition;
+        }
+    }
+
+    // put only copies into memory, so a storage without a log can call it under its lock;
+    // syncing the file to the disk is left to finish, which is called without the lock
+    final class Writer {
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+
+        private Writer(FileChannel channel, MappedByteBuffer buffer) {
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        void put(StoredWidget widget) {
+            WidgetLog.putWidget(buffer, widget);
+        }
+
+        // the file is replaced by a rename, mind that some systems don't allow it while an old mapping of the file is alive
+        void finish() throws IOException {
+            try {
+                if (buffer.remaining() != CRC_SIZE)
+                    throw new IllegalStateException("checkpoint got a different number of widgets than it was begun with");
+                CRC32 crc = new CRC32();
+                crc.update(buffer.duplicate().flip());
+                buffer.putInt((int) crc.getValue());
+                buffer.force();
+            } finally {
+                channel.close();
+            }
+            Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        void abort() throws IOException {
+            channel.close();
+            Files.deleteIfExists(temporaryPath);
+        }
+    }
+}
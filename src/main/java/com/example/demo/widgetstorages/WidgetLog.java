@@ -0,0 +1,333 @@
+package com.example.demo.widgetstorages;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+// append-only write-ahead log of widget after-images and deletions; everything a storage operation writes goes into one frame
+// (length, crc, records), so a frame torn by a crash is dropped as a whole on replay;
+// frames are written and synced by a background thread, so concurrent writers share one fsync
+public class WidgetLog implements AutoCloseable {
+    public static final long DEFAULT_SYNC_INTERVAL_MILLIS = 5;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 256;
+
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    static final int PUT_SIZE = 1 + 16 + 5 * 4 + 8 + 8 + 4;
+    private static final int REMOVE_SIZE = 1 + 16;
+    private static final int FRAME_HEADER_SIZE = 8;
+
+    public enum Durability {
+        // the operation returns once its frame is synced to the disk
+        GROUP_COMMIT,
+        // the operation returns at once, frames written in the last sync interval can be lost
+        ASYNC
+    }
+
+    private final FileChannel channel;
+    private final Durability durability;
+    private final long syncIntervalMillis;
+    private final int maxBatchSize;
+    private final Object monitor = new Object();
+    private final CRC32 crc = new CRC32();
+    private final Thread syncer;
+    private ByteBuffer frame = ByteBuffer.allocate(1024); // records of the operation in progress, only touched under the storage write lock
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024); // committed frames not written yet, guarded by monitor
+    private ByteBuffer writing = ByteBuffer.allocate(64 * 1024); // owned by the syncer
+    private long committedFrames;
+    private long committedPosition; // where the next frame starts in the file
+    private long syncedFrames;
+    private volatile boolean replayed;
+    private volatile boolean closed; // written under monitor, also read without it to reject changes early
+    private IOException failure;
+
+    public WidgetLog(Path path) throws IOException {
+        this(path, Durability.GROUP_COMMIT, DEFAULT_SYNC_INTERVAL_MILLIS, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    // the frames are synced once maxBatchSize of them have piled up or syncIntervalMillis after the first one, whatever comes first
+    public WidgetLog(Path path, Durability durability, long syncIntervalMillis, int maxBatchSize) throws IOException {
+        if (syncIntervalMillis < 0)
+            throw new IllegalArgumentException("syncIntervalMillis can not be less than zero");
+        if (maxBatchSize <= 0)
+            throw new IllegalArgumentException("maxBatchSize must be greater than zero");
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.durability = durability;
+        this.syncIntervalMillis = syncIntervalMillis;
+        this.maxBatchSize = maxBatchSize;
+        this.syncer = new Thread(this::sync, "widget-log-syncer");
+        this.syncer.setDaemon(true);
+        this.syncer.start();
+    }
+
+    static void putWidget(ByteBuffer buffer, StoredWidget widget) {
+        buffer.put(PUT);
+        buffer.putLong(widget.getId().getMostSignificantBits());
+        buffer.putLong(widget.getId().getLeastSignificantBits());
+        buffer.putInt(widget.getX());
+        buffer.putInt(widget.getY());
+        buffer.putInt(widget.getZ());
+        buffer.putInt(widget.getWidth());
+        buffer.putInt(widget.getHeight());
+        buffer.putLong(widget.getOrderKey());
+        Instant lastModifiedDate = widget.getLastModifiedDate().toInstant();
+        buffer.putLong(lastModifiedDate.getEpochSecond());
+        buffer.putInt(lastModifiedDate.getNano());
+    }
+
+    // reads a record put by putWidget
+    static StoredWidget getWidget(ByteBuffer buffer, ZoneId zone) {
+        buffer.get();
+        UUID id = new UUID(buffer.getLong(), buffer.getLong());
+        int x = buffer.getInt();
+        int y = buffer.getInt();
+        int z = buffer.getInt();
+        int width = buffer.getInt();
+        int height = buffer.getInt();
+        long orderKey = buffer.getLong();
+        ZonedDateTime lastModifiedDate = ZonedDateTime.ofInstant(Instant.ofEpochSecond(buffer.getLong(), buffer.getInt()), zone);
+        return new StoredWidget(id, x, y, z, width, height, lastModifiedDate, orderKey);
+    }
+
+    private static ByteBuffer ensureCapacity(ByteBuffer buffer, int bytes) {
+        if (buffer.remaining() >= bytes)
+            return buffer;
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+        buffer.flip();
+        return larger.put(buffer);
+    }
+
+    // reads the widgets back as they were after the last complete frame and cuts off whatever follows it; has to be called once, before anything is logged
+    public List<StoredWidget> replay() throws IOException {
+        return replay(List.of(), 0);
+    }
+
+    // the same, but starts with the widgets of a checkpoint and the frames logged after it
+    public List<StoredWidget> replay(Collection<StoredWidget> checkpointWidgets, long checkpointPosition) throws IOException {
+        if (replayed)
+            throw new IllegalStateException("log is already replayed");
+        replayed = true;
+        LinkedHashMap<UUID, StoredWidget> widgets = toMap(checkpointWidgets);
+        long size = channel.size();
+        if (checkpointPosition > size)
+            throw new IOException("log ends before the checkpoint");
+        long position = applyFrames(widgets, checkpointPosition, size);
+        channel.truncate(position);
+        channel.position(position);
+        synchronized (monitor) {
+            committedPosition = position;
+        }
+        return new ArrayList<>(widgets.values());
+    }
+
+    // the widgets of a checkpoint with the frames from checkpointPosition to endPosition applied, which have to be synced already;
+    // only reads the file, so it can be called while other frames are logged
+    List<StoredWidget> read(Collection<StoredWidget> checkpointWidgets, long checkpointPosition, long endPosition) throws IOException {
+        LinkedHashMap<UUID, StoredWidget> widgets = toMap(checkpointWidgets);
+        if (applyFrames(widgets, checkpointPosition, endPosition) != endPosition)
+            throw new IOException("log is corrupted before position " + endPosition);
+        return new ArrayList<>(widgets.values());
+    }
+
+    private static LinkedHashMap<UUID, StoredWidget> toMap(Collection<StoredWidget> checkpointWidgets) {
+        LinkedHashMap<UUID, StoredWidget> widgets = new LinkedHashMap<>();
+        for (StoredWidget widget : checkpointWidgets)
+            widgets.put(widget.getId(), widget);
+        return widgets;
+    }
+
+    // applies the complete frames between the positions to the widgets, returns where the first incomplete or torn frame starts
+    private long applyFrames(LinkedHashMap<UUID, StoredWidget> widgets, long position, long endPosition) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER_SIZE);
+        CRC32 frameCrc = new CRC32(); // not crc, read may run while a frame is committed
+        ZoneId zone = ZoneId.systemDefault();
+        while (endPosition - position >= FRAME_HEADER_SIZE) {
+            header.clear();
+            readFully(header, position);
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (length < 0 || length > endPosition - position - FRAME_HEADER_SIZE)
+                break;
+            ByteBuffer records = ByteBuffer.allocate(length);
+            readFully(records, position + FRAME_HEADER_SIZE);
+            frameCrc.reset();
+            frameCrc.update(records.array(), 0, length);
+            if ((int) frameCrc.getValue() != checksum)
+                break;
+            records.flip();
+            while (records.hasRemaining()) {
+                if (records.get(records.position()) == PUT) {
+                    StoredWidget widget = getWidget(records, zone);
+                    widgets.put(widget.getId(), widget);
+                } else {
+                    records.get();
+                    widgets.remove(new UUID(records.getLong(), records.getLong()));
+                }
+            }
+            position += FRAME_HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new EOFException();
+        }
+    }
+
+    public void put(StoredWidget widget) {
+        frame = ensureCapacity(frame, PUT_SIZE);
+        putWidget(frame, widget);
+    }
+
+    public void remove(UUID id) {
+        frame = ensureCapacity(frame, REMOVE_SIZE);
+        frame.put(REMOVE);
+        frame.putLong(id.getMostSignificantBits());
+        frame.putLong(id.getLeastSignificantBits());
+    }
+
+    // throws if nothing can be logged any more: the log has been closed, or writing it has failed
+    void ensureOpen() {
+        if (closed)
+            throw new IllegalStateException("log is closed", failure);
+    }
+
+    // seals the records of the operation into a frame, returns the number of the frame to wait for
+    public long commit() {
+        synchronized (monitor) {
+            if (frame.position() == 0)
+                return committedFrames;
+            if (closed)
+                throw new IllegalStateException("log is closed");
+            if (!replayed)
+                throw new IllegalStateException("log has to be replayed before anything is logged");
+            int length = frame.position();
+            crc.reset();
+            crc.update(frame.array(), 0, length);
+            pending = ensureCapacity(pending, FRAME_HEADER_SIZE + length);
+            pending.putInt(length);
+            pending.putInt((int) crc.getValue());
+            pending.put(frame.array(), 0, length);
+            frame.clear();
+            committedFrames++;
+            committedPosition += FRAME_HEADER_SIZE + length;
+            if (committedFrames - syncedFrames == 1 || committedFrames - syncedFrames >= maxBatchSize)
+                monitor.notifyAll();
+            return committedFrames;
+        }
+    }
+
+    // blocks until the given frame is on the disk, returns at once in ASYNC mode
+    public void awaitDurable(long frameNumber) {
+        if (durability == Durability.ASYNC)
+            return;
+        awaitSynced(frameNumber);
+    }
+
+    long committedFrames() {
+        synchronized (monitor) {
+            return committedFrames;
+        }
+    }
+
+    long committedPosition() {
+        synchronized (monitor) {
+            return committedPosition;
+        }
+    }
+
+    // blocks until the given frame is on the disk whatever the durability is
+    void awaitSynced(long frameNumber) {
+        synchronized (monitor) {
+            while (syncedFrames < frameNumber) {
+                if (failure != null)
+                    throw new UncheckedIOException(failure);
+                try {
+                    monitor.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("interrupted while waiting for the log", e);
+                }
+            }
+        }
+    }
+
+    // syncs everything committed so far and closes the file
+    @Override
+    public void close() throws IOException {
+        synchronized (monitor) {
+            if (closed)
+                return;
+            closed = true;
+            monitor.notifyAll();
+        }
+        try {
+            syncer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if (failure != null)
+            throw failure;
+    }
+
+    private void sync() {
+        for (; ; ) {
+            long frames;
+            synchronized (monitor) {
+                try {
+                    while (!closed && committedFrames == syncedFrames)
+                        monitor.wait();
+                    long deadline = System.nanoTime() + syncIntervalMillis * 1_000_000;
+                    for (long left = syncIntervalMillis; !closed && committedFrames - syncedFrames < maxBatchSize && left > 0;
+                         left = (deadline - System.nanoTime()) / 1_000_000)
+                        monitor.wait(left);
+                } catch (InterruptedException e) {
+                    continue; // only close stops the syncer
+                }
+                if (closed && committedFrames == syncedFrames)
+                    return;
+                ByteBuffer swap = writing;
+                writing = pending;
+                pending = swap;
+                pending.clear();
+                frames = committedFrames;
+            }
+            try {
+                writing.flip();
+                while (writing.hasRemaining())
+                    channel.write(writing);
+                channel.force(false);
+            } catch (IOException e) {
+                synchronized (monitor) {
+                    failure = e;
+                    closed = true;
+                    monitor.notifyAll();
+                }
+                return;
+            } finally {
+                writing.clear();
+            }
+            synchronized (monitor) {
+                syncedFrames = frames;
+                monitor.notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.demo.widgetstorages;
+
+import com.example.demo.models.Widget;
+import com.example.demo.models.WidgetCreateRequest;
+import com.example.demo.models.WidgetUpdateRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+// mutations are put into a bounded ring buffer and applied by one writer thread, which takes the storage write lock once
+// per batch of whatever has piled up instead of once per mutation; reads go to the storage directly
+public class WidgetMutationPipeline implements AutoCloseable {
+    public static final int DEFAULT_CAPACITY = 8192;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 256;
+
+    private static final Mutation STOP = new Mutation(null);
+
+    private final WidgetStorageWithPagingAndFiltering widgetStorage;
+    private final ArrayBlockingQueue<Mutation> mutations;
+    private final int maxBatchSize;
+    private final Thread writer;
+    private final ReentrantReadWriteLock closeLock; // submitters share it, close takes it exclusively so nothing is enqueued after STOP
+    private boolean closed;
+
+    public WidgetMutationPipeline(WidgetStorageWithPagingAndFiltering widgetStorage) {
+        this(widgetStorage, DEFAULT_CAPACITY, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    public WidgetMutationPipeline(WidgetStorageWithPagingAndFiltering widgetStorage, int capacity, int maxBatchSize) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be greater than zero");
+        if (maxBatchSize <= 0)
+            throw new IllegalArgumentException("maxBatchSize must be greater than zero");
+        this.widgetStorage = widgetStorage;
+        this.mutations = new ArrayBlockingQueue<>(capacity);
+        this.maxBatchSize = maxBatchSize;
+        this.closeLock = new ReentrantReadWriteLock();
+        this.writer = new Thread(this::drain, "widget-mutation-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    public CompletableFuture<Widget> create(WidgetCreateRequest widgetCreateRequest) {
+        return submit(storage -> storage.create(widgetCreateRequest));
+    }
+
+    public CompletableFuture<Widget> update(UUID id, WidgetUpdateRequest widgetUpdateRequest) {
+        return submit(storage -> storage.update(id, widgetUpdateRequest));
+    }
+
+    public CompletableFuture<Widget> delete(UUID id) {
+        return submit(storage -> storage.delete(id));
+    }
+
+    // blocks while the buffer is full
+    private CompletableFuture<Widget> submit(Function<IWidgetStorage, Widget> action) {
+        Mutation mutation = new Mutation(action);
+        closeLock.readLock().lock();
+        try {
+            if (closed)
+                throw new IllegalStateException("pipeline is closed");
+            mutations.put(mutation);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            mutation.result.completeExceptionally(e);
+        } finally {
+            closeLock.readLock().unlock();
+        }
+        return mutation.result;
+    }
+
+    // applies everything submitted so far and stops the writer; an interrupt doesn't cut it short, the interrupt flag is restored once it is done
+    @Override
+    public void close() {
+        boolean interrupted = false;
+        closeLock.writeLock().lock();
+        try {
+            if (closed)
+                return;
+            closed = true;
+            for (; ; ) {
+                try {
+                    mutations.put(STOP);
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        for (; ; ) {
+            try {
+                writer.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    private void drain() {
+        List<Mutation> batch = new ArrayList<>(maxBatchSize);
+        List<Widget> results = new ArrayList<>(maxBatchSize);
+        List<RuntimeException> errors = new ArrayList<>(maxBatchSize);
+        boolean stopped = false;
+        while (!stopped) {
+            try {
+                batch.add(mutations.take());
+            } catch (InterruptedException e) {
+                continue; // only close stops the writer, everything accepted has to be applied
+            }
+            mutations.drainTo(batch, maxBatchSize - 1);
+            if (batch.get(batch.size() - 1) == STOP) {
+                batch.remove(batch.size() - 1);
+                stopped = true;
+            }
+            try {
+                widgetStorage.applyBatch(storage -> {
+                    for (Mutation mutation : batch) {
+                        Widget result = null;
+                        RuntimeException error = null;
+                        try {
+                            result = mutation.action.apply(storage);
+                        } catch (RuntimeException e) {
+                            error = e;
+                        }
+                        results.add(result);
+                        errors.add(error);
+                    }
+                });
+                // completing outside of the storage lock, so callbacks of the callers don't hold it
+                for (int i = 0; i < batch.size(); i++) {
+                    if (errors.get(i) == null)
+                        batch.get(i).result.complete(results.get(i));
+                    else
+                        batch.get(i).result.completeExceptionally(errors.get(i));
+                }
+            } catch (Throwable e) {
+                for (Mutation mutation : batch)
+                    mutation.result.completeExceptionally(e);
+            } finally {
+                batch.clear();
+                results.clear();
+                errors.clear();
+            }
+        }
+    }
+
+    private static final class Mutation {
+        private final Function<IWidgetStorage, Widget> action;
+        private final CompletableFuture<Widget> result = new CompletableFuture<>();
+
+        private Mutation(Function<IWidgetStorage, Widget> action) {
+            this.action = action;
+        }
+    }
+}
@@ -9,12 +9,12 @@ import java.util.concurrent.locks.StampedLock;
 import java.util.stream.Collectors;
 
 public class WidgetStorage implements IWidgetStorage {
-    private final HashMap<UUID, StoredWidget> widgetsById;
+    private final UuidMap<StoredWidget> widgetsById;
     private final TreeMap<Integer, StoredWidget> widgetsSortedByZ;
     private final StampedLock lock;
 
     public WidgetStorage() {
-        this.widgetsById = new HashMap<>();
+        this.widgetsById = new UuidMap<>();
         this.widgetsSortedByZ = new TreeMap<>();
         this.lock = new StampedLock();
     }
@@ -88,6 +88,30 @@ public class WidgetStorage implements IWidgetStorage {
         }
     }
 
+    // the range is a sub map of the z order, so skip costs as many steps as it skips, but nothing outside of the range is looked at
+    public List<Widget> readZRange(int fromZ, int toZ, Integer skip, Integer take) {
+        if (skip == null) skip = 0;
+        if (take == null) take = 10;
+        if (skip < 0 || take < 0) throw new IllegalArgumentException();
+        if (take > 500) throw new IllegalArgumentException();
+        if (fromZ > toZ) throw new IllegalArgumentException();
+        long stamp = lock.tryOptimisticRead();
+        try {
+            for (; ; stamp = lock.readLock()) {
+                if (stamp == 0L)
+                    continue;
+                List<Widget> widgets = widgetsSortedByZ.subMap(fromZ, true, toZ, true).values().stream()
+                        .skip(skip).limit(take).map(WidgetStorage::toWidget).collect(Collectors.toUnmodifiableList());
+                if (!lock.validate(stamp))
+                    continue;
+                return widgets;
+            }
+        } finally {
+            if (StampedLock.isReadLockStamp(stamp))
+                lock.unlockRead(stamp);
+        }
+    }
+
     public Widget update(UUID id, WidgetUpdateRequest widgetUpdateRequest) {
         long stamp = lock.tryOptimisticRead();
         try {
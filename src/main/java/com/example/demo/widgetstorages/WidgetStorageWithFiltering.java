@@ -10,21 +10,21 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class WidgetStorageWithFiltering implements IWidgetStorage {
-    private final HashMap<UUID, StoredWidget> widgetsById;
+    private static final int SCAN_RATIO = 6; // the z order is scanned instead of sorting when more than 1/6 of the widgets are inside the bounds
+
+    private final UuidMap<StoredWidget> widgetsById;
     private final TreeMap<Integer, StoredWidget> widgetsSortedByZ;
-    private final MultiTreeMap widgetsSortedByLeftBound;
-    private final MultiTreeMap widgetsSortedByRightBound;
-    private final MultiTreeMap widgetsSortedByUpperBound;
-    private final MultiTreeMap widgetsSortedByLowerBound;
+    private final SpatialIndex widgetsIndexedByBounds;
     private final StampedLock lock;
 
     public WidgetStorageWithFiltering() {
-        this.widgetsById = new HashMap<>();
+        this(new MultiTreeMapSpatialIndex());
+    }
+
+    public WidgetStorageWithFiltering(SpatialIndex widgetsIndexedByBounds) {
+        this.widgetsById = new UuidMap<>();
         this.widgetsSortedByZ = new TreeMap<>();
-        this.widgetsSortedByLeftBound = new MultiTreeMap(StoredWidget::getLeftBound);
-        this.widgetsSortedByRightBound = new MultiTreeMap(StoredWidget::getRightBound);
-        this.widgetsSortedByUpperBound = new MultiTreeMap(StoredWidget::getUpperBound);
-        this.widgetsSortedByLowerBound = new MultiTreeMap(StoredWidget::getLowerBound);
+        this.widgetsIndexedByBounds = widgetsIndexedByBounds;
         this.lock = new StampedLock();
     }
 
@@ -48,10 +48,7 @@ public class WidgetStorageWithFiltering implements IWidgetStorage {
         try {
             newWidget.setZ(putOnTop ? getTopZ() : widgetCreateRequest.getZ()); // actually, we don't need write-lock here, but we'll need it in any case later, so using tryConvertToWriteLock is considered as overhead
             widgetsById.put(id, newWidget);
-            widgetsSortedByLeftBound.put(newWidget);
-            widgetsSortedByRightBound.put(newWidget);
-            widgetsSortedByUpperBound.put(newWidget);
-            widgetsSortedByLowerBound.put(newWidget);
+            widgetsIndexedByBounds.put(newWidget);
             if (putOnTop) {
                 widgetsSortedByZ.put(newWidget.getZ(), newWidget);
             } else {
@@ -85,6 +82,10 @@ public class WidgetStorageWithFiltering implements IWidgetStorage {
     }
 
     public List<Widget> read(Integer leftBound, Integer rightBound, Integer upperBound, Integer lowerBound) {
+        return read(leftBound, rightBound, upperBound, lowerBound, BoundsMode.WITHIN);
+    }
+
+    public List<Widget> read(Integer leftBound, Integer rightBound, Integer upperBound, Integer lowerBound, BoundsMode boundsMode) {
         boolean useBounds = (leftBound != null && rightBound != null && upperBound != null && lowerBound != null);
         if (useBounds) {
             if (leftBound > rightBound || upperBound < lowerBound)
@@ -97,15 +98,7 @@ public class WidgetStorageWithFiltering implements IWidgetStorage {
         try {
             Stream<StoredWidget> widgetsStream;
             if (useBounds) {
-                Stream<StoredWidget> widgetsFilteredByLeftBound =
-                        widgetsSortedByLeftBound.unwrappedTail(leftBound).stream();
-                Stream<StoredWidget> widgetsFilteredByLeftAndRightBound =
-                        widgetsSortedByRightBound.filterHeadFor(widgetsFilteredByLeftBound, rightBound);
-                Stream<StoredWidget> widgetsFilteredByLeftAndRightAndUpperBound =
-                        widgetsSortedByUpperBound.filterHeadFor(widgetsFilteredByLeftAndRightBound, upperBound);
-                Stream<StoredWidget> widgetsFilteredByLeftAndRightAndUpperAndLowerBound =
-                        widgetsSortedByLowerBound.filterTailFor(widgetsFilteredByLeftAndRightAndUpperBound, lowerBound);
-                widgetsStream = widgetsFilteredByLeftAndRightAndUpperAndLowerBound.sorted();
+                widgetsStream = streamMatching(leftBound, rightBound, upperBound, lowerBound, boundsMode);
             } else {
                 widgetsStream = widgetsSortedByZ.values().stream();
             }
@@ -115,6 +108,32 @@ public class WidgetStorageWithFiltering implements IWidgetStorage {
         }
     }
 
+    // widgets matching the bounds in z order: a few of them are sorted, but when there are many, scanning the z order costs less than sorting them
+    private Stream<StoredWidget> streamMatching(int leftBound, int rightBound, int upperBound, int lowerBound, BoundsMode boundsMode) {
+        Collection<StoredWidget> widgets = boundsMode.find(widgetsIndexedByBounds, leftBound, rightBound, upperBound, lowerBound);
+        if (widgets.size() > widgetsSortedByZ.size() / SCAN_RATIO)
+            return widgetsSortedByZ.values().stream().filter(widget -> boundsMode.matches(widget, leftBound, rightBound, upperBound, lowerBound));
+        StoredWidget[] sortedWidgets = widgets.toArray(new StoredWidget[0]);
+        Arrays.sort(sortedWidgets);
+        return Arrays.stream(sortedWidgets);
+    }
+
+    // the range is a sub map of the z order, so skip costs as many steps as it skips, but nothing outside of the range is looked at
+    public List<Widget> readZRange(int fromZ, int toZ, Integer skip, Integer take) {
+        if (skip == null) skip = 0;
+        if (take == null) take = 10;
+        if (skip < 0 || take < 0) throw new IllegalArgumentException();
+        if (take > 500) throw new IllegalArgumentException();
+        if (fromZ > toZ) throw new IllegalArgumentException();
+        long stamp = lock.readLock();
+        try {
+            return widgetsSortedByZ.subMap(fromZ, true, toZ, true).values().stream()
+                    .skip(skip).limit(take).map(WidgetStorageWithFiltering::toWidget).collect(Collectors.toUnmodifiableList());
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
     public Widget update(UUID id, WidgetUpdateRequest widgetUpdateRequest) {
         long stamp = lock.tryOptimisticRead();
         try {
@@ -136,37 +155,30 @@ public class WidgetStorageWithFiltering implements IWidgetStorage {
                 int oldUpperBound = storedWidget.getUpperBound();
                 int oldLowerBound = storedWidget.getLowerBound();
 
-                if (widgetUpdateRequest.getX() != null)
-                    storedWidget.setX(widgetUpdateRequest.getX());
-                if (widgetUpdateRequest.getY() != null)
-                    storedWidget.setY(widgetUpdateRequest.getY());
-                if (widgetUpdateRequest.getWidth() != null)
-                    storedWidget.setWidth(widgetUpdateRequest.getWidth());
-                if (widgetUpdateRequest.getHeight() != null)
-                    storedWidget.setHeight(widgetUpdateRequest.getHeight());
-                if (widgetUpdateRequest.getZ() != null) {
-                    int oldZ = storedWidget.getZ();
-                    storedWidget.setZ(widgetUpdateRequest.getZ());
-                    if (widgetUpdateRequest.getZ() != oldZ) {
-                        widgetsSortedByZ.remove(oldZ);
+                try {
+                    if (widgetUpdateRequest.getX() != null)
+                        storedWidget.setX(widgetUpdateRequest.getX());
+                    if (widgetUpdateRequest.getY() != null)
+                        storedWidget.setY(widgetUpdateRequest.getY());
+                    if (widgetUpdateRequest.getWidth() != null)
+                        storedWidget.setWidth(widgetUpdateRequest.getWidth());
+                    if (widgetUpdateRequest.getHeight() != null)
+                        storedWidget.setHeight(widgetUpdateRequest.getHeight());
+                    if (widgetUpdateRequest.getZ() != null) {
+                        int oldZ = storedWidget.getZ();
                         storedWidget.setZ(widgetUpdateRequest.getZ());
-                        insert(storedWidget);
+                        if (widgetUpdateRequest.getZ() != oldZ) {
+                            widgetsSortedByZ.remove(oldZ);
+                            storedWidget.setZ(widgetUpdateRequest.getZ());
+                            insert(storedWidget);
+                        }
                     }
+                } finally { // the index must follow the widget even if some of the new values were rejected
+                    if (storedWidget.getLeftBound() != oldLeftBound || storedWidget.getRightBound() != oldRightBound
+                            || storedWidget.getUpperBound() != oldUpperBound || storedWidget.getLowerBound() != oldLowerBound)
+                        widgetsIndexedByBounds.update(storedWidget, oldLeftBound, oldRightBound, oldUpperBound, oldLowerBound);
                 }
 
-                int newLeftBound = storedWidget.getLeftBound();
-                if (newLeftBound != oldLeftBound)
-                    widgetsSortedByLeftBound.put(widgetsSortedByLeftBound.remove(oldLeftBound, storedWidget));
-                int newRightBound = storedWidget.getRightBound();
-                if (newRightBound != oldRightBound)
-                    widgetsSortedByRightBound.put(widgetsSortedByRightBound.remove(oldRightBound, storedWidget));
-                int newUpperBound = storedWidget.getUpperBound();
-                if (newUpperBound != oldUpperBound)
-                    widgetsSortedByUpperBound.put(widgetsSortedByUpperBound.remove(oldUpperBound, storedWidget));
-                int newLowerBound = storedWidget.getLowerBound();
-                if (newLowerBound != oldLowerBound)
-                    widgetsSortedByLowerBound.put(widgetsSortedByLowerBound.remove(oldLowerBound, storedWidget));
-
                 return toWidget(storedWidget);
             }
         } finally {
@@ -181,10 +193,7 @@ public class WidgetStorageWithFiltering implements IWidgetStorage {
             StoredWidget widget = widgetsById.remove(id);
             if (widget != null) {
                 widgetsSortedByZ.remove(widget.getZ());
-                widgetsSortedByLeftBound.remove(widget.getLeftBound(), widget);
-                widgetsSortedByRightBound.remove(widget.getRightBound(), widget);
-                widgetsSortedByUpperBound.remove(widget.getUpperBound(), widget);
-                widgetsSortedByLowerBound.remove(widget.getLowerBound(), widget);
+                widgetsIndexedByBounds.remove(widget);
             }
             return toWidget(widget);
         } finally {
@@ -9,20 +9,29 @@ import java.util.concurrent.locks.StampedLock;
 import java.util.stream.Collectors;
 
 public class WidgetStorageWithPaging implements IWidgetStorage {
-    private final HashMap<UUID, StoredWidget> widgetsById;
-    private final List<StoredWidget> widgetsSortedByZ;
+    private final UuidMap<StoredWidget> widgetsById;
+    private final ZOrder widgetsSortedByZ;
     private final StampedLock lock;
 
     public WidgetStorageWithPaging() {
-        this.widgetsById = new HashMap<>();
-        this.widgetsSortedByZ = new ArrayList<>();
+        this(ZOrdering.SHIFTING);
+    }
+
+    public WidgetStorageWithPaging(ZOrdering zOrdering) {
+        this.widgetsById = new UuidMap<>();
+        this.widgetsSortedByZ = new ZOrder(zOrdering);
         this.lock = new StampedLock();
     }
 
-    private static Widget toWidget(StoredWidget widget) {
+    private Widget toWidget(StoredWidget widget) {
         if (widget == null)
             return null;
-        return new Widget(widget.getId(), widget.getX(), widget.getY(), widget.getZ(), widget.getWidth(), widget.getHeight(), widget.getLastModifiedDate());
+        return new Widget(widget.getId(), widget.getX(), widget.getY(), widgetsSortedByZ.zOf(widget), widget.getWidth(), widget.getHeight(), widget.getLastModifiedDate());
+    }
+
+    // z of a DENSE widget is its position in the tree, which a writer may be rotating or renumbering meanwhile, so DENSE reads take the read lock at once
+    private long tryOptimisticRead() {
+        return widgetsSortedByZ.getZOrdering() == ZOrdering.DENSE ? lock.readLock() : lock.tryOptimisticRead();
     }
 
     public Widget create(WidgetCreateRequest widgetCreateRequest) {
@@ -37,12 +46,11 @@ public class WidgetStorageWithPaging implements IWidgetStorage {
                 widgetCreateRequest.getHeight());
         long stamp = lock.writeLock();
         try {
-            newWidget.setZ(putOnTop ? getTopZ() : widgetCreateRequest.getZ()); // actually, we don't need write-lock here, but we'll need it in any case later, so using tryConvertToWriteLock is considered as overhead
             widgetsById.put(id, newWidget);
             if (putOnTop) {
-                widgetsSortedByZ.add(newWidget);
+                widgetsSortedByZ.putOnTop(newWidget); // actually, we don't need write-lock to find the top z, but we'll need it in any case later, so using tryConvertToWriteLock is considered as overhead
             } else {
-                insert(newWidget);
+                widgetsSortedByZ.insert(newWidget, widgetCreateRequest.getZ());
             }
             return toWidget(newWidget);
         } finally {
@@ -51,7 +59,7 @@ public class WidgetStorageWithPaging implements IWidgetStorage {
     }
 
     public Widget read(UUID id) {
-        long stamp = lock.tryOptimisticRead();
+        long stamp = tryOptimisticRead();
         try {
             for (; ; stamp = lock.readLock()) {
                 if (stamp == 0L)
@@ -76,7 +84,7 @@ public class WidgetStorageWithPaging implements IWidgetStorage {
         if (take == null) take = 10;
         if (skip < 0 || take < 0) throw new IllegalArgumentException();
         if (take > 500) throw new IllegalArgumentException();
-        long stamp = lock.tryOptimisticRead();
+        long stamp = tryOptimisticRead();
         try {
             for (; ; stamp = lock.readLock()) {
                 if (stamp == 0L)
@@ -84,8 +92,30 @@ public class WidgetStorageWithPaging implements IWidgetStorage {
 
                 // in the worst case this code will be called twice because of the optimistic reading;
                 // so it depends on the ratio of read/write operations whether to use tryOptimisticRead or just readLock
-                List<Widget> widgets = widgetsSortedByZ.stream().skip(skip).limit(take).map(WidgetStorageWithPaging::toWidget).collect(Collectors.toUnmodifiableList());
+                List<Widget> widgets = widgetsSortedByZ.stream(skip).limit(take).map(this::toWidget).collect(Collectors.toUnmodifiableList());
+
+                if (!lock.validate(stamp))
+                    continue;
+                return widgets;
+            }
+        } finally {
+            if (StampedLock.isReadLockStamp(stamp))
+                lock.unlockRead(stamp);
+        }
+    }
 
+    public List<Widget> readZRange(int fromZ, int toZ, Integer skip, Integer take) {
+        if (skip == null) skip = 0;
+        if (take == null) take = 10;
+        if (skip < 0 || take < 0) throw new IllegalArgumentException();
+        if (take > 500) throw new IllegalArgumentException();
+        if (fromZ > toZ) throw new IllegalArgumentException();
+        long stamp = tryOptimisticRead();
+        try {
+            for (; ; stamp = lock.readLock()) {
+                if (stamp == 0L)
+                    continue;
+                List<Widget> widgets = widgetsSortedByZ.streamBetweenZ(fromZ, toZ, skip).limit(take).map(this::toWidget).collect(Collectors.toUnmodifiableList());
                 if (!lock.validate(stamp))
                     continue;
                 return widgets;
@@ -103,10 +133,9 @@ public class WidgetStorageWithPaging implements IWidgetStorage {
                 if (stamp == 0L)
                     continue;
                 StoredWidget storedWidget = widgetsById.get(id);
-                Widget widget = toWidget(storedWidget);
                 if (!lock.validate(stamp))
                     continue;
-                if (widget == null)
+                if (storedWidget == null)
                     return null;
                 stamp = lock.tryConvertToWriteLock(stamp);
                 if (stamp == 0L)
@@ -119,15 +148,8 @@ public class WidgetStorageWithPaging implements IWidgetStorage {
                     storedWidget.setWidth(widgetUpdateRequest.getWidth());
                 if (widgetUpdateRequest.getHeight() != null)
                     storedWidget.setHeight(widgetUpdateRequest.getHeight());
-                if (widgetUpdateRequest.getZ() != null) {
-                    if (widgetUpdateRequest.getZ() != storedWidget.getZ()) {
-                        widgetsSortedByZ.remove(Collections.binarySearch(widgetsSortedByZ, storedWidget));
-                        storedWidget.setZ(widgetUpdateRequest.getZ());
-                        insert(storedWidget);
-                    } else {
-                        storedWidget.setZ(widgetUpdateRequest.getZ());
-                    }
-                }
+                if (widgetUpdateRequest.getZ() != null)
+                    widgetsSortedByZ.move(storedWidget, widgetUpdateRequest.getZ());
                 return toWidget(storedWidget);
             }
         } finally {
@@ -141,37 +163,10 @@ public class WidgetStorageWithPaging implements IWidgetStorage {
         try {
             StoredWidget widget = widgetsById.remove(id);
             if (widget != null)
-                widgetsSortedByZ.remove(Collections.binarySearch(widgetsSortedByZ, widget));
+                widgetsSortedByZ.remove(widget);
             return toWidget(widget);
         } finally {
             lock.unlockWrite(stamp);
         }
     }
-
-    private int getTopZ() {
-        if (widgetsSortedByZ.isEmpty())
-            return 0;
-        return widgetsSortedByZ.get(widgetsSortedByZ.size() - 1).getZ() + 1; // TODO: can cause type overflow
-    }
-
-    private void insert(StoredWidget widget) {
-        int index = Collections.binarySearch(widgetsSortedByZ, widget);
-        if (index < 0) {
-            widgetsSortedByZ.add(-index - 1, widget);
-        } else {
-            StoredWidget widgetToInsert = widget;
-            int i;
-            for (i = index; i < widgetsSortedByZ.size(); i++) {
-                StoredWidget storedWidget = widgetsSortedByZ.get(i);
-                if (widgetToInsert.getZ() != storedWidget.getZ())
-                    break;
-                //noinspection UnnecessaryLocalVariable
-                StoredWidget widgetToShift = storedWidget;
-                widgetsSortedByZ.set(i, widgetToInsert);
-                widgetToShift.setZ(widgetToShift.getZ() + 1); // TODO: can cause type overflow
-                widgetToInsert = widgetToShift;
-            }
-            widgetsSortedByZ.add(i, widgetToInsert);
-        }
-    }
 }
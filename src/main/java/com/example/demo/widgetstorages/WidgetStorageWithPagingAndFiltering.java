@@ -1,70 +1,132 @@
 package com.example.demo.widgetstorages;
 
+import com.example.demo.models.Viewport;
 import com.example.demo.models.Widget;
 import com.example.demo.models.WidgetCreateRequest;
+import com.example.demo.models.WidgetPage;
 import com.example.demo.models.WidgetUpdateRequest;
+import com.example.demo.models.WidgetsByViewports;
+import com.example.demo.models.WidgetsSummary;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class WidgetStorageWithPagingAndFiltering implements IWidgetStorage {
-    private final HashMap<UUID, StoredWidget> widgetsById;
-    private final List<StoredWidget> widgetsSortedByZ;
-    private final MultiTreeMap widgetsSortedByLeftBound;
-    private final MultiTreeMap widgetsSortedByRightBound;
-    private final MultiTreeMap widgetsSortedByUpperBound;
-    private final MultiTreeMap widgetsSortedByLowerBound;
+    private static final int MAX_VIEWPORTS = 16;
+    private static final int SCAN_RATIO = 6; // the z order is scanned instead of sorting when more than 1/6 of the widgets are inside the bounds
+
+    private final UuidMap<StoredWidget> widgetsById;
+    private final ZOrder widgetsSortedByZ;
+    private final SpatialIndex widgetsIndexedByBounds;
     private final StampedLock lock;
+    private final WidgetLog widgetLog;
+    private final WidgetCheckpoint widgetCheckpoint;
+    private final UnlockedView unlockedView = new UnlockedView();
+    private long version; // changes with every change of the widgets, guarded by the lock
+    private long reorderVersion; // the version of the last change that shifted or renumbered other widgets to make room, guarded by the lock
+    private long moveVersion; // the version of the last change given a z, guarded by the lock
 
     public WidgetStorageWithPagingAndFiltering() {
-        this.widgetsById = new HashMap<>();
-        this.widgetsSortedByZ = new ArrayList<>();
-        this.widgetsSortedByLeftBound = new MultiTreeMap(StoredWidget::getLeftBound);
-        this.widgetsSortedByRightBound = new MultiTreeMap(StoredWidget::getRightBound);
-        this.widgetsSortedByUpperBound = new MultiTreeMap(StoredWidget::getUpperBound);
-        this.widgetsSortedByLowerBound = new MultiTreeMap(StoredWidget::getLowerBound);
+        this(new RTreeSpatialIndex());
+    }
+
+    public WidgetStorageWithPagingAndFiltering(SpatialIndex widgetsIndexedByBounds) {
+        this(widgetsIndexedByBounds, ZOrdering.SHIFTING);
+    }
+
+    public WidgetStorageWithPagingAndFiltering(ZOrdering zOrdering) {
+        this(new RTreeSpatialIndex(), zOrdering);
+    }
+
+    public WidgetStorageWithPagingAndFiltering(SpatialIndex widgetsIndexedByBounds, ZOrdering zOrdering) {
+        this(widgetsIndexedByBounds, zOrdering, null);
+    }
+
+    // with a log the storage starts with the widgets replayed from it and logs every change; the log has to be used by this storage only
+    public WidgetStorageWithPagingAndFiltering(SpatialIndex widgetsIndexedByBounds, ZOrdering zOrdering, WidgetLog widgetLog) {
+        this(widgetsIndexedByBounds, zOrdering, null, widgetLog);
+    }
+
+    // with a checkpoint the storage starts with the widgets of the last checkpoint and only the part of the log written after it is replayed
+    public WidgetStorageWithPagingAndFiltering(SpatialIndex widgetsIndexedByBounds, ZOrdering zOrdering, WidgetCheckpoint widgetCheckpoint, WidgetLog widgetLog) {
+        this.widgetsById = new UuidMap<>();
+        this.widgetsSortedByZ = new ZOrder(zOrdering);
+        this.widgetsIndexedByBounds = widgetsIndexedByBounds;
         this.lock = new StampedLock();
+        this.widgetLog = widgetLog;
+        this.widgetCheckpoint = widgetCheckpoint;
+        try {
+            WidgetCheckpoint.Snapshot snapshot = widgetCheckpoint == null ? null : widgetCheckpoint.load();
+            List<StoredWidget> widgets = snapshot == null ? List.of() : snapshot.getWidgets();
+            if (widgetLog != null)
+                widgets = widgetLog.replay(widgets, snapshot == null ? 0 : snapshot.getLogPosition());
+            restore(widgets);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        widgetsSortedByZ.setReorderListener(widget -> {
+            reorderVersion = version;
+            if (widgetLog != null)
+                widgetLog.put(widget);
+        });
+        if (widgetCheckpoint != null)
+            widgetCheckpoint.schedule(this::checkpoint);
     }
 
-    private static Widget toWidget(StoredWidget widget) {
+    private Widget toWidget(StoredWidget widget) {
         if (widget == null)
             return null;
-        return new Widget(widget.getId(), widget.getX(), widget.getY(), widget.getZ(), widget.getWidth(), widget.getHeight(), widget.getLastModifiedDate());
+        return new Widget(widget.getId(), widget.getX(), widget.getY(), widgetsSortedByZ.zOf(widget), widget.getWidth(), widget.getHeight(), widget.getLastModifiedDate());
     }
 
-    public Widget create(WidgetCreateRequest widgetCreateRequest) {
-        UUID id = UUID.randomUUID();
-        boolean putOnTop = widgetCreateRequest.getZ() == null;
-        StoredWidget newWidget = new StoredWidget(
-                id,
+    // z of a DENSE widget is its position in the tree, which a writer may be rotating or renumbering meanwhile, so DENSE reads take the read lock at once
+    private long tryOptimisticRead() {
+        return widgetsSortedByZ.getZOrdering() == ZOrdering.DENSE ? lock.readLock() : lock.tryOptimisticRead();
+    }
+
+    private static StoredWidget newStoredWidget(WidgetCreateRequest widgetCreateRequest) {
+        return new StoredWidget(
+                UUID.randomUUID(),
                 widgetCreateRequest.getX(),
                 widgetCreateRequest.getY(),
                 0, // this way we don't need to readLock at this point, so we can fail cheap (without locks) if we try to create widget with illegal args
                 widgetCreateRequest.getWidth(),
                 widgetCreateRequest.getHeight());
+    }
+
+    public Widget create(WidgetCreateRequest widgetCreateRequest) {
+        StoredWidget newWidget = newStoredWidget(widgetCreateRequest);
         long stamp = lock.writeLock();
         try {
-            newWidget.setZ(putOnTop ? getTopZ() : widgetCreateRequest.getZ()); // actually, we don't need write-lock here, but we'll need it in any case later, so using tryConvertToWriteLock is considered as overhead
-            widgetsById.put(id, newWidget);
-            widgetsSortedByLeftBound.put(newWidget);
-            widgetsSortedByRightBound.put(newWidget);
-            widgetsSortedByUpperBound.put(newWidget);
-            widgetsSortedByLowerBound.put(newWidget);
-            if (putOnTop) {
-                widgetsSortedByZ.add(newWidget);
-            } else {
-                insert(newWidget);
-            }
-            return toWidget(newWidget);
+            return add(newWidget, widgetCreateRequest.getZ());
         } finally {
-            lock.unlockWrite(stamp);
+            unlockWrite(stamp);
+        }
+    }
+
+    // all the requests are checked before the lock is taken, so either all the widgets are created or none
+    public List<Widget> create(List<WidgetCreateRequest> widgetCreateRequests) {
+        if (widgetCreateRequests.stream().anyMatch(Objects::isNull))
+            throw new IllegalArgumentException("request can not be null");
+        List<StoredWidget> newWidgets = widgetCreateRequests.stream().map(WidgetStorageWithPagingAndFiltering::newStoredWidget).collect(Collectors.toList());
+        long stamp = lock.writeLock();
+        try {
+            for (int i = 0; i < newWidgets.size(); i++)
+                add(newWidgets.get(i), widgetCreateRequests.get(i).getZ());
+            return newWidgets.stream().map(this::toWidget).collect(Collectors.toUnmodifiableList());
+        } finally {
+            unlockWrite(stamp);
         }
     }
 
     public Widget read(UUID id) {
-        long stamp = lock.tryOptimisticRead();
+        long stamp = tryOptimisticRead();
         try {
             for (; ; stamp = lock.readLock()) {
                 if (stamp == 0L)
@@ -93,14 +155,39 @@ public class WidgetStorageWithPagingAndFiltering implements IWidgetStorage {
     }
 
     public List<Widget> read(Integer skip, Integer take, Integer leftBound, Integer rightBound, Integer upperBound, Integer lowerBound) {
-        if ((skip != null || take != null) && (leftBound != null || rightBound != null || upperBound != null || lowerBound != null))
-            throw new IllegalArgumentException();
+        return read(skip, take, leftBound, rightBound, upperBound, lowerBound, BoundsMode.WITHIN);
+    }
 
+    // bounds without skip and take give all the widgets matching them, with skip or take they give a page of them
+    public List<Widget> read(Integer skip, Integer take, Integer leftBound, Integer rightBound, Integer upperBound, Integer lowerBound, BoundsMode boundsMode) {
+        boolean usePaging = skip != null || take != null;
         if (skip == null) skip = 0;
         if (take == null) take = 10;
         if (skip < 0 || take < 0) throw new IllegalArgumentException();
         if (take > 500) throw new IllegalArgumentException();
 
+        boolean useBounds = useBounds(leftBound, rightBound, upperBound, lowerBound);
+
+        long stamp = lock.readLock(); // quite an expensive operation under lock, optimistic reading seems risky because it might double the price; so, just readLock
+        try {
+
+            Stream<StoredWidget> widgetsStream;
+            if (useBounds && usePaging) {
+                widgetsStream = pageMatching(skip, take, leftBound, rightBound, upperBound, lowerBound, boundsMode).stream();
+            } else if (useBounds) {
+                widgetsStream = streamMatching(leftBound, rightBound, upperBound, lowerBound, boundsMode);
+            } else {
+                widgetsStream = widgetsSortedByZ.stream(skip).limit(take);
+            }
+            return widgetsStream.map(this::toWidget).collect(Collectors.toUnmodifiableList());
+        } finally {
+            if (StampedLock.isReadLockStamp(stamp))
+                lock.unlockRead(stamp);
+        }
+    }
+
+    // either all four bounds or none of them
+    private static boolean useBounds(Integer leftBound, Integer rightBound, Integer upperBound, Integer lowerBound) {
         boolean useBounds = (leftBound != null && rightBound != null && upperBound != null && lowerBound != null);
         if (useBounds) {
             if (leftBound > rightBound || upperBound < lowerBound)
@@ -109,28 +196,228 @@ public class WidgetStorageWithPagingAndFiltering implements IWidgetStorage {
             if (leftBound != null || rightBound != null || upperBound != null || lowerBound != null)
                 throw new IllegalArgumentException();
         }
+        return useBounds;
+    }
 
-        long stamp = lock.readLock(); // quite an expensive operation under lock, optimistic reading seems risky because it might double the price; so, just readLock
+    // widgets of several viewports at once: the spatial index is walked once for all of them, and a widget shown in several viewports is returned once
+    public WidgetsByViewports readViewports(List<Viewport> viewports, BoundsMode boundsMode) {
+        if (viewports.isEmpty() || viewports.size() > MAX_VIEWPORTS)
+            throw new IllegalArgumentException();
+        int[][] rectangles = new int[viewports.size()][];
+        for (int i = 0; i < rectangles.length; i++) {
+            Viewport viewport = viewports.get(i);
+            if (viewport.getLeftBound() > viewport.getRightBound() || viewport.getUpperBound() < viewport.getLowerBound())
+                throw new IllegalArgumentException();
+            rectangles[i] = new int[]{viewport.getLeftBound(), viewport.getRightBound(), viewport.getUpperBound(), viewport.getLowerBound()};
+        }
+
+        long stamp = lock.readLock();
+        try {
+            List<Collection<StoredWidget>> widgetsByViewport = widgetsIndexedByBounds.matchingEach(boundsMode, rectangles);
+            IdentityHashMap<StoredWidget, Integer> positions = new IdentityHashMap<>();
+            for (Collection<StoredWidget> widgets : widgetsByViewport) {
+                for (StoredWidget widget : widgets)
+                    positions.put(widget, 0);
+            }
+            StoredWidget[] sortedWidgets = positions.keySet().toArray(new StoredWidget[0]);
+            Arrays.sort(sortedWidgets, widgetsSortedByZ.comparator());
+            List<Widget> widgets = new ArrayList<>(sortedWidgets.length);
+            for (int i = 0; i < sortedWidgets.length; i++) {
+                positions.put(sortedWidgets[i], i);
+                widgets.add(toWidget(sortedWidgets[i]));
+            }
+            List<int[]> viewportsPositions = new ArrayList<>(widgetsByViewport.size());
+            for (Collection<StoredWidget> viewportWidgets : widgetsByViewport)
+                viewportsPositions.add(viewportWidgets.stream().mapToInt(positions::get).sorted().toArray());
+            return new WidgetsByViewports(Collections.unmodifiableList(widgets), Collections.unmodifiableList(viewportsPositions));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // the number of widgets matching the bounds, or of all the widgets without bounds; widgets aren't collected for it
+    public int count(Integer leftBound, Integer rightBound, Integer upperBound, Integer lowerBound, BoundsMode boundsMode) {
+        boolean useBounds = useBounds(leftBound, rightBound, upperBound, lowerBound);
+        long stamp = lock.readLock();
         try {
+            if (useBounds)
+                return boundsMode.count(widgetsIndexedByBounds, leftBound, rightBound, upperBound, lowerBound);
+            return widgetsById.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
 
-            Stream<StoredWidget> widgetsStream;
-            if (useBounds) {
-                Stream<StoredWidget> widgetsFilteredByLeftBound =
-                        widgetsSortedByLeftBound.unwrappedTail(leftBound).stream();
-                Stream<StoredWidget> widgetsFilteredByLeftAndRightBound =
-                        widgetsSortedByRightBound.filterHeadFor(widgetsFilteredByLeftBound, rightBound);
-                Stream<StoredWidget> widgetsFilteredByLeftAndRightAndUpperBound =
-                        widgetsSortedByUpperBound.filterHeadFor(widgetsFilteredByLeftAndRightBound, upperBound);
-                Stream<StoredWidget> widgetsFilteredByLeftAndRightAndUpperAndLowerBound =
-                        widgetsSortedByLowerBound.filterTailFor(widgetsFilteredByLeftAndRightAndUpperBound, lowerBound);
-                widgetsStream = widgetsFilteredByLeftAndRightAndUpperAndLowerBound.sorted();
+    // the number of the widgets, their bounding box and z range, for "fit to content" without reading the widgets
+    public WidgetsSummary summarize() {
+        long stamp = lock.readLock();
+        try {
+            if (widgetsById.isEmpty())
+                return new WidgetsSummary(0, null, null, null, null, null, null);
+            int[] boundingBox = widgetsIndexedByBounds.boundingBox();
+            return new WidgetsSummary(widgetsById.size(), boundingBox[0], boundingBox[1], boundingBox[2], boundingBox[3],
+                    widgetsSortedByZ.getMinZ(), widgetsSortedByZ.getMaxZ());
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // widgets matching the bounds in z order: a few of them are sorted, but when there are many, scanning the z order costs less than sorting them,
+    // and the scan is lazy, so it stops as soon as the stream does
+    private Stream<StoredWidget> streamMatching(int leftBound, int rightBound, int upperBound, int lowerBound, BoundsMode boundsMode) {
+        Collection<StoredWidget> widgets = boundsMode.find(widgetsIndexedByBounds, leftBound, rightBound, upperBound, lowerBound);
+        if (widgets.size() > widgetsSortedByZ.size() / SCAN_RATIO)
+            return widgetsSortedByZ.stream(0).filter(widget -> boundsMode.matches(widget, leftBound, rightBound, upperBound, lowerBound));
+        StoredWidget[] sortedWidgets = widgets.toArray(new StoredWidget[0]);
+        Arrays.sort(sortedWidgets, widgetsSortedByZ.comparator());
+        return Arrays.stream(sortedWidgets);
+    }
+
+    // the z order is walked from the bottom until skip + take widgets matching the bounds are found, nothing else is collected;
+    // if they are not found within 1/6 of the widgets, there are few of them, and they are taken from the spatial index instead
+    private List<StoredWidget> pageMatching(int skip, int take, int leftBound, int rightBound, int upperBound, int lowerBound, BoundsMode boundsMode) {
+        long wanted = (long) skip + take;
+        int budget = widgetsSortedByZ.size() / SCAN_RATIO;
+        List<StoredWidget> page = new ArrayList<>(take);
+        Iterator<StoredWidget> widgets = widgetsSortedByZ.stream(0).iterator();
+        for (long found = 0, walked = 0; found < wanted && widgets.hasNext(); walked++) {
+            if (walked == budget)
+                return streamMatching(leftBound, rightBound, upperBound, lowerBound, boundsMode).skip(skip).limit(take).collect(Collectors.toList());
+            StoredWidget widget = widgets.next();
+            if (boundsMode.matches(widget, leftBound, rightBound, upperBound, lowerBound) && found++ >= skip)
+                page.add(widget);
+        }
+        return page;
+    }
+
+    public List<Widget> readZRange(int fromZ, int toZ, Integer skip, Integer take) {
+        long stamp = lock.readLock();
+        try {
+            return zRange(fromZ, toZ, skip, take);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private List<Widget> zRange(int fromZ, int toZ, Integer skip, Integer take) {
+        if (skip == null) skip = 0;
+        if (take == null) take = 10;
+        if (skip < 0 || take < 0) throw new IllegalArgumentException();
+        if (take > 500) throw new IllegalArgumentException();
+        if (fromZ > toZ) throw new IllegalArgumentException();
+        return widgetsSortedByZ.streamBetweenZ(fromZ, toZ, skip).limit(take).map(this::toWidget).collect(Collectors.toUnmodifiableList());
+    }
+
+    // hit-test: the topmost widget covering the point, bounds included, or null; the spatial index gives only the widgets stacked at the point
+    public Widget readAt(int x, int y) {
+        long stamp = lock.readLock();
+        try {
+            StoredWidget topmost = null;
+            long topmostSortKey = Long.MIN_VALUE;
+            for (StoredWidget widget : widgetsIndexedByBounds.containing(x, y)) {
+                long sortKey = widgetsSortedByZ.sortKeyOf(widget);
+                if (topmost == null || sortKey > topmostSortKey) {
+                    topmost = widget;
+                    topmostSortKey = sortKey;
+                }
+            }
+            return toWidget(topmost);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // up to k widgets nearest to the point, nearest first, widgets covering it are at distance 0
+    public List<Widget> readNearest(int x, int y, Integer k) {
+        if (k == null) k = 10;
+        if (k <= 0 || k > 500) throw new IllegalArgumentException();
+        long stamp = lock.readLock();
+        try {
+            return nearest(x, x, y, y, k, null);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // up to k widgets nearest to the widget, not counting the widget itself, or null if there is no widget with such id
+    public List<Widget> readNearest(UUID id, Integer k) {
+        if (k == null) k = 10;
+        if (k <= 0 || k > 500) throw new IllegalArgumentException();
+        long stamp = lock.readLock();
+        try {
+            StoredWidget widget = widgetsById.get(id);
+            if (widget == null)
+                return null;
+            return nearest(widget.getLeftBound(), widget.getRightBound(), widget.getUpperBound(), widget.getLowerBound(), k, widget);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // of widgets at the same distance the upper one goes first, also when they tie for the last places:
+    // the index breaks ties its own way, so one widget more than needed is asked for, and if it is as near as the k-th one,
+    // every widget at that distance is taken from the index before cutting
+    private List<Widget> nearest(int leftBound, int rightBound, int upperBound, int lowerBound, int k, StoredWidget excludedWidget) {
+        Comparator<StoredWidget> byDistance = Comparator.comparingDouble(widget -> widget.squaredDistanceTo(leftBound, rightBound, upperBound, lowerBound));
+        Comparator<StoredWidget> byZ = Comparator.comparingLong(widgetsSortedByZ::sortKeyOf);
+        List<StoredWidget> candidates = new ArrayList<>(widgetsIndexedByBounds.nearest(leftBound, rightBound, upperBound, lowerBound, excludedWidget == null ? k + 1 : k + 2));
+        candidates.removeIf(widget -> widget == excludedWidget);
+        if (candidates.size() > k) {
+            double lastDistance = candidates.get(k - 1).squaredDistanceTo(leftBound, rightBound, upperBound, lowerBound);
+            if (candidates.get(k).squaredDistanceTo(leftBound, rightBound, upperBound, lowerBound) == lastDistance) {
+                long margin = (long) Math.ceil(Math.sqrt(lastDistance));
+                candidates = new ArrayList<>(widgetsIndexedByBounds.intersecting(
+                        (int) Math.max(leftBound - margin, Integer.MIN_VALUE), (int) Math.min(rightBound + margin, Integer.MAX_VALUE),
+                        (int) Math.min(upperBound + margin, Integer.MAX_VALUE), (int) Math.max(lowerBound - margin, Integer.MIN_VALUE)));
+                candidates.removeIf(widget -> widget == excludedWidget || widget.squaredDistanceTo(leftBound, rightBound, upperBound, lowerBound) > lastDistance);
+            }
+        }
+        return candidates.stream()
+                .sorted(byDistance.thenComparing(byZ.reversed()))
+                .limit(k)
+                .map(this::toWidget)
+                .collect(Collectors.toUnmodifiableList());
+    }
+
+    // keyset paging in z order: a page starts right after the sort key the previous one ended at, so widgets that aren't moved between the pages
+    // are neither repeated nor skipped, whatever happens to the last widget of the previous page, and a page costs O(log n + take) however deep it is;
+    // once other widgets have been shifted (SHIFTING) or renumbered (DENSE) to make room, the key means nothing, then the page starts right after
+    // the last widget of the previous page, which has been shifted along with the others, unless some widget has been given a z meanwhile:
+    // then where it was can't be told, and the cursor fails with ConcurrentModificationException;
+    // pin is taken for the first page only: the pages of a pinned scan all come from one version of the storage,
+    // once it changes the cursor fails with ConcurrentModificationException and the scan has to start over
+    public WidgetPage readPage(String cursor, Integer take, boolean pin) {
+        if (take == null) take = 10;
+        if (take <= 0 || take > 500) throw new IllegalArgumentException();
+        Cursor after = cursor == null ? null : Cursor.decode(cursor);
+
+        long stamp = lock.readLock();
+        try {
+            if (after != null && after.pinned && after.version != version)
+                throw new ConcurrentModificationException("widgets have changed since the cursor was made");
+            Iterator<StoredWidget> widgets;
+            if (after == null) {
+                widgets = widgetsSortedByZ.stream(0).iterator();
+            } else if (reorderVersion <= after.version) {
+                widgets = widgetsSortedByZ.iteratorAfter(after.sortKey);
             } else {
-                widgetsStream = widgetsSortedByZ.stream().skip(skip).limit(take);
+                StoredWidget lastWidget = widgetsById.get(after.id);
+                if (lastWidget == null || moveVersion > after.version)
+                    throw new ConcurrentModificationException("widgets have been reordered since the cursor was made");
+                widgets = widgetsSortedByZ.iteratorAfter(lastWidget);
             }
-            return widgetsStream.map(WidgetStorageWithPagingAndFiltering::toWidget).collect(Collectors.toUnmodifiableList());
+            List<Widget> page = new ArrayList<>(take);
+            StoredWidget widget = null;
+            while (page.size() < take && widgets.hasNext()) {
+                widget = widgets.next();
+                page.add(toWidget(widget));
+            }
+            String nextCursor = widgets.hasNext()
+                    ? new Cursor(after != null ? after.pinned : pin, version, widgetsSortedByZ.sortKeyOf(widget), widget.getId()).encode()
+                    : null;
+            return new WidgetPage(Collections.unmodifiableList(page), nextCursor);
         } finally {
-            if (StampedLock.isReadLockStamp(stamp))
-                lock.unlockRead(stamp);
+            lock.unlockRead(stamp);
         }
     }
 
@@ -141,96 +428,319 @@ public class WidgetStorageWithPagingAndFiltering implements IWidgetStorage {
                 if (stamp == 0L)
                     continue;
                 StoredWidget storedWidget = widgetsById.get(id);
-                Widget widget = toWidget(storedWidget);
                 if (!lock.validate(stamp))
                     continue;
-                if (widget == null)
+                if (storedWidget == null)
                     return null;
                 stamp = lock.tryConvertToWriteLock(stamp);
                 if (stamp == 0L)
                     continue;
-                int oldLeftBound = storedWidget.getLeftBound();
-                int oldRightBound = storedWidget.getRightBound();
-                int oldUpperBound = storedWidget.getUpperBound();
-                int oldLowerBound = storedWidget.getLowerBound();
-                if (widgetUpdateRequest.getX() != null)
-                    storedWidget.setX(widgetUpdateRequest.getX());
-                if (widgetUpdateRequest.getY() != null)
-                    storedWidget.setY(widgetUpdateRequest.getY());
-                if (widgetUpdateRequest.getWidth() != null)
-                    storedWidget.setWidth(widgetUpdateRequest.getWidth());
-                if (widgetUpdateRequest.getHeight() != null)
-                    storedWidget.setHeight(widgetUpdateRequest.getHeight());
-                if (widgetUpdateRequest.getZ() != null) {
-                    if (widgetUpdateRequest.getZ() != storedWidget.getZ()) {
-                        widgetsSortedByZ.remove(Collections.binarySearch(widgetsSortedByZ, storedWidget));
-                        storedWidget.setZ(widgetUpdateRequest.getZ());
-                        insert(storedWidget);
-                    } else {
-                        storedWidget.setZ(widgetUpdateRequest.getZ());
-                    }
-                }
-                int newLeftBound = storedWidget.getLeftBound();
-                if (newLeftBound != oldLeftBound)
-                    widgetsSortedByLeftBound.put(widgetsSortedByLeftBound.remove(oldLeftBound, storedWidget));
-                int newRightBound = storedWidget.getRightBound();
-                if (newRightBound != oldRightBound)
-                    widgetsSortedByRightBound.put(widgetsSortedByRightBound.remove(oldRightBound, storedWidget));
-                int newUpperBound = storedWidget.getUpperBound();
-                if (newUpperBound != oldUpperBound)
-                    widgetsSortedByUpperBound.put(widgetsSortedByUpperBound.remove(oldUpperBound, storedWidget));
-                int newLowerBound = storedWidget.getLowerBound();
-                if (newLowerBound != oldLowerBound)
-                    widgetsSortedByLowerBound.put(widgetsSortedByLowerBound.remove(oldLowerBound, storedWidget));
-                return toWidget(storedWidget);
+                return change(storedWidget, widgetUpdateRequest);
             }
         } finally {
             if (StampedLock.isWriteLockStamp(stamp))
-                lock.unlockWrite(stamp);
+                unlockWrite(stamp);
+        }
+    }
+
+    // all the widgets and values are checked before anything is changed, so either all the widgets are updated or none
+    public List<Widget> update(Map<UUID, WidgetUpdateRequest> widgetUpdateRequests) {
+        long stamp = lock.writeLock();
+        try {
+            List<StoredWidget> storedWidgets = new ArrayList<>(widgetUpdateRequests.size());
+            for (Map.Entry<UUID, WidgetUpdateRequest> entry : widgetUpdateRequests.entrySet()) {
+                StoredWidget storedWidget = widgetsById.get(entry.getKey());
+                if (storedWidget == null)
+                    return null;
+                WidgetUpdateRequest widgetUpdateRequest = entry.getValue();
+                if (widgetUpdateRequest == null)
+                    throw new IllegalArgumentException("request can not be null");
+                if (widgetUpdateRequest.getWidth() != null && widgetUpdateRequest.getWidth() <= 0)
+                    throw new IllegalArgumentException("width can not be less or equal to zero");
+                if (widgetUpdateRequest.getHeight() != null && widgetUpdateRequest.getHeight() <= 0)
+                    throw new IllegalArgumentException("height can not be less or equal to zero");
+                storedWidgets.add(storedWidget);
+            }
+            Iterator<StoredWidget> widgetsToChange = storedWidgets.iterator();
+            for (WidgetUpdateRequest widgetUpdateRequest : widgetUpdateRequests.values())
+                change(widgetsToChange.next(), widgetUpdateRequest);
+            return storedWidgets.stream().map(this::toWidget).collect(Collectors.toUnmodifiableList());
+        } finally {
+            unlockWrite(stamp);
         }
     }
 
     public Widget delete(UUID id) {
         long stamp = lock.writeLock();
         try {
-            StoredWidget widget = widgetsById.remove(id);
-            if (widget != null) {
-                widgetsSortedByZ.remove(Collections.binarySearch(widgetsSortedByZ, widget));
-                widgetsSortedByLeftBound.remove(widget.getLeftBound(), widget);
-                widgetsSortedByRightBound.remove(widget.getRightBound(), widget);
-                widgetsSortedByUpperBound.remove(widget.getUpperBound(), widget);
-                widgetsSortedByLowerBound.remove(widget.getLowerBound(), widget);
+            return remove(id);
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    // unknown ids are skipped, the deleted widgets are returned sorted by z
+    public List<Widget> delete(Collection<UUID> ids) {
+        long stamp = lock.writeLock();
+        try {
+            return removeAll(ids.stream().distinct().map(widgetsById::get).filter(Objects::nonNull).collect(Collectors.toList()));
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    // deletes the widgets lying entirely inside the given bounds, the same ones read with these bounds returns
+    public List<Widget> delete(int leftBound, int rightBound, int upperBound, int lowerBound) {
+        if (leftBound > rightBound || upperBound < lowerBound)
+            throw new IllegalArgumentException();
+        long stamp = lock.writeLock();
+        try {
+            return removeAll(new ArrayList<>(widgetsIndexedByBounds.within(leftBound, rightBound, upperBound, lowerBound)));
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    // runs the whole batch under one write lock; the storage passed to the batch doesn't lock and must not be used after it returns
+    public void applyBatch(Consumer<IWidgetStorage> batch) {
+        long stamp = lock.writeLock();
+        try {
+            batch.accept(unlockedView);
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    // writes a checkpoint of the widgets, returns the number of widgets written
+    public int checkpoint() throws IOException {
+        if (widgetCheckpoint == null)
+            throw new IllegalStateException("storage has no checkpoint");
+        synchronized (widgetCheckpoint) {
+            return widgetLog == null ? copyCheckpoint() : checkpointFromLog();
+        }
+    }
+
+    // only the log position is taken under the lock; the new checkpoint is the last one with the frames logged since then applied,
+    // so it is read, merged and written while the writers go on
+    private int checkpointFromLog() throws IOException {
+        long logFrame;
+        long logPosition;
+        long stamp = lock.readLock(); // frames are committed under the write lock, so the frame and its position match
+        try {
+            logFrame = widgetLog.committedFrames();
+            logPosition = widgetLog.committedPosition();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        widgetLog.awaitSynced(logFrame); // the frames have to be in the file to be read, and the checkpoint must not get ahead of the log
+        WidgetCheckpoint.Snapshot snapshot = widgetCheckpoint.load();
+        List<StoredWidget> widgets = widgetLog.read(snapshot == null ? List.of() : snapshot.getWidgets(),
+                snapshot == null ? 0 : snapshot.getLogPosition(), logPosition);
+        widgets.sort(widgetsSortedByZ.comparator());
+        WidgetCheckpoint.Writer writer = widgetCheckpoint.begin(widgets.size(), logPosition);
+        try {
+            widgets.forEach(writer::put);
+            writer.finish();
+        } catch (IOException | RuntimeException e) {
+            writer.abort();
+            throw e;
+        }
+        return widgets.size();
+    }
+
+    // without a log there is nothing to rebuild the widgets from, so they are copied into the mapped file under the read lock
+    // and writers wait for the copy, though not for the sync
+    private int copyCheckpoint() throws IOException {
+        WidgetCheckpoint.Writer writer;
+        int count;
+        long stamp = lock.readLock();
+        try {
+            count = widgetsSortedByZ.size();
+            writer = widgetCheckpoint.begin(count, 0);
+            try {
+                widgetsSortedByZ.stream(0).forEach(writer::put);
+            } catch (RuntimeException e) {
+                writer.abort();
+                throw e;
             }
-            return toWidget(widget);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        try {
+            writer.finish();
+        } catch (IOException | RuntimeException e) {
+            writer.abort();
+            throw e;
+        }
+        return count;
+    }
+
+    // seals what the operation has logged and lets the other writers in before waiting for the log, so they can share the same sync;
+    // the lock is released even if the log has failed meanwhile, the storage stays readable and rejects further changes
+    private void unlockWrite(long stamp) {
+        long logFrame;
+        try {
+            logFrame = widgetLog == null ? 0 : widgetLog.commit();
         } finally {
             lock.unlockWrite(stamp);
         }
+        if (widgetLog != null)
+            widgetLog.awaitDurable(logFrame);
+    }
+
+    // a change that can't be logged is not made at all, so the widgets don't get ahead of the log
+    private void ensureLogOpen() {
+        if (widgetLog != null)
+            widgetLog.ensureOpen();
     }
 
-    private int getTopZ() {
-        if (widgetsSortedByZ.isEmpty())
-            return 0;
-        return widgetsSortedByZ.get(widgetsSortedByZ.size() - 1).getZ() + 1; // TODO: can cause type overflow
+    private void restore(Collection<StoredWidget> widgets) {
+        for (StoredWidget widget : widgets)
+            widgetsById.put(widget.getId(), widget);
+        widgetsIndexedByBounds.putAll(widgets);
+        widgetsSortedByZ.restore(widgets);
     }
 
-    private void insert(StoredWidget widget) {
-        int index = Collections.binarySearch(widgetsSortedByZ, widget);
-        if (index < 0) {
-            widgetsSortedByZ.add(-index - 1, widget);
+    private Widget add(StoredWidget newWidget, Integer z) {
+        ensureLogOpen();
+        version++;
+        widgetsById.put(newWidget.getId(), newWidget);
+        widgetsIndexedByBounds.put(newWidget);
+        if (z == null) {
+            widgetsSortedByZ.putOnTop(newWidget); // actually, we don't need write-lock to find the top z, but we'll need it in any case later, so using tryConvertToWriteLock is considered as overhead
         } else {
-            StoredWidget widgetToInsert = widget;
-            int i;
-            for (i = index; i < widgetsSortedByZ.size(); i++) {
-                StoredWidget storedWidget = widgetsSortedByZ.get(i);
-                if (widgetToInsert.getZ() != storedWidget.getZ())
-                    break;
-                @SuppressWarnings("UnnecessaryLocalVariable")
-                StoredWidget widgetToShift = storedWidget;
-                widgetsSortedByZ.set(i, widgetToInsert);
-                widgetToShift.setZ(widgetToShift.getZ() + 1); // TODO: can cause type overflow
-                widgetToInsert = widgetToShift;
+            widgetsSortedByZ.insert(newWidget, z);
+        }
+        if (widgetLog != null)
+            widgetLog.put(newWidget);
+        return toWidget(newWidget);
+    }
+
+    private Widget change(StoredWidget storedWidget, WidgetUpdateRequest widgetUpdateRequest) {
+        ensureLogOpen();
+        version++;
+        int oldLeftBound = storedWidget.getLeftBound();
+        int oldRightBound = storedWidget.getRightBound();
+        int oldUpperBound = storedWidget.getUpperBound();
+        int oldLowerBound = storedWidget.getLowerBound();
+        try {
+            if (widgetUpdateRequest.getX() != null)
+                storedWidget.setX(widgetUpdateRequest.getX());
+            if (widgetUpdateRequest.getY() != null)
+                storedWidget.setY(widgetUpdateRequest.getY());
+            if (widgetUpdateRequest.getWidth() != null)
+                storedWidget.setWidth(widgetUpdateRequest.getWidth());
+            if (widgetUpdateRequest.getHeight() != null)
+                storedWidget.setHeight(widgetUpdateRequest.getHeight());
+            if (widgetUpdateRequest.getZ() != null) {
+                moveVersion = version;
+                widgetsSortedByZ.move(storedWidget, widgetUpdateRequest.getZ());
             }
-            widgetsSortedByZ.add(i, widgetToInsert);
+        } finally { // the index must follow the widget even if some of the new values were rejected
+            if (storedWidget.getLeftBound() != oldLeftBound || storedWidget.getRightBound() != oldRightBound
+                    || storedWidget.getUpperBound() != oldUpperBound || storedWidget.getLowerBound() != oldLowerBound)
+                widgetsIndexedByBounds.update(storedWidget, oldLeftBound, oldRightBound, oldUpperBound, oldLowerBound);
+            if (widgetLog != null)
+                widgetLog.put(storedWidget);
+        }
+        return toWidget(storedWidget);
+    }
+
+    private Widget remove(UUID id) {
+        ensureLogOpen();
+        StoredWidget widget = widgetsById.remove(id);
+        if (widget != null) {
+            version++;
+            widgetsSortedByZ.remove(widget);
+            widgetsIndexedByBounds.remove(widget);
+            if (widgetLog != null)
+                widgetLog.remove(id);
+        }
+        return toWidget(widget);
+    }
+
+    private List<Widget> removeAll(List<StoredWidget> widgets) {
+        ensureLogOpen();
+        if (widgets.isEmpty())
+            return List.of();
+        version++;
+        widgets.sort(widgetsSortedByZ.comparator());
+        List<Widget> deletedWidgets = widgets.stream().map(this::toWidget).collect(Collectors.toUnmodifiableList()); // z may depend on the widgets below
+        for (StoredWidget widget : widgets) {
+            widgetsById.remove(widget.getId());
+            widgetsIndexedByBounds.remove(widget);
+            if (widgetLog != null)
+                widgetLog.remove(widget.getId());
+        }
+        widgetsSortedByZ.removeAll(widgets);
+        return deletedWidgets;
+    }
+
+    // where a page has ended, opaque to clients
+    private static final class Cursor {
+        private static final int SIZE = 1 + 4 * Long.BYTES;
+
+        private final boolean pinned;
+        private final long version;
+        private final long sortKey;
+        private final UUID id;
+
+        private Cursor(boolean pinned, long version, long sortKey, UUID id) {
+            this.pinned = pinned;
+            this.version = version;
+            this.sortKey = sortKey;
+            this.id = id;
+        }
+
+        private static Cursor decode(String cursor) throws IllegalArgumentException {
+            byte[] bytes = Base64.getUrlDecoder().decode(cursor);
+            if (bytes.length != SIZE || (bytes[0] & ~1) != 0)
+                throw new IllegalArgumentException("malformed cursor");
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            return new Cursor(buffer.get() == 1, buffer.getLong(), buffer.getLong(), new UUID(buffer.getLong(), buffer.getLong()));
+        }
+
+        private String encode() {
+            ByteBuffer buffer = ByteBuffer.allocate(SIZE)
+                    .put((byte) (pinned ? 1 : 0))
+                    .putLong(version)
+                    .putLong(sortKey)
+                    .putLong(id.getMostSignificantBits())
+                    .putLong(id.getLeastSignificantBits());
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+        }
+    }
+
+    private final class UnlockedView implements IWidgetStorage {
+        @Override
+        public Widget create(WidgetCreateRequest widgetCreateRequest) {
+            return add(newStoredWidget(widgetCreateRequest), widgetCreateRequest.getZ());
+        }
+
+        @Override
+        public Widget read(UUID id) {
+            return toWidget(widgetsById.get(id));
+        }
+
+        @Override
+        public List<Widget> read() {
+            return widgetsSortedByZ.stream(0).limit(10).map(WidgetStorageWithPagingAndFiltering.this::toWidget).collect(Collectors.toUnmodifiableList());
+        }
+
+        @Override
+        public List<Widget> readZRange(int fromZ, int toZ, Integer skip, Integer take) {
+            return zRange(fromZ, toZ, skip, take);
+        }
+
+        @Override
+        public Widget update(UUID id, WidgetUpdateRequest widgetUpdateRequest) {
+            StoredWidget storedWidget = widgetsById.get(id);
+            return storedWidget == null ? null : change(storedWidget, widgetUpdateRequest);
+        }
+
+        @Override
+        public Widget delete(UUID id) {
+            return remove(id);
         }
     }
 }
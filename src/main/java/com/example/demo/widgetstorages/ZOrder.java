@@ -0,0 +1,190 @@
+package com.example.demo.widgetstorages;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+// widgets sorted by z, knows how to put a widget on a given z in both z orderings; not thread-safe
+public class ZOrder {
+    private static final long ORDER_KEY_GAP = 1L << 32; // 32 widgets can be put between the same two neighbours before renumbering
+    private static final UUID BOUND_ID = new UUID(0, 0); // of the widgets made only to be compared with the stored ones
+
+    private final ZOrdering zOrdering;
+    private final OrderStatisticTree<StoredWidget> widgets;
+    private Consumer<StoredWidget> reorderListener = widget -> {
+    };
+
+    public ZOrder(ZOrdering zOrdering) {
+        this.zOrdering = zOrdering;
+        this.widgets = zOrdering == ZOrdering.DENSE
+                ? new OrderStatisticTree<>(Comparator.comparingLong(StoredWidget::getOrderKey))
+                : new OrderStatisticTree<>();
+    }
+
+    // is told about every widget whose z or order key was changed to make room for another one
+    public void setReorderListener(Consumer<StoredWidget> reorderListener) {
+        this.reorderListener = reorderListener;
+    }
+
+    public ZOrdering getZOrdering() {
+        return zOrdering;
+    }
+
+    public Comparator<? super StoredWidget> comparator() {
+        return widgets.comparator();
+    }
+
+    public int size() {
+        return widgets.size();
+    }
+
+    public boolean isEmpty() {
+        return widgets.isEmpty();
+    }
+
+    public int zOf(StoredWidget widget) {
+        return zOrdering == ZOrdering.DENSE ? widgets.indexOf(widget) : widget.getZ();
+    }
+
+    public int getTopZ() {
+        if (widgets.isEmpty())
+            return 0;
+        if (zOrdering == ZOrdering.DENSE)
+            return widgets.size();
+        return widgets.last().getZ() + 1; // TODO: can cause type overflow
+    }
+
+    // z of the lowest and of the highest widget, the order must not be empty
+    public int getMinZ() {
+        return zOrdering == ZOrdering.DENSE ? 0 : widgets.first().getZ();
+    }
+
+    public int getMaxZ() {
+        return zOrdering == ZOrdering.DENSE ? widgets.size() - 1 : widgets.last().getZ();
+    }
+
+    public void putOnTop(StoredWidget widget) {
+        widget.setZ(getTopZ());
+        if (zOrdering == ZOrdering.DENSE)
+            widget.setOrderKey(orderKeyAt(widgets.size()));
+        widgets.add(widget);
+    }
+
+    public void insert(StoredWidget widget, int z) {
+        if (zOrdering == ZOrdering.DENSE) {
+            int position = Math.max(0, Math.min(z, widgets.size()));
+            widget.setZ(position);
+            widget.setOrderKey(orderKeyAt(position));
+            widgets.add(widget);
+            return;
+        }
+        widget.setZ(z);
+        // shifting the run of consecutive widgets by one doesn't change their order, so they can be shifted in place
+        Iterator<StoredWidget> widgetsWithSameOrGreaterZ = widgets.tailIterator(widget);
+        while (widgetsWithSameOrGreaterZ.hasNext()) {
+            StoredWidget widgetToShift = widgetsWithSameOrGreaterZ.next();
+            if (widgetToShift.getZ() != z)
+                break;
+            widgetToShift.setZ(++z); // TODO: can cause type overflow
+            reorderListener.accept(widgetToShift);
+        }
+        widgets.add(widget);
+    }
+
+    // moves the widget already stored here to the given z
+    public void move(StoredWidget widget, int z) {
+        if (z == zOf(widget)) {
+            widget.setZ(z);
+            return;
+        }
+        widgets.remove(widget);
+        insert(widget, z);
+    }
+
+    public void remove(StoredWidget widget) {
+        widgets.remove(widget);
+    }
+
+    // puts restored widgets into an empty order, their z or order keys are taken as they are
+    public void restore(Collection<StoredWidget> restoredWidgets) {
+        if (!widgets.isEmpty())
+            throw new IllegalStateException("only an empty order can be restored");
+        widgets.addAll(restoredWidgets);
+    }
+
+    public void removeAll(Collection<StoredWidget> widgetsToRemove) {
+        widgets.removeAll(widgetsToRemove);
+    }
+
+    public Stream<StoredWidget> stream(int fromIndex) {
+        return widgets.stream(fromIndex);
+    }
+
+    // widgets with fromZ <= z <= toZ, starting with the skip-th of them; the ends of the range are found by their positions in the tree
+    public Stream<StoredWidget> streamBetweenZ(int fromZ, int toZ, int skip) {
+        int fromIndex = indexOfZ(fromZ);
+        int toIndex = toZ == Integer.MAX_VALUE ? widgets.size() : indexOfZ(toZ + 1);
+        int from = (int) Math.min((long) fromIndex + skip, toIndex);
+        return widgets.stream(from).limit(toIndex - from);
+    }
+
+    // the number of widgets with z less than the given one
+    private int indexOfZ(int z) {
+        if (zOrdering == ZOrdering.DENSE)
+            return Math.max(0, Math.min(z, widgets.size()));
+        return widgets.indexOf(new StoredWidget(BOUND_ID, 0, 0, z, 1, 1, null, 0));
+    }
+
+    // what the widgets are ordered by: z in SHIFTING, the order key in DENSE
+    public long sortKeyOf(StoredWidget widget) {
+        return zOrdering == ZOrdering.DENSE ? widget.getOrderKey() : widget.getZ();
+    }
+
+    // widgets after the given one, which has to be stored here
+    public Iterator<StoredWidget> iteratorAfter(StoredWidget widget) {
+        return widgets.iterator(widgets.indexOf(widget) + 1);
+    }
+
+    // widgets whose sort key is greater than the given one
+    public Iterator<StoredWidget> iteratorAfter(long sortKey) {
+        if (sortKey >= (zOrdering == ZOrdering.DENSE ? Long.MAX_VALUE : Integer.MAX_VALUE))
+            return Collections.emptyIterator();
+        StoredWidget bound = zOrdering == ZOrdering.DENSE
+                ? new StoredWidget(BOUND_ID, 0, 0, 0, 1, 1, null, sortKey + 1)
+                : new StoredWidget(BOUND_ID, 0, 0, (int) Math.max(sortKey + 1, Integer.MIN_VALUE), 1, 1, null, 0);
+        return widgets.tailIterator(bound);
+    }
+
+    // a free key between the widgets at position - 1 and position
+    private long orderKeyAt(int position) {
+        StoredWidget below = position > 0 ? widgets.get(position - 1) : null;
+        StoredWidget above = position < widgets.size() ? widgets.get(position) : null;
+        if (below == null && above == null)
+            return 0;
+        if (below == null) {
+            if (above.getOrderKey() >= Long.MIN_VALUE + ORDER_KEY_GAP)
+                return above.getOrderKey() - ORDER_KEY_GAP;
+        } else if (above == null) {
+            if (below.getOrderKey() <= Long.MAX_VALUE - ORDER_KEY_GAP)
+                return below.getOrderKey() + ORDER_KEY_GAP;
+        } else if (above.getOrderKey() - below.getOrderKey() > 1) {
+            return below.getOrderKey() + (above.getOrderKey() - below.getOrderKey()) / 2;
+        }
+        renumber();
+        return orderKeyAt(position);
+    }
+
+    // spreads the keys evenly again, it is O(n) but only needed once the gaps around some position are used up
+    private void renumber() {
+        long orderKey = -(widgets.size() / 2) * ORDER_KEY_GAP;
+        for (StoredWidget widget : widgets) {
+            widget.setOrderKey(orderKey);
+            orderKey += ORDER_KEY_GAP;
+            reorderListener.accept(widget);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.demo.widgetstorages;
+
+public enum ZOrdering {
+    // z is stored as given, putting a widget on a taken z shifts the consecutive widgets above it by one
+    SHIFTING,
+    // z is the position of the widget in the stack (0, 1, 2, ...); widgets are ordered by sparse keys,
+    // so putting a widget under a stack doesn't touch the widgets of the stack
+    DENSE
+}
@@ -7,6 +7,7 @@ import com.example.demo.widgetstorages.WidgetStorageWithPagingAndFiltering;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -209,4 +210,64 @@ public class CreatingTests {
         assertThat(result.get(2).getId()).isEqualTo(widget.getId());
         assertThat(result.get(2).getZ()).isEqualTo(4);
     }
+
+    @Test
+    public void shouldCreateBatch() {
+        WidgetStorageHelper.addWidgets(widgetStorage, 1, 2);
+        List<UUID> ids = widgetStorage.read().stream().map(Widget::getId).collect(Collectors.toList());
+
+        List<Widget> widgets = widgetStorage.create(List.of(
+                new WidgetCreateRequest() {{
+                    setX(1);
+                    setY(1);
+                    setZ(1);
+                    setWidth(1);
+                    setHeight(1);
+                }},
+                new WidgetCreateRequest() {{
+                    setX(2);
+                    setY(2);
+                    setWidth(2);
+                    setHeight(2);
+                }}));
+
+        assertThat(widgets).hasSize(2);
+        assertThat(widgets.get(0).getZ()).isEqualTo(1);
+        assertThat(widgets.get(1).getZ()).isEqualTo(4);
+        assertThat(widgets.get(1).getX()).isEqualTo(2);
+        assertThat(widgetStorage.read()).extracting(Widget::getId).containsExactly(widgets.get(0).getId(), ids.get(0), ids.get(1), widgets.get(1).getId());
+    }
+
+    @Test
+    public void shouldNotCreateAnythingWhenBatchHasIllegalRequest() {
+        assertThatThrownBy(() -> widgetStorage.create(List.of(
+                new WidgetCreateRequest() {{
+                    setX(1);
+                    setY(1);
+                    setWidth(1);
+                    setHeight(1);
+                }},
+                new WidgetCreateRequest() {{
+                    setX(1);
+                    setY(1);
+                    setWidth(0);
+                    setHeight(1);
+                }}))).isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(widgetStorage.read()).isEmpty();
+    }
+
+    @Test
+    public void shouldNotCreateAnythingWhenBatchHasNullRequest() {
+        assertThatThrownBy(() -> widgetStorage.create(Arrays.asList(
+                new WidgetCreateRequest() {{
+                    setX(1);
+                    setY(1);
+                    setWidth(1);
+                    setHeight(1);
+                }},
+                null))).isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(widgetStorage.read()).isEmpty();
+    }
 }
@@ -2,18 +2,18 @@ package com.example.demo;
 
 import com.example.demo.models.Widget;
 import com.example.demo.models.WidgetCreateRequest;
-import com.example.demo.widgetstorages.IWidgetStorage;
 import com.example.demo.widgetstorages.WidgetStorageWithPagingAndFiltering;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class DeletingTests {
-    private IWidgetStorage widgetStorage;
+    private WidgetStorageWithPagingAndFiltering widgetStorage;
 
     @BeforeEach
     public void setUp() {
@@ -60,4 +60,29 @@ public class DeletingTests {
         assertThat(result).hasSize(1);
         assertThat(result.get(0)).usingRecursiveComparison().isEqualTo(widget);
     }
+
+    @Test
+    public void shouldDeleteByIds() {
+        WidgetStorageHelper.addWidgets(widgetStorage, 1, 4);
+        List<UUID> ids = widgetStorage.read().stream().map(Widget::getId).collect(Collectors.toList());
+
+        List<Widget> deletedWidgets = widgetStorage.delete(List.of(ids.get(2), UUID.randomUUID(), ids.get(0)));
+
+        assertThat(deletedWidgets).extracting(Widget::getId).containsExactly(ids.get(0), ids.get(2));
+        assertThat(widgetStorage.read()).extracting(Widget::getId).containsExactly(ids.get(1), ids.get(3));
+    }
+
+    @Test
+    public void shouldDeleteInsideBounds() {
+        WidgetStorageHelper.addWidgets(widgetStorage, 1, 100);
+        List<UUID> ids = widgetStorage.read(0, 100).stream().map(Widget::getId).collect(Collectors.toList());
+
+        List<Widget> deletedWidgets = widgetStorage.delete(0, 50, 50, 0);
+
+        assertThat(deletedWidgets).hasSize(50);
+        assertThat(deletedWidgets.get(0).getId()).isEqualTo(ids.get(0));
+        assertThat(widgetStorage.read(0, 100)).extracting(Widget::getId).containsExactly(ids.subList(50, 100).toArray());
+        assertThat(widgetStorage.read(0, 50, 50, 0)).isEmpty();
+        assertThat(widgetStorage.read(0, 200, 200, 0)).hasSize(50);
+    }
 }
@@ -0,0 +1,109 @@
+package com.example.demo;
+
+import com.example.demo.models.Widget;
+import com.example.demo.models.WidgetCreateRequest;
+import com.example.demo.models.WidgetUpdateRequest;
+import com.example.demo.widgetstorages.WidgetStorageWithPagingAndFiltering;
+import com.example.demo.widgetstorages.ZOrdering;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DenseZOrderingTests {
+    private WidgetStorageWithPagingAndFiltering widgetStorage;
+
+    @BeforeEach
+    public void setUp() {
+        widgetStorage = new WidgetStorageWithPagingAndFiltering(ZOrdering.DENSE);
+    }
+
+    private Widget create(Integer z) {
+        return widgetStorage.create(new WidgetCreateRequest() {{
+            setX(0);
+            setY(0);
+            setZ(z);
+            setWidth(1);
+            setHeight(1);
+        }});
+    }
+
+    @Test
+    public void shouldPresentZAsPosition() {
+        Widget first = create(100);
+        Widget second = create(null);
+        Widget third = create(-5);
+
+        assertThat(first.getZ()).isEqualTo(0);
+        assertThat(second.getZ()).isEqualTo(1);
+        assertThat(third.getZ()).isEqualTo(0);
+        assertThat(widgetStorage.read()).extracting(Widget::getId).containsExactly(third.getId(), first.getId(), second.getId());
+        assertThat(widgetStorage.read()).extracting(Widget::getZ).containsExactly(0, 1, 2);
+    }
+
+    @Test
+    public void shouldNotModifyWidgetsAboveWhenInsertingBelow() {
+        List<Widget> stack = IntStream.range(0, 100).mapToObj(i -> create(null)).collect(Collectors.toList());
+
+        Widget bottom = create(0);
+
+        assertThat(bottom.getZ()).isEqualTo(0);
+        List<Widget> widgets = widgetStorage.read(0, 500);
+        assertThat(widgets.get(0).getId()).isEqualTo(bottom.getId());
+        for (int i = 0; i < stack.size(); i++) {
+            assertThat(widgets.get(i + 1).getZ()).isEqualTo(i + 1);
+            assertThat(widgets.get(i + 1).getLastModifiedDate()).isEqualTo(stack.get(i).getLastModifiedDate());
+        }
+    }
+
+    @Test
+    public void shouldKeepOrderWhenGapsAreUsedUp() {
+        Widget top = create(null);
+        Widget bottom = create(0);
+        for (int i = 0; i < 100; i++)
+            create(1);
+
+        List<Widget> widgets = widgetStorage.read(0, 500);
+        assertThat(widgets).hasSize(102);
+        assertThat(widgets.get(0).getId()).isEqualTo(bottom.getId());
+        assertThat(widgets.get(101).getId()).isEqualTo(top.getId());
+    }
+
+    @Test
+    public void shouldMoveWidget() {
+        Widget first = create(null);
+        Widget second = create(null);
+        Widget third = create(null);
+
+        Widget updatedWidget = widgetStorage.update(third.getId(), new WidgetUpdateRequest() {{
+            setZ(0);
+        }});
+
+        assertThat(updatedWidget.getZ()).isEqualTo(0);
+        assertThat(widgetStorage.read()).extracting(Widget::getId).containsExactly(third.getId(), first.getId(), second.getId());
+        assertThat(widgetStorage.read(first.getId()).getZ()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldReadWidgetWhileWidgetsAreInsertedBelow() {
+        Widget top = create(null);
+        CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < 20_000; i++)
+                create(i % 2 == 0 ? 0 : 1); // the tree is rotated all the time and the keys above the bottom one get renumbered
+        });
+
+        int z = 0;
+        while (!writer.isDone()) {
+            int nextZ = widgetStorage.read(top.getId()).getZ();
+            assertThat(nextZ).isGreaterThanOrEqualTo(z);
+            z = nextZ;
+        }
+        writer.join();
+        assertThat(widgetStorage.read(top.getId()).getZ()).isEqualTo(20_000);
+    }
+}
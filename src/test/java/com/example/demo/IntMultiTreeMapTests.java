@@ -0,0 +1,58 @@
+package com.example.demo;
+
+import com.example.demo.widgetstorages.IntMultiTreeMap;
+import com.example.demo.widgetstorages.SlotBitmap;
+import com.example.demo.widgetstorages.StoredWidget;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IntMultiTreeMapTests {
+    private static List<Integer> slotsOf(SlotBitmap bitmap) {
+        List<Integer> slots = new ArrayList<>();
+        bitmap.forEach(slots::add);
+        return slots;
+    }
+
+    @Test
+    public void shouldMatchSortedList() {
+        IntMultiTreeMap map = new IntMultiTreeMap(StoredWidget::getX);
+        Comparator<StoredWidget> order = Comparator.comparingInt(StoredWidget::getX).thenComparing(StoredWidget::getId);
+        TreeSet<StoredWidget> expected = new TreeSet<>(order);
+        Random random = new Random(1);
+        List<StoredWidget> widgets = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++)
+            widgets.add(new StoredWidget(UUID.randomUUID(), random.nextInt(i % 2 == 0 ? 50 : 100_000), i, 0, 1, 1)); // many equal keys as well
+        for (int round = 0; round < 3; round++) {
+            Collections.shuffle(widgets, random);
+            for (StoredWidget widget : widgets) {
+                map.put(widget, widget.getY()); // y is the slot
+                expected.add(widget);
+            }
+            assertThat(map.size()).isEqualTo(expected.size());
+            Collections.shuffle(widgets, random);
+            for (StoredWidget widget : widgets.subList(0, widgets.size() * 9 / 10)) // down to a few leaves, merging on the way
+                assertThat(map.remove(widget.getX(), widget)).isSameAs(expected.remove(widget) ? widget : null);
+            assertThat(map.remove(-1, widgets.get(0))).isNull();
+
+            assertThat(map.size()).isEqualTo(expected.size());
+            assertThat(map.unwrappedTail(Integer.MIN_VALUE)).containsExactly(expected.toArray());
+            for (int bound : new int[]{0, 25, 49, 50, 70_000, 100_000}) {
+                assertThat(map.unwrappedTail(bound)).containsExactly(expected.stream().filter(widget -> widget.getX() >= bound).toArray());
+                assertThat(map.unwrappedHead(bound)).containsExactly(expected.stream().filter(widget -> widget.getX() <= bound).toArray());
+                assertThat(map.filterHeadFor(widgets.stream(), bound).collect(Collectors.toSet()))
+                        .isEqualTo(expected.stream().filter(widget -> widget.getX() <= bound).collect(Collectors.toSet()));
+                SlotBitmap slots = new SlotBitmap(widgets.size());
+                map.addRangeTo(slots, bound, bound + 30_000);
+                assertThat(slotsOf(slots)).containsExactly(expected.stream()
+                        .filter(widget -> widget.getX() >= bound && widget.getX() <= bound + 30_000).mapToInt(StoredWidget::getY).sorted().boxed().toArray());
+                assertThat(map.filterTailFor(Stream.concat(widgets.stream(), expected.stream()), bound).count())
+                        .isEqualTo(2 * expected.stream().filter(widget -> widget.getX() >= bound).count());
+            }
+        }
+    }
+}
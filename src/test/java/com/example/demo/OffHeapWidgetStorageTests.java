@@ -0,0 +1,101 @@
+package com.example.demo;
+
+import com.example.demo.models.Widget;
+import com.example.demo.models.WidgetCreateRequest;
+import com.example.demo.models.WidgetUpdateRequest;
+import com.example.demo.widgetstorages.OffHeapWidgetStorage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// what the other slot storage doesn't have: records are allocated in chunks and the id table lives in a direct buffer too
+public class OffHeapWidgetStorageTests {
+    private static final int RECORDS_PER_CHUNK = 16_384;
+    private static final int CHUNK_BYTES = RECORDS_PER_CHUNK * 64;
+
+    private OffHeapWidgetStorage widgetStorage;
+
+    @BeforeEach
+    public void setUp() {
+        widgetStorage = new OffHeapWidgetStorage();
+    }
+
+    private Widget create(int x) {
+        return widgetStorage.create(new WidgetCreateRequest() {{
+            setX(x);
+            setY(0);
+            setWidth(2);
+            setHeight(2);
+        }});
+    }
+
+    private List<Widget> createMany(int number) {
+        return IntStream.range(0, number).mapToObj(this::create).collect(Collectors.toList());
+    }
+
+    @Test
+    public void shouldReuseFreedRecordsBeforeAllocatingChunk() {
+        List<Widget> widgets = createMany(RECORDS_PER_CHUNK); // fills the first chunk
+        long allocatedBytes = widgetStorage.getAllocatedBytes();
+        for (int i = 0; i < 100; i++)
+            widgetStorage.delete(widgets.get(i * 2).getId());
+
+        List<Widget> newWidgets = IntStream.range(0, 100).mapToObj(i -> create(-1 - i)).collect(Collectors.toList());
+
+        assertThat(widgetStorage.getAllocatedBytes()).isEqualTo(allocatedBytes);
+        assertThat(widgetStorage.read(widgets.get(0).getId())).isNull();
+        assertThat(widgetStorage.read(widgets.get(1).getId()).getX()).isEqualTo(1);
+        for (Widget newWidget : newWidgets)
+            assertThat(widgetStorage.read(newWidget.getId()).getX()).isEqualTo(newWidget.getX());
+
+        create(RECORDS_PER_CHUNK);
+        // a new chunk, and the id table, kept at most half full, doubles from 32 768 cells too
+        assertThat(widgetStorage.getAllocatedBytes()).isEqualTo(allocatedBytes + CHUNK_BYTES + 32_768 * 4);
+    }
+
+    @Test
+    public void shouldKeepWidgetsAcrossChunkBoundary() {
+        List<Widget> widgets = createMany(RECORDS_PER_CHUNK + 10);
+
+        assertThat(widgetStorage.read(widgets.get(RECORDS_PER_CHUNK - 1).getId()).getX()).isEqualTo(RECORDS_PER_CHUNK - 1);
+        assertThat(widgetStorage.read(widgets.get(RECORDS_PER_CHUNK).getId()).getX()).isEqualTo(RECORDS_PER_CHUNK);
+        assertThat(widgetStorage.read(RECORDS_PER_CHUNK - 3, RECORDS_PER_CHUNK + 3, 1, -1)).extracting(Widget::getX)
+                .containsExactly(RECORDS_PER_CHUNK - 2, RECORDS_PER_CHUNK - 1, RECORDS_PER_CHUNK, RECORDS_PER_CHUNK + 1, RECORDS_PER_CHUNK + 2);
+        assertThat(widgetStorage.read(RECORDS_PER_CHUNK - 1, 3)).extracting(Widget::getX)
+                .containsExactly(RECORDS_PER_CHUNK - 1, RECORDS_PER_CHUNK, RECORDS_PER_CHUNK + 1);
+
+        Widget moved = widgetStorage.update(widgets.get(RECORDS_PER_CHUNK + 5).getId(), new WidgetUpdateRequest() {{
+            setZ(0);
+        }});
+        widgetStorage.delete(widgets.get(RECORDS_PER_CHUNK).getId());
+
+        assertThat(widgetStorage.read(0, 2)).extracting(Widget::getId).containsExactly(moved.getId(), widgets.get(0).getId());
+        assertThat(widgetStorage.read(widgets.get(RECORDS_PER_CHUNK).getId())).isNull();
+        assertThat(widgetStorage.read(RECORDS_PER_CHUNK - 2, RECORDS_PER_CHUNK + 2, 1, -1)).extracting(Widget::getX)
+                .containsExactly(RECORDS_PER_CHUNK - 1, RECORDS_PER_CHUNK + 1);
+    }
+
+    @Test
+    public void shouldFindWidgetsAfterTableGrowsAndIdsAreRemoved() {
+        long emptyBytes = widgetStorage.getAllocatedBytes();
+        List<Widget> widgets = createMany(5_000);
+        // the table is kept at most half full, so it has grown from 16 to 16 384 cells; only the current table is counted
+        assertThat(widgetStorage.getAllocatedBytes()).isEqualTo(emptyBytes - 16 * 4 + CHUNK_BYTES + 16_384 * 4);
+
+        for (int i = 0; i < widgets.size(); i += 3) // removals shift entries back into the freed cells
+            widgetStorage.delete(widgets.get(i).getId());
+
+        for (int i = 0; i < widgets.size(); i++) {
+            Widget widget = widgetStorage.read(widgets.get(i).getId());
+            if (i % 3 == 0)
+                assertThat(widget).isNull();
+            else
+                assertThat(widget.getX()).isEqualTo(i);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.demo;
+
+import com.example.demo.widgetstorages.OrderStatisticTree;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OrderStatisticTreeTests {
+    private OrderStatisticTree<Integer> tree;
+    private List<Integer> expected;
+
+    @BeforeEach
+    public void setUp() {
+        tree = new OrderStatisticTree<>();
+        expected = new ArrayList<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 1000; i++) {
+            int value = random.nextInt(100_000);
+            if (!expected.contains(value)) {
+                tree.add(value);
+                expected.add(value);
+            }
+        }
+        for (int i = 0; i < 300; i++) {
+            Integer value = expected.remove(random.nextInt(expected.size()));
+            tree.remove(value);
+        }
+        expected.sort(Integer::compare);
+    }
+
+    @Test
+    public void shouldKeepOrder() {
+        assertThat(tree).hasSize(expected.size());
+        assertThat(new ArrayList<>(tree)).isEqualTo(expected);
+        assertThat(tree.first()).isEqualTo(expected.get(0));
+        assertThat(tree.last()).isEqualTo(expected.get(expected.size() - 1));
+    }
+
+    @Test
+    public void shouldFindByIndex() {
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(tree.get(i)).isEqualTo(expected.get(i));
+            assertThat(tree.indexOf(expected.get(i))).isEqualTo(i);
+        }
+    }
+
+    @Test
+    public void shouldIterateFromIndex() {
+        Iterator<Integer> iterator = tree.iterator(500);
+        for (int i = 500; i < expected.size(); i++)
+            assertThat(iterator.next()).isEqualTo(expected.get(i));
+        assertThat(iterator.hasNext()).isFalse();
+        assertThat(tree.iterator(expected.size()).hasNext()).isFalse();
+    }
+
+    @Test
+    public void shouldIterateFromElement() {
+        Iterator<Integer> iterator = tree.tailIterator(expected.get(100) + 1);
+        assertThat(iterator.next()).isEqualTo(expected.get(101));
+        iterator = tree.tailIterator(expected.get(100));
+        assertThat(iterator.next()).isEqualTo(expected.get(100));
+    }
+
+    @Test
+    public void shouldRemoveMany() {
+        List<Integer> elementsToRemove = new ArrayList<>();
+        for (int i = 0; i < expected.size(); i += 3)
+            elementsToRemove.add(expected.get(i));
+        expected.removeAll(elementsToRemove);
+
+        tree.removeAll(elementsToRemove);
+
+        assertThat(new ArrayList<>(tree)).isEqualTo(expected);
+        for (int i = 0; i < expected.size(); i++)
+            assertThat(tree.get(i)).isEqualTo(expected.get(i));
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.demo;
+
+import com.example.demo.models.Widget;
+import com.example.demo.models.WidgetCreateRequest;
+import com.example.demo.models.WidgetUpdateRequest;
+import com.example.demo.widgetstorages.PersistentWidgetStorage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class PersistentWidgetStorageTests {
+    private PersistentWidgetStorage widgetStorage;
+
+    @BeforeEach
+    public void setUp() {
+        widgetStorage = new PersistentWidgetStorage();
+    }
+
+    private Widget create(Integer z) {
+        return widgetStorage.create(new WidgetCreateRequest() {{
+            setX(1);
+            setY(1);
+            setZ(z);
+            setWidth(1);
+            setHeight(1);
+        }});
+    }
+
+    @Test
+    public void shouldShiftWidgetsWithSameOrGreaterZ() {
+        Widget first = create(1);
+        Widget second = create(2);
+        Widget fourth = create(4);
+
+        Widget inserted = create(1);
+
+        assertThat(widgetStorage.read()).extracting(Widget::getId).containsExactly(inserted.getId(), first.getId(), second.getId(), fourth.getId());
+        assertThat(widgetStorage.read()).extracting(Widget::getZ).containsExactly(1, 2, 3, 4);
+        assertThat(widgetStorage.read(first.getId()).getZ()).isEqualTo(2);
+        assertThat(widgetStorage.read(fourth.getId()).getLastModifiedDate()).isEqualTo(fourth.getLastModifiedDate());
+    }
+
+    @Test
+    public void shouldKeepReadWidgetsUnchanged() {
+        Widget first = create(null);
+        Widget second = create(null);
+        List<Widget> widgets = widgetStorage.read();
+
+        create(0);
+        widgetStorage.update(second.getId(), new WidgetUpdateRequest() {{
+            setX(10);
+        }});
+        widgetStorage.delete(first.getId());
+
+        assertThat(widgets).extracting(Widget::getId).containsExactly(first.getId(), second.getId());
+        assertThat(widgets).extracting(Widget::getZ).containsExactly(0, 1);
+        assertThat(widgets).extracting(Widget::getX).containsExactly(1, 1);
+        assertThat(widgetStorage.read()).extracting(Widget::getZ).containsExactly(0, 2);
+    }
+
+    @Test
+    public void shouldRejectWholeUpdate() {
+        Widget widget = create(null);
+
+        assertThatThrownBy(() -> widgetStorage.update(widget.getId(), new WidgetUpdateRequest() {{
+            setX(10);
+            setWidth(0);
+        }})).isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(widgetStorage.read(widget.getId()).getX()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldReadPage() {
+        for (int i = 0; i < 20; i++)
+            create(null);
+
+        assertThat(widgetStorage.read(5, 3)).extracting(Widget::getZ).containsExactly(5, 6, 7);
+        assertThat(widgetStorage.read(19, 3)).extracting(Widget::getZ).containsExactly(19);
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.demo;
+
+import com.example.demo.models.Widget;
+import com.example.demo.models.WidgetCreateRequest;
+import com.example.demo.models.WidgetPage;
+import com.example.demo.models.WidgetUpdateRequest;
+import com.example.demo.widgetstorages.WidgetStorageWithPagingAndFiltering;
+import com.example.demo.widgetstorages.ZOrdering;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ReadingWithCursorTests {
+
+    @ParameterizedTest
+    @EnumSource(ZOrdering.class)
+    public void shouldReadAllPages(ZOrdering zOrdering) {
+        WidgetStorageWithPagingAndFiltering widgetStorage = new WidgetStorageWithPagingAndFiltering(zOrdering);
+        WidgetStorageHelper.addWidgets(widgetStorage, 0, 25);
+
+        WidgetPage first = widgetStorage.readPage(null, null, false);
+        WidgetPage second = widgetStorage.readPage(first.getNextCursor(), 10, false);
+        WidgetPage third = widgetStorage.readPage(second.getNextCursor(), 10, false);
+
+        assertThat(first.getWidgets()).extracting(Widget::getX).containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+        assertThat(second.getWidgets()).extracting(Widget::getX).containsExactly(10, 11, 12, 13, 14, 15, 16, 17, 18, 19);
+        assertThat(third.getWidgets()).extracting(Widget::getX).containsExactly(20, 21, 22, 23, 24);
+        assertThat(third.getNextCursor()).isNull();
+    }
+
+    @ParameterizedTest
+    @EnumSource(ZOrdering.class)
+    public void shouldNotRepeatWidgetsShiftedBetweenPages(ZOrdering zOrdering) {
+        WidgetStorageWithPagingAndFiltering widgetStorage = new WidgetStorageWithPagingAndFiltering(zOrdering);
+        WidgetStorageHelper.addWidgets(widgetStorage, 0, 20);
+
+        WidgetPage first = widgetStorage.readPage(null, 10, false);
+        // goes below the first page and shifts every widget up, which would repeat the last one with skip/take
+        widgetStorage.create(new WidgetCreateRequest() {{
+            setX(100);
+            setY(100);
+            setZ(0);
+            setWidth(1);
+            setHeight(1);
+        }});
+        WidgetPage second = widgetStorage.readPage(first.getNextCursor(), 10, false);
+
+        assertThat(second.getWidgets()).extracting(Widget::getX).containsExactly(10, 11, 12, 13, 14, 15, 16, 17, 18, 19);
+        assertThat(second.getNextCursor()).isNull();
+    }
+
+    @ParameterizedTest
+    @EnumSource(ZOrdering.class)
+    public void shouldContinueAfterDeletedWidget(ZOrdering zOrdering) {
+        WidgetStorageWithPagingAndFiltering widgetStorage = new WidgetStorageWithPagingAndFiltering(zOrdering);
+        WidgetStorageHelper.addWidgets(widgetStorage, 0, 10);
+
+        WidgetPage first = widgetStorage.readPage(null, 5, false);
+        widgetStorage.delete(first.getWidgets().get(4).getId());
+        WidgetPage second = widgetStorage.readPage(first.getNextCursor(), 5, false);
+
+        assertThat(second.getWidgets()).extracting(Widget::getX).containsExactly(5, 6, 7, 8, 9);
+    }
+
+    private static void createAt(WidgetStorageWithPagingAndFiltering widgetStorage, int x, int z) {
+        widgetStorage.create(new WidgetCreateRequest() {{
+            setX(x);
+            setY(100);
+            setZ(z);
+            setWidth(1);
+            setHeight(1);
+        }});
+    }
+
+    @ParameterizedTest
+    @EnumSource(ZOrdering.class)
+    public void shouldContinueAfterMovedWidget(ZOrdering zOrdering) {
+        WidgetStorageWithPagingAndFiltering widgetStorage = new WidgetStorageWithPagingAndFiltering(zOrdering);
+        WidgetStorageHelper.addWidgets(widgetStorage, 0, 6);
+
+        WidgetPage first = widgetStorage.readPage(null, 2, false);
+        widgetStorage.update(first.getWidgets().get(1).getId(), new WidgetUpdateRequest() {{
+            setZ(100);
+        }});
+        WidgetPage second = widgetStorage.readPage(first.getNextCursor(), 10, false);
+
+        // the moved widget is read again on top, the ones after the cursor are all there
+        assertThat(second.getWidgets()).extracting(Widget::getX).containsExactly(2, 3, 4, 5, 1);
+    }
+
+    @Test
+    public void shouldContinueAfterWidgetsAreRenumbered() {
+        WidgetStorageWithPagingAndFiltering widgetStorage = new WidgetStorageWithPagingAndFiltering(ZOrdering.DENSE);
+        WidgetStorageHelper.addWidgets(widgetStorage, 0, 20);
+
+        WidgetPage first = widgetStorage.readPage(null, 10, false);
+        for (int i = 0; i < 80; i++) // uses up the gap between the first two order keys, so all the keys are renumbered
+            createAt(widgetStorage, 100 + i, 1);
+        WidgetPage second = widgetStorage.readPage(first.getNextCursor(), 10, false);
+
+        assertThat(second.getWidgets()).extracting(Widget::getX).containsExactly(10, 11, 12, 13, 14, 15, 16, 17, 18, 19);
+    }
+
+    @Test
+    public void shouldFailWhenWidgetsAreRenumberedAfterDeletedWidget() {
+        WidgetStorageWithPagingAndFiltering widgetStorage = new WidgetStorageWithPagingAndFiltering(ZOrdering.DENSE);
+        WidgetStorageHelper.addWidgets(widgetStorage, 0, 20);
+
+        WidgetPage first = widgetStorage.readPage(null, 10, false);
+        widgetStorage.delete(first.getWidgets().get(9).getId());
+        for (int i = 0; i < 80; i++)
+            createAt(widgetStorage, 100 + i, 1);
+
+        // the order key kept in the cursor is no longer between the same widgets, and there is no widget left to continue after
+        assertThatThrownBy(() -> widgetStorage.readPage(first.getNextCursor(), 10, false)).isInstanceOf(ConcurrentModificationException.class);
+    }
+
+    @Test
+    public void shouldFailWhenWidgetsAreShiftedAndMoved() {
+        WidgetStorageWithPagingAndFiltering widgetStorage = new WidgetStorageWithPagingAndFiltering(ZOrdering.SHIFTING);
+        WidgetStorageHelper.addWidgets(widgetStorage, 0, 20);
+
+        WidgetPage first = widgetStorage.readPage(null, 10, false);
+        createAt(widgetStorage, 100, 0); // shifts every widget up
+        widgetStorage.update(first.getWidgets().get(9).getId(), new WidgetUpdateRequest() {{
+            setZ(1000);
+        }});
+
+        assertThatThrownBy(() -> widgetStorage.readPage(first.getNextCursor(), 10, false)).isInstanceOf(ConcurrentModificationException.class);
+    }
+
+    @Test
+    public void shouldFailPinnedCursorAfterChange() {
+        WidgetStorageWithPagingAndFiltering widgetStorage = new WidgetStorageWithPagingAndFiltering();
+        WidgetStorageHelper.addWidgets(widgetStorage, 0, 30);
+
+        WidgetPage first = widgetStorage.readPage(null, 10, true);
+        WidgetPage second = widgetStorage.readPage(first.getNextCursor(), 10, false);
+        assertThat(second.getWidgets()).extracting(Widget::getX).containsExactly(10, 11, 12, 13, 14, 15, 16, 17, 18, 19);
+
+        widgetStorage.update(first.getWidgets().get(0).getId(), new WidgetUpdateRequest() {{
+            setX(-1);
+        }});
+        assertThatThrownBy(() -> widgetStorage.readPage(second.getNextCursor(), 10, false)).isInstanceOf(ConcurrentModificationException.class);
+        assertThat(widgetStorage.readPage(widgetStorage.readPage(null, 10, false).getNextCursor(), 10, false).getWidgets())
+                .extracting(Widget::getX).containsExactly(10, 11, 12, 13, 14, 15, 16, 17, 18, 19);
+    }
+
+    @Test
+    public void shouldKeepPinnedCursorWhenNothingIsDeleted() {
+        WidgetStorageWithPagingAndFiltering widgetStorage = new WidgetStorageWithPagingAndFiltering();
+        WidgetStorageHelper.addWidgets(widgetStorage, 0, 20);
+
+        WidgetPage first = widgetStorage.readPage(null, 10, true);
+        widgetStorage.delete(1000, 2000, 2000, 1000);
+        widgetStorage.delete(List.of(UUID.randomUUID()));
+        widgetStorage.delete(UUID.randomUUID());
+
+        assertThat(widgetStorage.readPage(first.getNextCursor(), 10, false).getWidgets())
+                .extracting(Widget::getX).containsExactly(10, 11, 12, 13, 14, 15, 16, 17, 18, 19);
+    }
+
+    @Test
+    public void shouldRejectMalformedCursorAndTake() {
+        WidgetStorageWithPagingAndFiltering widgetStorage = new WidgetStorageWithPagingAndFiltering();
+        WidgetStorageHelper.addWidgets(widgetStorage, 0, 10);
+
+        assertThatThrownBy(() -> widgetStorage.readPage("not a cursor", 10, false)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> widgetStorage.readPage("AAAA", 10, false)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> widgetStorage.readPage(null, 0, false)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> widgetStorage.readPage(null, 501, false)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
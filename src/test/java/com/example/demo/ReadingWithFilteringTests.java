@@ -8,6 +8,8 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -187,6 +189,52 @@ public class ReadingWithFilteringTests {
         assertThat(readWidgets.get(1).getId()).isEqualTo(secondWidget.getId());
     }
 
+    @Test
+    public void shouldReturnFewAndManyWidgetsInZOrder() {
+        WidgetStorageWithPagingAndFiltering widgetStorage = new WidgetStorageWithPagingAndFiltering();
+        Random random = new Random(1);
+        for (int i = 0; i < 300; i++) {
+            int x = i * 10;
+            widgetStorage.create(new WidgetCreateRequest() {{
+                setX(x);
+                setY(0);
+                setZ(random.nextInt(1000));
+                setWidth(2);
+                setHeight(2);
+            }});
+        }
+
+        // a few widgets found are sorted, many are taken from the z order
+        for (int rightBound : new int[]{50, 3000}) {
+            List<Widget> readWidgets = widgetStorage.read(0, rightBound, 10, -10);
+
+            assertThat(readWidgets).extracting(Widget::getX).containsExactlyInAnyOrder(IntStream.range(1, rightBound / 10).map(i -> i * 10).boxed().toArray());
+            assertThat(readWidgets).extracting(Widget::getZ).containsExactly(readWidgets.stream().map(Widget::getZ).sorted().toArray());
+        }
+    }
+
+    @Test
+    public void shouldReadPageInsideBounds() {
+        WidgetStorageWithPagingAndFiltering widgetStorage = new WidgetStorageWithPagingAndFiltering();
+        for (int i = 0; i < 300; i++) {
+            int x = i * 10;
+            int z = i;
+            widgetStorage.create(new WidgetCreateRequest() {{
+                setX(x);
+                setY(0);
+                setZ(z);
+                setWidth(2);
+                setHeight(2);
+            }});
+        }
+
+        assertThat(widgetStorage.read(5, 3, 0, 3000, 10, -10)).extracting(Widget::getX).containsExactly(60, 70, 80);
+        // the widgets are at the top of the z order, so they are taken from the spatial index
+        assertThat(widgetStorage.read(1, 2, 2885, 3000, 10, -10)).extracting(Widget::getX).containsExactly(2900, 2910);
+        assertThat(widgetStorage.read(9, null, 2885, 3000, 10, -10)).extracting(Widget::getX).containsExactly(2980, 2990);
+        assertThat(widgetStorage.read(0, 0, 0, 3000, 10, -10)).isEmpty();
+    }
+
     @Test
     public void shouldHandleMoving() {
         widgetStorage.update(upperRightWidget.getId(), new WidgetUpdateRequest() {{
@@ -0,0 +1,75 @@
+package com.example.demo;
+
+import com.example.demo.models.Widget;
+import com.example.demo.models.WidgetCreateRequest;
+import com.example.demo.widgetstorages.*;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ReadingZRangeTests {
+
+    private static Stream<IWidgetStorage> widgetStorages() {
+        return Stream.of(
+                new WidgetStorage(),
+                new WidgetStorageWithPaging(),
+                new WidgetStorageWithPaging(ZOrdering.DENSE),
+                new WidgetStorageWithFiltering(),
+                new WidgetStorageWithPagingAndFiltering(),
+                new WidgetStorageWithPagingAndFiltering(ZOrdering.DENSE),
+                new PersistentWidgetStorage(),
+                new ColumnarWidgetStorage(),
+                new OffHeapWidgetStorage());
+    }
+
+    // z is kept as given in these, so it can have gaps
+    private static Stream<IWidgetStorage> shiftingWidgetStorages() {
+        return Stream.of(
+                new WidgetStorage(),
+                new WidgetStorageWithPaging(),
+                new WidgetStorageWithFiltering(),
+                new WidgetStorageWithPagingAndFiltering(),
+                new PersistentWidgetStorage(),
+                new ColumnarWidgetStorage(),
+                new OffHeapWidgetStorage());
+    }
+
+    @ParameterizedTest
+    @MethodSource("widgetStorages")
+    public void shouldReadZRange(IWidgetStorage widgetStorage) {
+        WidgetStorageHelper.addWidgets(widgetStorage, 0, 50);
+
+        assertThat(widgetStorage.readZRange(10, 19, null, null)).extracting(Widget::getZ).containsExactly(10, 11, 12, 13, 14, 15, 16, 17, 18, 19);
+        assertThat(widgetStorage.readZRange(10, 19, 3, 4)).extracting(Widget::getZ).containsExactly(13, 14, 15, 16);
+        assertThat(widgetStorage.readZRange(10, 19, 8, 4)).extracting(Widget::getZ).containsExactly(18, 19);
+        assertThat(widgetStorage.readZRange(10, 19, 10, 4)).isEmpty();
+        assertThat(widgetStorage.readZRange(46, Integer.MAX_VALUE, null, null)).extracting(Widget::getZ).containsExactly(46, 47, 48, 49);
+        assertThat(widgetStorage.readZRange(Integer.MIN_VALUE, 2, null, null)).extracting(Widget::getZ).containsExactly(0, 1, 2);
+        assertThat(widgetStorage.readZRange(Integer.MIN_VALUE, -1, null, null)).isEmpty();
+        assertThat(widgetStorage.readZRange(50, 100, null, null)).isEmpty();
+        assertThat(widgetStorage.readZRange(Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, null)).isEmpty();
+        assertThatThrownBy(() -> widgetStorage.readZRange(20, 19, null, null)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> widgetStorage.readZRange(10, 19, -1, null)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> widgetStorage.readZRange(10, 19, null, 501)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @ParameterizedTest
+    @MethodSource("shiftingWidgetStorages")
+    public void shouldReadZRangeBetweenWidgets(IWidgetStorage widgetStorage) {
+        IntStream.range(0, 10).forEach(i -> widgetStorage.create(new WidgetCreateRequest() {{
+            setX(i);
+            setY(0);
+            setZ(i * 10);
+            setWidth(1);
+            setHeight(1);
+        }}));
+
+        assertThat(widgetStorage.readZRange(15, 45, null, null)).extracting(Widget::getZ).containsExactly(20, 30, 40);
+        assertThat(widgetStorage.readZRange(41, 49, null, null)).isEmpty();
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.demo;
+
+import com.example.demo.widgetstorages.SlotBitmap;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SlotBitmapTests {
+    private static final int CAPACITY = 300_000;
+
+    private static List<Integer> slotsOf(SlotBitmap bitmap) {
+        List<Integer> slots = new ArrayList<>();
+        bitmap.forEach(slots::add);
+        return slots;
+    }
+
+    // chunks of 65536 slots: dense, sparse and empty ones, so every pair of array and bits chunks gets intersected
+    private static BitSet randomSlots(Random random) {
+        BitSet slots = new BitSet(CAPACITY);
+        for (int chunk = 0; chunk * 65536 < CAPACITY; chunk++) {
+            int count = new int[]{0, 10, 3000, 20_000}[random.nextInt(4)];
+            for (int i = 0; i < count; i++)
+                slots.set(Math.min(CAPACITY - 1, chunk * 65536 + random.nextInt(65536)));
+        }
+        return slots;
+    }
+
+    private static SlotBitmap toBitmap(BitSet slots, Random random) {
+        List<Integer> shuffled = new ArrayList<>();
+        slots.stream().forEach(shuffled::add);
+        Collections.shuffle(shuffled, random);
+        SlotBitmap bitmap = new SlotBitmap(CAPACITY);
+        shuffled.forEach(bitmap::add);
+        return bitmap;
+    }
+
+    @Test
+    public void shouldIntersectLikeBitSet() {
+        Random random = new Random(1);
+        for (int round = 0; round < 20; round++) {
+            BitSet expected = randomSlots(random);
+            SlotBitmap bitmap = toBitmap(expected, random);
+            assertThat(bitmap.cardinality()).isEqualTo(expected.cardinality());
+            for (int i = 0; i < 3; i++) {
+                BitSet other = randomSlots(random);
+                bitmap.and(toBitmap(other, random));
+                expected.and(other);
+            }
+
+            assertThat(bitmap.cardinality()).isEqualTo(expected.cardinality());
+            assertThat(bitmap.isEmpty()).isEqualTo(expected.isEmpty());
+            assertThat(slotsOf(bitmap)).containsExactly(expected.stream().boxed().toArray());
+        }
+    }
+
+    @Test
+    public void shouldBeFilledAgainAfterClear() {
+        Random random = new Random(2);
+        SlotBitmap bitmap = toBitmap(randomSlots(random), random);
+        bitmap.clear();
+        assertThat(bitmap.isEmpty()).isTrue();
+
+        BitSet expected = randomSlots(random);
+        expected.stream().forEach(bitmap::add);
+        assertThat(slotsOf(bitmap)).containsExactly(expected.stream().boxed().toArray());
+    }
+
+    @Test
+    public void shouldBeEmptyWhenDenseChunksDontIntersect() {
+        SlotBitmap bitmap = new SlotBitmap(CAPACITY);
+        SlotBitmap other = new SlotBitmap(CAPACITY);
+        for (int slot = 0; slot < 5000; slot++) { // past 4096 slots the chunks are kept as bits
+            bitmap.add(slot);
+            other.add(slot + 6000);
+        }
+
+        bitmap.and(other);
+
+        assertThat(bitmap.isEmpty()).isTrue();
+        assertThat(bitmap.cardinality()).isEqualTo(0);
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.demo;
+
+import com.example.demo.models.Widget;
+import com.example.demo.models.WidgetCreateRequest;
+import com.example.demo.models.WidgetUpdateRequest;
+import com.example.demo.widgetstorages.ColumnarWidgetStorage;
+import com.example.demo.widgetstorages.OffHeapWidgetStorage;
+import com.example.demo.widgetstorages.SlotWidgetStorage;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class SlotWidgetStorageTests {
+
+    private static Stream<SlotWidgetStorage> widgetStorages() {
+        return Stream.of(new ColumnarWidgetStorage(), new OffHeapWidgetStorage());
+    }
+
+    private static Widget create(SlotWidgetStorage widgetStorage, int x, Integer z) {
+        return widgetStorage.create(new WidgetCreateRequest() {{
+            setX(x);
+            setY(0);
+            setZ(z);
+            setWidth(2);
+            setHeight(2);
+        }});
+    }
+
+    @ParameterizedTest
+    @MethodSource("widgetStorages")
+    public void shouldShiftWidgetsWithSameOrGreaterZ(SlotWidgetStorage widgetStorage) {
+        Widget first = create(widgetStorage, 1, 1);
+        Widget second = create(widgetStorage, 2, 2);
+        Widget fourth = create(widgetStorage, 4, 4);
+
+        Widget inserted = create(widgetStorage, 0, 1);
+
+        assertThat(widgetStorage.read()).extracting(Widget::getId).containsExactly(inserted.getId(), first.getId(), second.getId(), fourth.getId());
+        assertThat(widgetStorage.read()).extracting(Widget::getZ).containsExactly(1, 2, 3, 4);
+        assertThat(widgetStorage.read(first.getId()).getZ()).isEqualTo(2);
+        assertThat(widgetStorage.read(fourth.getId()).getLastModifiedDate()).isEqualTo(fourth.getLastModifiedDate());
+    }
+
+    @ParameterizedTest
+    @MethodSource("widgetStorages")
+    public void shouldReuseSlotsOfDeletedWidgets(SlotWidgetStorage widgetStorage) {
+        List<Widget> widgets = IntStream.range(0, 100).mapToObj(i -> create(widgetStorage, i * 10, null)).collect(Collectors.toList());
+        for (int i = 0; i < 100; i += 2)
+            widgetStorage.delete(widgets.get(i).getId());
+
+        List<Widget> newWidgets = IntStream.range(0, 50).mapToObj(i -> create(widgetStorage, i * 10 + 5, null)).collect(Collectors.toList());
+
+        assertThat(widgetStorage.read(widgets.get(0).getId())).isNull();
+        assertThat(widgetStorage.read(widgets.get(1).getId()).getX()).isEqualTo(10);
+        assertThat(widgetStorage.read(newWidgets.get(0).getId()).getX()).isEqualTo(5);
+        assertThat(widgetStorage.read(0, 500)).hasSize(100);
+        assertThat(widgetStorage.read(0, 30, 1, -1)).extracting(Widget::getX).containsExactly(10, 5, 15, 25);
+    }
+
+    @ParameterizedTest
+    @MethodSource("widgetStorages")
+    public void shouldReadPageInsideBounds(SlotWidgetStorage widgetStorage) {
+        IntStream.range(0, 100).forEach(i -> create(widgetStorage, i * 10, i));
+
+        assertThat(widgetStorage.read(5, 3, 0, 1000, 1, -1)).extracting(Widget::getX).containsExactly(60, 70, 80);
+        assertThat(widgetStorage.read(null, 2, 885, 1000, 1, -1)).extracting(Widget::getX).containsExactly(890, 900);
+        assertThat(widgetStorage.read(9, null, 885, 1000, 1, -1)).extracting(Widget::getX).containsExactly(980, 990);
+    }
+
+    @ParameterizedTest
+    @MethodSource("widgetStorages")
+    public void shouldMoveWidget(SlotWidgetStorage widgetStorage) {
+        Widget first = create(widgetStorage, 1, null);
+        Widget second = create(widgetStorage, 2, null);
+        Widget third = create(widgetStorage, 3, null);
+
+        widgetStorage.update(third.getId(), new WidgetUpdateRequest() {{
+            setZ(0);
+            setX(100);
+        }});
+
+        assertThat(widgetStorage.read()).extracting(Widget::getId).containsExactly(third.getId(), first.getId(), second.getId());
+        assertThat(widgetStorage.read()).extracting(Widget::getZ).containsExactly(0, 1, 2);
+        assertThat(widgetStorage.read(90, 110, 1, -1)).extracting(Widget::getId).containsExactly(third.getId());
+        assertThat(widgetStorage.read(0, 10, 1, -1)).extracting(Widget::getId).containsExactly(first.getId(), second.getId());
+    }
+
+    @ParameterizedTest
+    @MethodSource("widgetStorages")
+    public void shouldRejectWholeUpdate(SlotWidgetStorage widgetStorage) {
+        Widget widget = create(widgetStorage, 1, null);
+
+        assertThatThrownBy(() -> widgetStorage.update(widget.getId(), new WidgetUpdateRequest() {{
+            setX(10);
+            setWidth(0);
+        }})).isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(widgetStorage.read(widget.getId()).getX()).isEqualTo(1);
+        assertThat(widgetStorage.read(widget.getId()).getLastModifiedDate()).isEqualTo(widget.getLastModifiedDate());
+    }
+}
@@ -0,0 +1,291 @@
+package com.example.demo;
+
+import com.example.demo.models.Viewport;
+import com.example.demo.models.Widget;
+import com.example.demo.models.WidgetCreateRequest;
+import com.example.demo.models.WidgetUpdateRequest;
+import com.example.demo.models.WidgetsByViewports;
+import com.example.demo.models.WidgetsSummary;
+import com.example.demo.widgetstorages.*;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SpatialIndexTests {
+
+    private static Stream<SpatialIndex> spatialIndexes() {
+        return Stream.of(
+                new MultiTreeMapSpatialIndex(),
+                new RTreeSpatialIndex(),
+                new GridSpatialIndex(16),
+                new LooseQuadTreeSpatialIndex());
+    }
+
+    private static double distance(Widget widget, int x, int y) {
+        double dx = Math.max(0, Math.max(widget.getX() - widget.getWidth() / 2 - x, x - widget.getX() - widget.getWidth() / 2));
+        double dy = Math.max(0, Math.max(widget.getY() - widget.getHeight() / 2 - y, y - widget.getY() - widget.getHeight() / 2));
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    private static Widget create(WidgetStorageWithPagingAndFiltering widgetStorage, int x, int y, int width, int height) {
+        return widgetStorage.create(new WidgetCreateRequest() {{
+            setX(x);
+            setY(y);
+            setWidth(width);
+            setHeight(height);
+        }});
+    }
+
+    @ParameterizedTest
+    @MethodSource("spatialIndexes")
+    public void shouldFindWidgetsInside(SpatialIndex spatialIndex) {
+        WidgetStorageWithPagingAndFiltering widgetStorage = new WidgetStorageWithPagingAndFiltering(spatialIndex);
+        Widget inside = create(widgetStorage, 10, 10, 10, 10);
+        create(widgetStorage, 30, 10, 10, 10);
+        create(widgetStorage, 10, 10, 100, 10);
+        Widget negative = create(widgetStorage, -10, -10, 10, 10);
+
+        assertThat(widgetStorage.read(0, 20, 20, 0)).extracting(Widget::getId).containsExactly(inside.getId());
+        assertThat(widgetStorage.read(-20, 20, 20, -20)).extracting(Widget::getId).containsExactly(inside.getId(), negative.getId());
+    }
+
+    @ParameterizedTest
+    @MethodSource("spatialIndexes")
+    public void shouldFollowMovedAndDeletedWidgets(SpatialIndex spatialIndex) {
+        WidgetStorageWithPagingAndFiltering widgetStorage = new WidgetStorageWithPagingAndFiltering(spatialIndex);
+        List<Widget> widgets = IntStream.range(0, 200)
+                .mapToObj(i -> create(widgetStorage, i * 10, i * 10, 4, 4))
+                .collect(Collectors.toList());
+
+        widgetStorage.update(widgets.get(150).getId(), new WidgetUpdateRequest() {{
+            setX(50);
+            setY(50);
+        }});
+        widgetStorage.delete(widgets.get(5).getId());
+
+        assertThat(widgetStorage.read(-10, 60, 60, -10)).extracting(Widget::getId).containsExactly(
+                widgets.get(0).getId(), widgets.get(1).getId(), widgets.get(2).getId(), widgets.get(3).getId(),
+                widgets.get(4).getId(), widgets.get(150).getId());
+        assertThat(widgetStorage.read(1495, 1505, 1505, 1495)).isEmpty();
+    }
+
+    @ParameterizedTest
+    @MethodSource("spatialIndexes")
+    public void shouldFindHugeWidgets(SpatialIndex spatialIndex) {
+        WidgetStorageWithFiltering widgetStorage = new WidgetStorageWithFiltering(spatialIndex);
+        Widget huge = widgetStorage.create(new WidgetCreateRequest() {{
+            setX(0);
+            setY(0);
+            setWidth(2_000_000_000);
+            setHeight(2_000_000_000);
+        }});
+
+        assertThat(widgetStorage.read(Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE))
+                .extracting(Widget::getId).containsExactly(huge.getId());
+        assertThat(widgetStorage.read(-10, 10, 10, -10)).isEmpty();
+        assertThat(widgetStorage.read(-10, 10, 10, -10, BoundsMode.INTERSECTING)).extracting(Widget::getId).containsExactly(huge.getId());
+    }
+
+    @ParameterizedTest
+    @MethodSource("spatialIndexes")
+    public void shouldFindIntersectingWidgets(SpatialIndex spatialIndex) {
+        WidgetStorageWithPagingAndFiltering widgetStorage = new WidgetStorageWithPagingAndFiltering(spatialIndex);
+        Widget inside = create(widgetStorage, 10, 10, 10, 10);
+        Widget overlapping = create(widgetStorage, 25, 10, 20, 10);
+        Widget touching = create(widgetStorage, 10, -5, 10, 10); // its upper bound is the lower bound of the viewport
+        create(widgetStorage, 10, -6, 10, 10);
+        Widget enclosing = create(widgetStorage, 0, 0, 1000, 1000);
+        create(widgetStorage, 700, 700, 10, 10);
+        IntStream.range(0, 100).forEach(i -> create(widgetStorage, 2000 + i * 10, 2000, 4, 4));
+
+        assertThat(widgetStorage.read(null, null, 0, 20, 20, 0, BoundsMode.INTERSECTING)).extracting(Widget::getId)
+                .containsExactly(inside.getId(), overlapping.getId(), touching.getId(), enclosing.getId());
+        assertThat(widgetStorage.read(1, 2, 0, 20, 20, 0, BoundsMode.INTERSECTING)).extracting(Widget::getId)
+                .containsExactly(overlapping.getId(), touching.getId());
+        assertThat(widgetStorage.read(null, null, 0, 20, 20, 0, BoundsMode.WITHIN)).extracting(Widget::getId)
+                .containsExactly(inside.getId());
+        assertThat(widgetStorage.read(null, null, 2013, 2027, 2000, 2000, BoundsMode.INTERSECTING)).extracting(Widget::getX)
+                .containsExactly(2020);
+    }
+
+    @ParameterizedTest
+    @MethodSource("spatialIndexes")
+    public void shouldFindNearestWidgets(SpatialIndex spatialIndex) {
+        WidgetStorageWithPagingAndFiltering widgetStorage = new WidgetStorageWithPagingAndFiltering(spatialIndex);
+        Random random = new Random(1);
+        List<Widget> widgets = IntStream.range(0, 300)
+                .mapToObj(i -> create(widgetStorage, random.nextInt(2000) - 1000, random.nextInt(2000) - 1000, 2 + random.nextInt(40), 2 + random.nextInt(40)))
+                .collect(Collectors.toList());
+
+        for (int i = 0; i < 20; i++) {
+            int x = random.nextInt(3000) - 1500;
+            int y = random.nextInt(3000) - 1500;
+            int k = 1 + random.nextInt(30);
+            List<Double> expected = widgets.stream().map(widget -> distance(widget, x, y)).sorted().limit(k).collect(Collectors.toList());
+
+            assertThat(widgetStorage.readNearest(x, y, k)).extracting(widget -> distance(widget, x, y)).containsExactly(expected.toArray());
+        }
+        assertThat(widgetStorage.readNearest(0, 0, 500)).hasSize(300);
+    }
+
+    @ParameterizedTest
+    @MethodSource("spatialIndexes")
+    public void shouldFindNearestWidgetOutsideOfSquareAround(SpatialIndex spatialIndex) {
+        WidgetStorageWithPagingAndFiltering widgetStorage = new WidgetStorageWithPagingAndFiltering(spatialIndex);
+        create(widgetStorage, 50, 50, 2, 2); // 49 away on both axes, about 69 in fact
+        Widget nearest = create(widgetStorage, 0, 66, 2, 2); // 65 away
+
+        assertThat(widgetStorage.readNearest(0, 0, 1)).extracting(Widget::getId).containsExactly(nearest.getId());
+    }
+
+    @ParameterizedTest
+    @MethodSource("spatialIndexes")
+    public void shouldFindNearestToWidget(SpatialIndex spatialIndex) {
+        WidgetStorageWithPagingAndFiltering widgetStorage = new WidgetStorageWithPagingAndFiltering(spatialIndex);
+        Widget widget = create(widgetStorage, 0, 0, 10, 10);
+        Widget below = create(widgetStorage, 0, 0, 20, 20);
+        Widget right = create(widgetStorage, 20, 0, 10, 10);
+        Widget far = create(widgetStorage, 0, 100, 10, 10);
+        Widget above = create(widgetStorage, 1, 1, 4, 4);
+        widgetStorage.update(below.getId(), new WidgetUpdateRequest() {{
+            setZ(0);
+        }});
+
+        // the widgets intersecting it are at distance 0, the upper one first
+        assertThat(widgetStorage.readNearest(widget.getId(), 3)).extracting(Widget::getId)
+                .containsExactly(above.getId(), below.getId(), right.getId());
+        assertThat(widgetStorage.readNearest(widget.getId(), 10)).extracting(Widget::getId)
+                .containsExactly(above.getId(), below.getId(), right.getId(), far.getId());
+        assertThat(widgetStorage.readNearest(UUID.randomUUID(), 10)).isNull();
+    }
+
+    @ParameterizedTest
+    @MethodSource("spatialIndexes")
+    public void shouldTakeUpperWidgetsOfTiedForLastPlace(SpatialIndex spatialIndex) {
+        WidgetStorageWithPagingAndFiltering widgetStorage = new WidgetStorageWithPagingAndFiltering(spatialIndex);
+        Widget nearest = create(widgetStorage, 0, 0, 2, 2);
+        // 20 widgets 10 away from the point, on all four sides of it, each one created on top of the ones before
+        int[][] sides = {{11, 0}, {-11, 0}, {0, 11}, {0, -11}};
+        List<Widget> tied = IntStream.range(0, 20).mapToObj(i -> create(widgetStorage, sides[i % 4][0], sides[i % 4][1], 2, 2)).collect(Collectors.toList());
+        List<Widget> covering = IntStream.range(0, 20).mapToObj(i -> create(widgetStorage, 100, 100, 10, 10)).collect(Collectors.toList());
+
+        assertThat(widgetStorage.readNearest(0, 0, 3)).extracting(Widget::getId)
+                .containsExactly(nearest.getId(), tied.get(19).getId(), tied.get(18).getId());
+        assertThat(widgetStorage.readNearest(100, 100, 3)).extracting(Widget::getId)
+                .containsExactly(covering.get(19).getId(), covering.get(18).getId(), covering.get(17).getId());
+        assertThat(widgetStorage.readNearest(nearest.getId(), 2)).extracting(Widget::getId)
+                .containsExactly(tied.get(19).getId(), tied.get(18).getId());
+    }
+
+    @ParameterizedTest
+    @MethodSource("spatialIndexes")
+    public void shouldCountAndSummarizeWidgets(SpatialIndex spatialIndex) {
+        WidgetStorageWithPagingAndFiltering widgetStorage = new WidgetStorageWithPagingAndFiltering(spatialIndex);
+        assertThat(widgetStorage.summarize().getCount()).isEqualTo(0);
+        assertThat(widgetStorage.summarize().getLeftBound()).isNull();
+
+        Random random = new Random(1);
+        List<Widget> widgets = IntStream.range(0, 1000)
+                .mapToObj(i -> create(widgetStorage, random.nextInt(2000) - 1000, random.nextInt(2000) - 1000, 2 + random.nextInt(100), 2 + random.nextInt(100)))
+                .collect(Collectors.toList());
+        for (int i = 0; i < 200; i++) {
+            widgetStorage.update(widgets.get(i).getId(), new WidgetUpdateRequest() {{
+                setX(random.nextInt(2000) - 1000);
+                setWidth(2 + random.nextInt(100));
+            }});
+            widgetStorage.delete(widgets.get(500 + i).getId());
+        }
+        List<Widget> all = widgetStorage.read(Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE);
+
+        for (int i = 0; i < 20; i++) {
+            int leftBound = random.nextInt(2000) - 1000;
+            int lowerBound = random.nextInt(2000) - 1000;
+            int rightBound = leftBound + random.nextInt(2000);
+            int upperBound = lowerBound + random.nextInt(2000);
+            for (BoundsMode boundsMode : BoundsMode.values()) {
+                assertThat(widgetStorage.count(leftBound, rightBound, upperBound, lowerBound, boundsMode))
+                        .isEqualTo(widgetStorage.read(null, null, leftBound, rightBound, upperBound, lowerBound, boundsMode).size());
+            }
+        }
+        WidgetsSummary summary = widgetStorage.summarize();
+        assertThat(summary.getCount()).isEqualTo(800);
+        assertThat(widgetStorage.count(null, null, null, null, BoundsMode.WITHIN)).isEqualTo(800);
+        assertThat(widgetStorage.count(Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, BoundsMode.WITHIN)).isEqualTo(800);
+        assertThat(summary.getLeftBound()).isEqualTo(all.stream().mapToInt(widget -> widget.getX() - widget.getWidth() / 2).min().getAsInt());
+        assertThat(summary.getRightBound()).isEqualTo(all.stream().mapToInt(widget -> widget.getX() + widget.getWidth() / 2).max().getAsInt());
+        assertThat(summary.getUpperBound()).isEqualTo(all.stream().mapToInt(widget -> widget.getY() + widget.getHeight() / 2).max().getAsInt());
+        assertThat(summary.getLowerBound()).isEqualTo(all.stream().mapToInt(widget -> widget.getY() - widget.getHeight() / 2).min().getAsInt());
+        assertThat(summary.getMinZ()).isEqualTo(all.get(0).getZ());
+        assertThat(summary.getMaxZ()).isEqualTo(all.get(all.size() - 1).getZ());
+    }
+
+    @ParameterizedTest
+    @MethodSource("spatialIndexes")
+    public void shouldReadSeveralViewports(SpatialIndex spatialIndex) {
+        WidgetStorageWithPagingAndFiltering widgetStorage = new WidgetStorageWithPagingAndFiltering(spatialIndex);
+        Random random = new Random(1);
+        IntStream.range(0, 1000).forEach(i -> create(widgetStorage, random.nextInt(2000) - 1000, random.nextInt(2000) - 1000, 2 + random.nextInt(100), 2 + random.nextInt(100)));
+        List<Viewport> viewports = IntStream.range(0, 4).mapToObj(i -> new Viewport() {{
+            setLeftBound(-500 + i * 100);
+            setRightBound(i * 100);
+            setUpperBound(300);
+            setLowerBound(-300 + i * 50);
+        }}).collect(Collectors.toList());
+
+        for (BoundsMode boundsMode : BoundsMode.values()) {
+            WidgetsByViewports widgetsByViewports = widgetStorage.readViewports(viewports, boundsMode);
+
+            assertThat(widgetsByViewports.getWidgets()).extracting(Widget::getZ)
+                    .containsExactly(widgetsByViewports.getWidgets().stream().map(Widget::getZ).sorted().distinct().toArray());
+            for (int i = 0; i < viewports.size(); i++) {
+                Viewport viewport = viewports.get(i);
+                assertThat(IntStream.of(widgetsByViewports.getViewports().get(i)).mapToObj(widgetsByViewports.getWidgets()::get).collect(Collectors.toList()))
+                        .extracting(Widget::getId)
+                        .containsExactly(widgetStorage.read(null, null, viewport.getLeftBound(), viewport.getRightBound(), viewport.getUpperBound(), viewport.getLowerBound(), boundsMode)
+                                .stream().map(Widget::getId).toArray());
+            }
+        }
+        assertThatThrownBy(() -> widgetStorage.readViewports(List.of(), BoundsMode.WITHIN)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> widgetStorage.readViewports(Collections.nCopies(17, viewports.get(0)), BoundsMode.WITHIN)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> widgetStorage.readViewports(List.of(new Viewport() {{
+            setLeftBound(1);
+        }}), BoundsMode.WITHIN)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @ParameterizedTest
+    @MethodSource("spatialIndexes")
+    public void shouldHitTopmostWidget(SpatialIndex spatialIndex) {
+        WidgetStorageWithPagingAndFiltering widgetStorage = new WidgetStorageWithPagingAndFiltering(spatialIndex);
+        Widget board = create(widgetStorage, 0, 0, 1000, 1000);
+        Widget small = create(widgetStorage, 10, 10, 10, 10);
+        Widget moved = create(widgetStorage, 300, 300, 10, 10);
+        IntStream.range(0, 100).forEach(i -> create(widgetStorage, 1000 + i * 10, 0, 4, 4));
+
+        assertThat(widgetStorage.readAt(10, 10).getId()).isEqualTo(small.getId());
+        assertThat(widgetStorage.readAt(15, 5).getId()).isEqualTo(small.getId()); // bounds are included
+        assertThat(widgetStorage.readAt(16, 5).getId()).isEqualTo(board.getId());
+        assertThat(widgetStorage.readAt(-500, 500).getId()).isEqualTo(board.getId());
+        assertThat(widgetStorage.readAt(-501, 0)).isNull();
+
+        widgetStorage.update(moved.getId(), new WidgetUpdateRequest() {{
+            setX(12);
+            setY(12);
+        }});
+        widgetStorage.delete(small.getId());
+
+        assertThat(widgetStorage.readAt(300, 300).getId()).isEqualTo(board.getId());
+        assertThat(widgetStorage.readAt(8, 8).getId()).isEqualTo(moved.getId());
+        assertThat(widgetStorage.readAt(1500, 0).getX()).isEqualTo(1500);
+        assertThat(widgetStorage.readAt(1503, 0)).isNull();
+    }
+}
@@ -8,7 +8,9 @@ import com.example.demo.widgetstorages.WidgetStorageWithPagingAndFiltering;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -200,4 +202,62 @@ public class UpdatingTests {
         assertThat(readWidgets.get(0).getWidth()).isEqualTo(4);
         assertThat(readWidgets.get(0).getHeight()).isEqualTo(5);
     }
+
+    @Test
+    public void shouldUpdateBatch() {
+        WidgetStorageHelper.addWidgets(widgetStorage, 1, 3);
+        List<UUID> ids = widgetStorage.read().stream().map(Widget::getId).collect(Collectors.toList());
+        Map<UUID, WidgetUpdateRequest> widgetUpdateRequests = new LinkedHashMap<>();
+        widgetUpdateRequests.put(ids.get(2), new WidgetUpdateRequest() {{
+            setX(10);
+            setZ(1);
+        }});
+        widgetUpdateRequests.put(ids.get(0), new WidgetUpdateRequest() {{
+            setWidth(10);
+        }});
+
+        List<Widget> updatedWidgets = widgetStorage.update(widgetUpdateRequests);
+
+        assertThat(updatedWidgets).extracting(Widget::getId).containsExactly(ids.get(2), ids.get(0));
+        assertThat(updatedWidgets.get(0).getX()).isEqualTo(10);
+        assertThat(updatedWidgets.get(0).getZ()).isEqualTo(1);
+        assertThat(updatedWidgets.get(1).getZ()).isEqualTo(2);
+        assertThat(updatedWidgets.get(1).getWidth()).isEqualTo(10);
+        assertThat(widgetStorage.read()).extracting(Widget::getId).containsExactly(ids.get(2), ids.get(0), ids.get(1));
+    }
+
+    @Test
+    public void shouldNotUpdateAnythingWhenBatchIsRejected() {
+        WidgetStorageHelper.addWidgets(widgetStorage, 1, 2);
+        List<UUID> ids = widgetStorage.read().stream().map(Widget::getId).collect(Collectors.toList());
+        Map<UUID, WidgetUpdateRequest> widgetUpdateRequests = new LinkedHashMap<>();
+        widgetUpdateRequests.put(ids.get(0), new WidgetUpdateRequest() {{
+            setX(10);
+        }});
+        widgetUpdateRequests.put(ids.get(1), new WidgetUpdateRequest() {{
+            setHeight(0);
+        }});
+
+        assertThatThrownBy(() -> widgetStorage.update(widgetUpdateRequests)).isInstanceOf(IllegalArgumentException.class);
+        widgetUpdateRequests.remove(ids.get(1));
+        widgetUpdateRequests.put(UUID.randomUUID(), new WidgetUpdateRequest());
+        assertThat(widgetStorage.update(widgetUpdateRequests)).isNull();
+
+        assertThat(widgetStorage.read(ids.get(0)).getX()).isNotEqualTo(10);
+    }
+
+    @Test
+    public void shouldNotUpdateAnythingWhenBatchHasNullRequest() {
+        WidgetStorageHelper.addWidgets(widgetStorage, 1, 2);
+        List<UUID> ids = widgetStorage.read().stream().map(Widget::getId).collect(Collectors.toList());
+        Map<UUID, WidgetUpdateRequest> widgetUpdateRequests = new LinkedHashMap<>();
+        widgetUpdateRequests.put(ids.get(0), new WidgetUpdateRequest() {{
+            setX(10);
+        }});
+        widgetUpdateRequests.put(ids.get(1), null);
+
+        assertThatThrownBy(() -> widgetStorage.update(widgetUpdateRequests)).isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(widgetStorage.read(ids.get(0)).getX()).isNotEqualTo(10);
+    }
 }
@@ -0,0 +1,67 @@
+package com.example.demo;
+
+import com.example.demo.widgetstorages.UuidIndex;
+import com.example.demo.widgetstorages.UuidMap;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// UuidIndex and UuidMap share the probing, growing and removal of UuidTable, so they are checked together against a HashMap
+public class UuidTableTests {
+    @Test
+    public void shouldMatchHashMap() {
+        UuidIndex index = new UuidIndex();
+        UuidMap<Integer> map = new UuidMap<>();
+        HashMap<UUID, Integer> expected = new HashMap<>();
+        Random random = new Random(1);
+        UUID[] ids = new UUID[3000];
+        for (int i = 0; i < ids.length; i++)
+            ids[i] = i % 2 == 0 ? UUID.randomUUID() : new UUID(0, i); // sequential ids must not pile up
+        for (int i = 0; i < 100_000; i++) {
+            UUID id = ids[random.nextInt(ids.length)];
+            if (random.nextInt(3) == 0) {
+                Integer removed = expected.remove(id);
+                assertThat(index.remove(id)).isEqualTo(removed == null ? UuidIndex.NOT_FOUND : removed);
+                assertThat(map.remove(id)).isEqualTo(removed);
+            } else {
+                Integer previous = expected.put(id, i);
+                assertThat(index.put(id, i)).isEqualTo(previous == null ? UuidIndex.NOT_FOUND : previous);
+                assertThat(map.put(id, i)).isEqualTo(previous);
+            }
+        }
+
+        assertThat(index.size()).isEqualTo(expected.size());
+        assertThat(map.size()).isEqualTo(expected.size());
+        for (UUID id : ids) {
+            assertThat(index.get(id)).isEqualTo(expected.getOrDefault(id, UuidIndex.NOT_FOUND));
+            assertThat(map.get(id)).isEqualTo(expected.get(id));
+        }
+        for (Map.Entry<UUID, Integer> entry : expected.entrySet()) {
+            assertThat(index.get(entry.getKey())).isEqualTo(entry.getValue());
+            assertThat(map.get(entry.getKey())).isEqualTo(entry.getValue());
+        }
+    }
+
+    @Test
+    public void shouldBeEmptyAfterClear() {
+        UuidMap<Integer> map = new UuidMap<>();
+        UUID[] ids = new UUID[100];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = UUID.randomUUID();
+            map.put(ids[i], i);
+        }
+
+        map.clear();
+        map.put(ids[0], -1);
+
+        assertThat(map.size()).isEqualTo(1);
+        assertThat(map.get(ids[0])).isEqualTo(-1);
+        for (int i = 1; i < ids.length; i++)
+            assertThat(map.get(ids[i])).isNull();
+    }
+}
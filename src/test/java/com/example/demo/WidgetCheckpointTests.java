@@ -0,0 +1,141 @@
+package com.example.demo;
+
+import com.example.demo.models.Widget;
+import com.example.demo.models.WidgetCreateRequest;
+import com.example.demo.models.WidgetUpdateRequest;
+import com.example.demo.widgetstorages.RTreeSpatialIndex;
+import com.example.demo.widgetstorages.WidgetCheckpoint;
+import com.example.demo.widgetstorages.WidgetLog;
+import com.example.demo.widgetstorages.WidgetStorageWithPagingAndFiltering;
+import com.example.demo.widgetstorages.ZOrdering;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class WidgetCheckpointTests {
+    @TempDir
+    Path directory;
+
+    private static Widget create(WidgetStorageWithPagingAndFiltering widgetStorage, int x, Integer z) {
+        return widgetStorage.create(new WidgetCreateRequest() {{
+            setX(x);
+            setY(0);
+            setZ(z);
+            setWidth(2);
+            setHeight(2);
+        }});
+    }
+
+    private static List<Widget> readAll(WidgetStorageWithPagingAndFiltering widgetStorage) {
+        return widgetStorage.read(0, 500);
+    }
+
+    @Test
+    public void shouldRestoreCheckpointAndLogWrittenAfterIt() throws IOException {
+        Path logPath = directory.resolve("widgets.log");
+        Path checkpointPath = directory.resolve("widgets.checkpoint");
+        List<Widget> expected;
+        try (WidgetLog widgetLog = new WidgetLog(logPath); WidgetCheckpoint widgetCheckpoint = new WidgetCheckpoint(checkpointPath)) {
+            WidgetStorageWithPagingAndFiltering widgetStorage = new WidgetStorageWithPagingAndFiltering(new RTreeSpatialIndex(), ZOrdering.SHIFTING, widgetCheckpoint, widgetLog);
+            List<Widget> widgets = IntStream.range(0, 200).mapToObj(i -> create(widgetStorage, i * 10, null)).collect(Collectors.toList());
+
+            assertThat(widgetStorage.checkpoint()).isEqualTo(200);
+
+            widgetStorage.delete(widgets.get(0).getId());
+            create(widgetStorage, 5, 0);
+            widgetStorage.update(widgets.get(100).getId(), new WidgetUpdateRequest() {{
+                setX(3);
+            }});
+            expected = readAll(widgetStorage);
+        }
+
+        try (WidgetLog widgetLog = new WidgetLog(logPath); WidgetCheckpoint widgetCheckpoint = new WidgetCheckpoint(checkpointPath)) {
+            WidgetStorageWithPagingAndFiltering widgetStorage = new WidgetStorageWithPagingAndFiltering(new RTreeSpatialIndex(), ZOrdering.SHIFTING, widgetCheckpoint, widgetLog);
+
+            assertThat(readAll(widgetStorage)).extracting(Widget::getId).containsExactly(expected.stream().map(Widget::getId).toArray());
+            assertThat(readAll(widgetStorage)).extracting(Widget::getZ).containsExactly(expected.stream().map(Widget::getZ).toArray());
+            assertThat(widgetStorage.read(0, 20, 1, -1)).extracting(Widget::getX).containsExactly(5, 10, 3);
+            assertThat(widgetStorage.delete(0, 1000, 1, -1)).hasSize(101);
+            assertThat(readAll(widgetStorage)).hasSize(99);
+        }
+    }
+
+    @Test
+    public void shouldBuildCheckpointFromLastCheckpointAndLog() throws IOException {
+        Path logPath = directory.resolve("widgets.log");
+        Path checkpointPath = directory.resolve("widgets.checkpoint");
+        List<Widget> expected;
+        try (WidgetLog widgetLog = new WidgetLog(logPath); WidgetCheckpoint widgetCheckpoint = new WidgetCheckpoint(checkpointPath)) {
+            WidgetStorageWithPagingAndFiltering widgetStorage = new WidgetStorageWithPagingAndFiltering(new RTreeSpatialIndex(), ZOrdering.DENSE, widgetCheckpoint, widgetLog);
+            List<Widget> widgets = IntStream.range(0, 100).mapToObj(i -> create(widgetStorage, i, null)).collect(Collectors.toList());
+            widgetStorage.checkpoint();
+
+            widgetStorage.delete(widgets.get(0).getId());
+            for (int i = 0; i < 80; i++) // more than fit between two order keys, so the widgets get renumbered
+                create(widgetStorage, 1000 + i, 1);
+            widgetStorage.update(widgets.get(50).getId(), new WidgetUpdateRequest() {{
+                setX(-1);
+                setZ(0);
+            }});
+
+            assertThat(widgetStorage.checkpoint()).isEqualTo(179);
+            expected = readAll(widgetStorage);
+        }
+
+        try (WidgetCheckpoint widgetCheckpoint = new WidgetCheckpoint(checkpointPath)) { // the checkpoint alone, without the log
+            WidgetStorageWithPagingAndFiltering widgetStorage = new WidgetStorageWithPagingAndFiltering(new RTreeSpatialIndex(), ZOrdering.DENSE, widgetCheckpoint, null);
+
+            assertThat(readAll(widgetStorage)).extracting(Widget::getId).containsExactly(expected.stream().map(Widget::getId).toArray());
+            assertThat(readAll(widgetStorage)).extracting(Widget::getX).containsExactly(expected.stream().map(Widget::getX).toArray());
+            assertThat(readAll(widgetStorage)).extracting(Widget::getLastModifiedDate).containsExactly(expected.stream().map(Widget::getLastModifiedDate).toArray());
+        }
+    }
+
+    @Test
+    public void shouldRestoreCheckpointWithoutLog() throws IOException {
+        Path checkpointPath = directory.resolve("widgets.checkpoint");
+        List<Widget> expected;
+        try (WidgetCheckpoint widgetCheckpoint = new WidgetCheckpoint(checkpointPath)) {
+            WidgetStorageWithPagingAndFiltering widgetStorage = new WidgetStorageWithPagingAndFiltering(new RTreeSpatialIndex(), ZOrdering.DENSE, widgetCheckpoint, null);
+            create(widgetStorage, 1, null);
+            create(widgetStorage, 2, 0);
+            create(widgetStorage, 3, 1);
+            widgetStorage.checkpoint();
+            expected = readAll(widgetStorage);
+            create(widgetStorage, 4, null); // not in the checkpoint, there is no log
+        }
+
+        try (WidgetCheckpoint widgetCheckpoint = new WidgetCheckpoint(checkpointPath)) {
+            WidgetStorageWithPagingAndFiltering widgetStorage = new WidgetStorageWithPagingAndFiltering(new RTreeSpatialIndex(), ZOrdering.DENSE, widgetCheckpoint, null);
+
+            assertThat(readAll(widgetStorage)).extracting(Widget::getX).containsExactly(2, 3, 1);
+            assertThat(readAll(widgetStorage)).extracting(Widget::getLastModifiedDate).containsExactly(expected.stream().map(Widget::getLastModifiedDate).toArray());
+        }
+    }
+
+    @Test
+    public void shouldRejectCorruptedCheckpoint() throws IOException {
+        Path checkpointPath = directory.resolve("widgets.checkpoint");
+        try (WidgetCheckpoint widgetCheckpoint = new WidgetCheckpoint(checkpointPath)) {
+            WidgetStorageWithPagingAndFiltering widgetStorage = new WidgetStorageWithPagingAndFiltering(new RTreeSpatialIndex(), ZOrdering.SHIFTING, widgetCheckpoint, null);
+            create(widgetStorage, 1, null);
+            widgetStorage.checkpoint();
+        }
+        byte[] bytes = Files.readAllBytes(checkpointPath);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(checkpointPath, bytes);
+
+        assertThatThrownBy(() -> new WidgetStorageWithPagingAndFiltering(new RTreeSpatialIndex(), ZOrdering.SHIFTING, new WidgetCheckpoint(checkpointPath), null))
+                .isInstanceOf(UncheckedIOException.class);
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.demo;
+
+import com.example.demo.models.Widget;
+import com.example.demo.models.WidgetCreateRequest;
+import com.example.demo.models.WidgetUpdateRequest;
+import com.example.demo.widgetstorages.RTreeSpatialIndex;
+import com.example.demo.widgetstorages.WidgetLog;
+import com.example.demo.widgetstorages.WidgetStorageWithPagingAndFiltering;
+import com.example.demo.widgetstorages.ZOrdering;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class WidgetLogTests {
+    @TempDir
+    Path directory;
+
+    private static WidgetCreateRequest createRequest(int x, Integer z) {
+        return new WidgetCreateRequest() {{
+            setX(x);
+            setY(0);
+            setZ(z);
+            setWidth(2);
+            setHeight(2);
+        }};
+    }
+
+    private static void assertSameWidgets(List<Widget> restored, List<Widget> expected) {
+        assertThat(restored).hasSize(expected.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(restored.get(i).getId()).isEqualTo(expected.get(i).getId());
+            assertThat(restored.get(i).getX()).isEqualTo(expected.get(i).getX());
+            assertThat(restored.get(i).getZ()).isEqualTo(expected.get(i).getZ());
+            assertThat(restored.get(i).getLastModifiedDate().toInstant()).isEqualTo(expected.get(i).getLastModifiedDate().toInstant());
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(WidgetLog.Durability.class)
+    public void shouldRestoreWidgets(WidgetLog.Durability durability) throws IOException {
+        Path path = directory.resolve("widgets.log");
+        List<Widget> expected;
+        try (WidgetLog widgetLog = new WidgetLog(path, durability, 1, 4)) {
+            WidgetStorageWithPagingAndFiltering widgetStorage = new WidgetStorageWithPagingAndFiltering(new RTreeSpatialIndex(), ZOrdering.SHIFTING, widgetLog);
+            Widget first = widgetStorage.create(createRequest(1, 1));
+            widgetStorage.create(createRequest(2, 2));
+            widgetStorage.create(createRequest(3, 1)); // shifts both widgets above
+            Widget deleted = widgetStorage.create(createRequest(4, null));
+            widgetStorage.update(first.getId(), new WidgetUpdateRequest() {{
+                setX(10);
+            }});
+            widgetStorage.delete(deleted.getId());
+            expected = widgetStorage.read();
+        }
+
+        try (WidgetLog widgetLog = new WidgetLog(path, durability, 1, 4)) {
+            WidgetStorageWithPagingAndFiltering widgetStorage = new WidgetStorageWithPagingAndFiltering(new RTreeSpatialIndex(), ZOrdering.SHIFTING, widgetLog);
+
+            assertSameWidgets(widgetStorage.read(), expected);
+            assertThat(widgetStorage.read(9, 11, 1, -1)).extracting(Widget::getX).containsExactly(10);
+            assertThat(widgetStorage.create(createRequest(5, 2)).getZ()).isEqualTo(2);
+            assertThat(widgetStorage.read()).extracting(Widget::getZ).containsExactly(1, 2, 3, 4);
+        }
+    }
+
+    @Test
+    public void shouldIgnoreTornTail() throws IOException {
+        Path path = directory.resolve("widgets.log");
+        List<Widget> expected;
+        try (WidgetLog widgetLog = new WidgetLog(path)) {
+            WidgetStorageWithPagingAndFiltering widgetStorage = new WidgetStorageWithPagingAndFiltering(new RTreeSpatialIndex(), ZOrdering.SHIFTING, widgetLog);
+            widgetStorage.create(createRequest(1, null));
+            widgetStorage.create(createRequest(2, null));
+            expected = widgetStorage.read();
+        }
+        Files.write(path, new byte[]{0, 0, 0, 100, 1, 2, 3, 4, 5, 6}, StandardOpenOption.APPEND);
+
+        try (WidgetLog widgetLog = new WidgetLog(path)) {
+            WidgetStorageWithPagingAndFiltering widgetStorage = new WidgetStorageWithPagingAndFiltering(new RTreeSpatialIndex(), ZOrdering.SHIFTING, widgetLog);
+            assertSameWidgets(widgetStorage.read(), expected);
+            widgetStorage.create(createRequest(3, null));
+        }
+
+        try (WidgetLog widgetLog = new WidgetLog(path)) {
+            WidgetStorageWithPagingAndFiltering widgetStorage = new WidgetStorageWithPagingAndFiltering(new RTreeSpatialIndex(), ZOrdering.SHIFTING, widgetLog);
+            assertThat(widgetStorage.read()).extracting(Widget::getX).containsExactly(1, 2, 3);
+        }
+    }
+
+    @Test
+    public void shouldRestoreDenseOrder() throws IOException {
+        Path path = directory.resolve("widgets.log");
+        List<Widget> expected;
+        try (WidgetLog widgetLog = new WidgetLog(path)) {
+            WidgetStorageWithPagingAndFiltering widgetStorage = new WidgetStorageWithPagingAndFiltering(new RTreeSpatialIndex(), ZOrdering.DENSE, widgetLog);
+            widgetStorage.create(createRequest(0, null));
+            widgetStorage.create(createRequest(1, 0));
+            for (int i = 0; i < 40; i++) // uses the gaps up, so the keys get renumbered
+                widgetStorage.create(createRequest(i + 2, 1));
+            expected = widgetStorage.read(0, 500);
+        }
+
+        try (WidgetLog widgetLog = new WidgetLog(path)) {
+            WidgetStorageWithPagingAndFiltering widgetStorage = new WidgetStorageWithPagingAndFiltering(new RTreeSpatialIndex(), ZOrdering.DENSE, widgetLog);
+            assertSameWidgets(widgetStorage.read(0, 500), expected);
+        }
+    }
+
+    @Test
+    public void shouldPutOnTopOfRestoredKeys() throws IOException {
+        Path path = directory.resolve("widgets.log");
+        ByteBuffer record = ByteBuffer.allocate(1 + 16 + 5 * 4 + 8 + 8 + 4) // a put of a widget whose order key leaves no gap above it
+                .put((byte) 1).putLong(0).putLong(1)
+                .putInt(0).putInt(0).putInt(0).putInt(2).putInt(2)
+                .putLong(Long.MAX_VALUE - 1)
+                .putLong(0).putInt(0);
+        CRC32 crc = new CRC32();
+        crc.update(record.array());
+        Files.write(path, ByteBuffer.allocate(8 + record.capacity()).putInt(record.capacity()).putInt((int) crc.getValue()).put(record.array()).array());
+
+        try (WidgetLog widgetLog = new WidgetLog(path)) {
+            WidgetStorageWithPagingAndFiltering widgetStorage = new WidgetStorageWithPagingAndFiltering(new RTreeSpatialIndex(), ZOrdering.DENSE, widgetLog);
+            Widget top = widgetStorage.create(createRequest(1, null));
+            Widget higher = widgetStorage.create(createRequest(2, null));
+
+            assertThat(top.getZ()).isEqualTo(1);
+            assertThat(higher.getZ()).isEqualTo(2);
+            assertThat(widgetStorage.read()).extracting(Widget::getId).containsExactly(new UUID(0, 1), top.getId(), higher.getId());
+        }
+    }
+
+    @Test
+    public void shouldRejectChangesOnceLogIsClosed() throws IOException {
+        Path path = directory.resolve("widgets.log");
+        WidgetLog widgetLog = new WidgetLog(path);
+        WidgetStorageWithPagingAndFiltering widgetStorage = new WidgetStorageWithPagingAndFiltering(new RTreeSpatialIndex(), ZOrdering.SHIFTING, widgetLog);
+        Widget widget = widgetStorage.create(createRequest(1, null));
+        widgetLog.close();
+
+        // the second call would block forever if the first one had kept the write lock
+        assertThatThrownBy(() -> widgetStorage.create(createRequest(2, null))).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> widgetStorage.create(createRequest(3, null))).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> widgetStorage.delete(widget.getId())).isInstanceOf(IllegalStateException.class);
+
+        assertThat(widgetStorage.read()).extracting(Widget::getId).containsExactly(widget.getId());
+        try (WidgetLog reopenedLog = new WidgetLog(path)) {
+            assertThat(new WidgetStorageWithPagingAndFiltering(new RTreeSpatialIndex(), ZOrdering.SHIFTING, reopenedLog).read())
+                    .extracting(Widget::getId).containsExactly(widget.getId());
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.demo;
+
+import com.example.demo.models.Widget;
+import com.example.demo.models.WidgetCreateRequest;
+import com.example.demo.models.WidgetUpdateRequest;
+import com.example.demo.widgetstorages.WidgetMutationPipeline;
+import com.example.demo.widgetstorages.WidgetStorageWithPagingAndFiltering;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class WidgetMutationPipelineTests {
+    private WidgetStorageWithPagingAndFiltering widgetStorage;
+    private WidgetMutationPipeline pipeline;
+
+    @BeforeEach
+    public void setUp() {
+        widgetStorage = new WidgetStorageWithPagingAndFiltering();
+        pipeline = new WidgetMutationPipeline(widgetStorage, 16, 4);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        pipeline.close();
+    }
+
+    private static WidgetCreateRequest createRequest(Integer z) {
+        return new WidgetCreateRequest() {{
+            setX(1);
+            setY(1);
+            setZ(z);
+            setWidth(1);
+            setHeight(1);
+        }};
+    }
+
+    @Test
+    public void shouldApplyMutationsInOrder() throws Exception {
+        Widget first = pipeline.create(createRequest(1)).get();
+        CompletableFuture<Widget> second = pipeline.create(createRequest(1));
+        CompletableFuture<Widget> updated = pipeline.update(first.getId(), new WidgetUpdateRequest() {{
+            setX(10);
+        }});
+        CompletableFuture<Widget> deleted = pipeline.delete(second.get().getId());
+
+        assertThat(updated.get().getZ()).isEqualTo(2);
+        assertThat(updated.get().getX()).isEqualTo(10);
+        assertThat(deleted.get().getZ()).isEqualTo(1);
+        assertThat(widgetStorage.read()).extracting(Widget::getId).containsExactly(first.getId());
+    }
+
+    @Test
+    public void shouldFailOnlyRejectedMutation() throws Exception {
+        Widget widget = pipeline.create(createRequest(null)).get();
+        CompletableFuture<Widget> rejected = pipeline.update(widget.getId(), new WidgetUpdateRequest() {{
+            setWidth(-1);
+        }});
+        CompletableFuture<Widget> accepted = pipeline.update(widget.getId(), new WidgetUpdateRequest() {{
+            setWidth(5);
+        }});
+
+        assertThatThrownBy(rejected::get).isInstanceOf(ExecutionException.class).hasCauseInstanceOf(IllegalArgumentException.class);
+        assertThat(accepted.get().getWidth()).isEqualTo(5);
+    }
+
+    @Test
+    public void shouldApplyConcurrentMutations() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<CompletableFuture<Widget>> widgets = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                widgets.addAll(executor.submit(() -> IntStream.range(0, 100)
+                        .mapToObj(j -> pipeline.create(createRequest(0)))
+                        .collect(Collectors.toList())).get());
+            }
+            for (CompletableFuture<Widget> widget : widgets)
+                widget.get();
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(widgetStorage.read(0, 500)).extracting(Widget::getZ).containsExactly(IntStream.range(0, 500).boxed().toArray());
+        assertThat(widgetStorage.read(500, 500)).hasSize(300);
+    }
+
+    @Test
+    public void shouldApplySubmittedMutationsOnClose() throws Exception {
+        List<CompletableFuture<Widget>> widgets = IntStream.range(0, 50)
+                .mapToObj(i -> pipeline.create(createRequest(null)))
+                .collect(Collectors.toList());
+
+        pipeline.close();
+
+        assertThat(widgets.get(49).isDone()).isTrue();
+        assertThat(widgetStorage.read(0, 500)).hasSize(50);
+        assertThatThrownBy(() -> pipeline.create(createRequest(null))).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void shouldCloseWhenInterrupted() {
+        List<CompletableFuture<Widget>> widgets = IntStream.range(0, 50)
+                .mapToObj(i -> pipeline.create(createRequest(null)))
+                .collect(Collectors.toList());
+
+        Thread.currentThread().interrupt();
+        try {
+            pipeline.close();
+            assertThat(Thread.currentThread().isInterrupted()).isTrue();
+        } finally {
+            Thread.interrupted();
+        }
+
+        assertThat(widgets.get(49).isDone()).isTrue();
+        assertThat(widgetStorage.read(0, 500)).hasSize(50);
+    }
+}
@@ -5,7 +5,9 @@ import static org.assertj.core.api.Assertions.*;
 import java.net.URL;
 import java.time.ZonedDateTime;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -85,6 +87,50 @@ public class WidgetsControllerIntegrationTests {
         assertThat(widget.getLastModifiedDate()).isBetween(before, after);
     }
 
+    @Test
+    public void shouldCreateBatch() {
+        ResponseEntity<Widget[]> response = template.postForEntity(base.toString() + "/batch", List.of(
+                new Object() {
+                    public final int x = 1;
+                    public final int y = 2;
+                    public final int width = 4;
+                    public final int height = 5;
+                },
+                new Object() {
+                    public final int x = 6;
+                    public final int y = 7;
+                    public final int width = 8;
+                    public final int height = 9;
+                }), Widget[].class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        Widget[] widgets = response.getBody();
+        assertThat(widgets).hasSize(2);
+        assertThat(widgets[0].getX()).isEqualTo(1);
+        assertThat(widgets[1].getX()).isEqualTo(6);
+        assertThat(widgets[1].getZ()).isEqualTo(widgets[0].getZ() + 1);
+    }
+
+    @Test
+    public void shouldReturn400WhenCreatingIllegalBatch() {
+        ResponseEntity<String> response = template.postForEntity(base.toString() + "/batch", List.of(
+                new Object() {
+                    public final int x = 1;
+                    public final int y = 2;
+                    public final int width = 0;
+                    public final int height = 5;
+                }), String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    public void shouldReturn400WhenBatchHasNullRequest() {
+        ResponseEntity<String> response = template.postForEntity(base.toString() + "/batch", Arrays.asList((Object) null), String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
     @Test
     public void shouldReadOne() {
         Widget createdWidget = template.postForEntity(base.toString(), new Object() {
@@ -167,6 +213,50 @@ public class WidgetsControllerIntegrationTests {
         assertThat(updatedWidget.getLastModifiedDate()).isBetween(before, after);
     }
 
+    @Test
+    public void shouldUpdateBatch() {
+        Widget firstWidget = template.postForEntity(base.toString(), new Object() {
+            public final int x = 1;
+            public final int y = 2;
+            public final int width = 4;
+            public final int height = 5;
+        }, Widget.class).getBody();
+        Widget secondWidget = template.postForEntity(base.toString(), new Object() {
+            public final int x = 1;
+            public final int y = 2;
+            public final int width = 4;
+            public final int height = 5;
+        }, Widget.class).getBody();
+
+        ResponseEntity<Widget[]> response = template.exchange(base.toString() + "/batch", HttpMethod.PATCH, new HttpEntity<>(Map.of(
+                firstWidget.getId(), new Object() {
+                    public final int x = 10;
+                },
+                secondWidget.getId(), new Object() {
+                    public final int y = 20;
+                })), Widget[].class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).hasSize(2);
+        assertThat(template.getForObject(base.toString() + "/" + firstWidget.getId(), Widget.class).getX()).isEqualTo(10);
+        assertThat(template.getForObject(base.toString() + "/" + secondWidget.getId(), Widget.class).getY()).isEqualTo(20);
+    }
+
+    @Test
+    public void shouldReturn400WhenUpdatingBatchWithNullRequest() {
+        Widget widget = template.postForEntity(base.toString(), new Object() {
+            public final int x = 1;
+            public final int y = 2;
+            public final int width = 4;
+            public final int height = 5;
+        }, Widget.class).getBody();
+
+        ResponseEntity<String> response = template.exchange(base.toString() + "/batch", HttpMethod.PATCH,
+                new HttpEntity<>(Collections.singletonMap(widget.getId(), null)), String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
     @Test
     public void shouldReturn404WhenUpdatingNotExisting() {
         template.postForEntity(base.toString(), new Object() {
@@ -205,6 +295,40 @@ public class WidgetsControllerIntegrationTests {
         assertThat(foundWidgets).noneMatch(widget -> widget.getId().equals(createdWidget.getId()));
     }
 
+    @Test
+    public void shouldDeleteInsideBounds() {
+        Widget createdWidget = template.postForEntity(base.toString(), new Object() {
+            public final int x = -100_000;
+            public final int y = -100_000;
+            public final int width = 4;
+            public final int height = 4;
+        }, Widget.class).getBody();
+
+        ResponseEntity<Widget[]> response = template.exchange(base.toString() + "?leftBound=-100010&rightBound=-99990&upperBound=-99990&lowerBound=-100010",
+                HttpMethod.DELETE, null, Widget[].class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).hasSize(1);
+        assertThat(template.getForEntity(base.toString() + "/" + createdWidget.getId(), Widget.class).getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    public void shouldDeleteByIds() {
+        Widget createdWidget = template.postForEntity(base.toString(), new Object() {
+            public final int x = 1;
+            public final int y = 2;
+            public final int width = 4;
+            public final int height = 5;
+        }, Widget.class).getBody();
+
+        ResponseEntity<Widget[]> response = template.exchange(base.toString() + "?ids=" + createdWidget.getId() + "," + UUID.randomUUID(),
+                HttpMethod.DELETE, null, Widget[].class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).hasSize(1);
+        assertThat(template.getForEntity(base.toString() + "/" + createdWidget.getId(), Widget.class).getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
     @Test
     public void shouldReturn404WhenDeletingNotExisting() {
         template.postForEntity(base.toString(), new Object() {
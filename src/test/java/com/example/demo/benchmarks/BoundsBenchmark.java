@@ -0,0 +1,82 @@
+package com.example.demo.benchmarks;
+
+import com.example.demo.models.WidgetCreateRequest;
+import com.example.demo.widgetstorages.GridSpatialIndex;
+import com.example.demo.widgetstorages.LooseQuadTreeSpatialIndex;
+import com.example.demo.widgetstorages.MultiTreeMapSpatialIndex;
+import com.example.demo.widgetstorages.RTreeSpatialIndex;
+import com.example.demo.widgetstorages.SpatialIndex;
+import com.example.demo.widgetstorages.WidgetStorageWithPagingAndFiltering;
+
+import java.util.Random;
+
+// creating widgets and filtering them by bounds in WidgetStorageWithPagingAndFiltering, the numbers of README.md;
+// not a test, run it with: java -Xmx3g -cp target/classes:target/test-classes com.example.demo.benchmarks.BoundsBenchmark [widgets] [index] [board]
+// where index is rtree, grid, quadtree or multitreemap and board is uniform (the default) or clustered;
+// without an index it uses only the default constructor, create and read with bounds, so it can be run against older versions of the storage as well
+public class BoundsBenchmark {
+    private static final int BOARD_SIZE = 100_000;
+    private static final int[] VIEWPORT_SIZES = {1_000, 10_000};
+    private static final int CLUSTERS = 20;
+    private static final double CLUSTER_SIGMA = 1_500;
+
+    private static SpatialIndex newSpatialIndex(String name) {
+        switch (name) {
+            case "rtree":
+                return new RTreeSpatialIndex();
+            case "grid":
+                return new GridSpatialIndex();
+            case "quadtree":
+                return new LooseQuadTreeSpatialIndex();
+            case "multitreemap":
+                return new MultiTreeMapSpatialIndex();
+            default:
+                throw new IllegalArgumentException("unknown index " + name);
+        }
+    }
+
+    public static void main(String[] args) {
+        int number = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        String index = args.length > 1 ? args[1] : "default index";
+        boolean clustered = args.length > 2 && args[2].equals("clustered");
+        Random random = new Random(1);
+        WidgetStorageWithPagingAndFiltering widgetStorage = args.length > 1
+                ? new WidgetStorageWithPagingAndFiltering(newSpatialIndex(index))
+                : new WidgetStorageWithPagingAndFiltering();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < number; i++) {
+            WidgetCreateRequest widgetCreateRequest = new WidgetCreateRequest();
+            if (clustered) { // 5 x 4 clusters evenly spread over the board
+                int cluster = random.nextInt(CLUSTERS);
+                widgetCreateRequest.setX(10_000 + 20_000 * (cluster % 5) + (int) (random.nextGaussian() * CLUSTER_SIGMA));
+                widgetCreateRequest.setY(10_000 + 20_000 * (cluster / 5) + (int) (random.nextGaussian() * CLUSTER_SIGMA));
+            } else {
+                widgetCreateRequest.setX(random.nextInt(BOARD_SIZE));
+                widgetCreateRequest.setY(random.nextInt(BOARD_SIZE));
+            }
+            widgetCreateRequest.setWidth(10 + random.nextInt(190));
+            widgetCreateRequest.setHeight(10 + random.nextInt(190));
+            widgetStorage.create(widgetCreateRequest);
+        }
+        System.out.printf("%s, %s board, %d widgets, create: %.1f us%n", index, clustered ? "clustered" : "uniform", number, (System.nanoTime() - start) / 1e3 / number);
+
+        for (int size : VIEWPORT_SIZES) {
+            int queries = size <= 1_000 ? 2_000 : 200;
+            long time = 0;
+            long found = 0;
+            for (int round = 0; round < 2; round++) { // the first round is a warm-up
+                time = 0;
+                found = 0;
+                for (int i = 0; i < queries; i++) {
+                    int leftBound = random.nextInt(BOARD_SIZE - size);
+                    int lowerBound = random.nextInt(BOARD_SIZE - size);
+                    long queryStart = System.nanoTime();
+                    found += widgetStorage.read(leftBound, leftBound + size, lowerBound + size, lowerBound).size();
+                    time += System.nanoTime() - queryStart;
+                }
+            }
+            System.out.printf("viewport %d x %d: %.0f us (~%d widgets)%n", size, size, time / 1e3 / queries, found / queries);
+        }
+    }
+}
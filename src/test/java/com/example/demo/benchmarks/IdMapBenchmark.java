@@ -0,0 +1,75 @@
+package com.example.demo.benchmarks;
+
+import com.example.demo.widgetstorages.UuidMap;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.UUID;
+
+// put, get and remove of random ids in UuidMap vs HashMap<UUID, V>, and the heap taken per entry, the numbers of README.md;
+// not a test, run it with: java -Xmx3g -cp target/classes:target/test-classes com.example.demo.benchmarks.IdMapBenchmark [ids] [map]
+// where map is uuidmap (the default) or hashmap; lookups and removals use new UUID objects, the way ids come from requests
+public class IdMapBenchmark {
+    private static final int ROUNDS = 3;
+
+    private static long usedMemory() {
+        System.gc();
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    public static void main(String[] args) {
+        int number = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        boolean hashMap = args.length > 1 && args[1].equals("hashmap");
+        Random random = new Random(1);
+        UUID[] ids = new UUID[number];
+        UUID[] lookedUpIds = new UUID[number];
+        for (int i = 0; i < number; i++) {
+            ids[i] = new UUID(random.nextLong(), random.nextLong());
+            lookedUpIds[i] = new UUID(ids[i].getMostSignificantBits(), ids[i].getLeastSignificantBits());
+        }
+        Collections.shuffle(Arrays.asList(lookedUpIds), random);
+        Object value = new Object();
+        long emptyMemory = usedMemory();
+
+        for (int round = 0; round < ROUNDS; round++) { // only the last round is printed, the ones before are a warm-up
+            HashMap<UUID, Object> objectsByHashMap = hashMap ? new HashMap<>() : null;
+            UuidMap<Object> objectsByUuidMap = hashMap ? null : new UuidMap<>();
+            int found = 0;
+
+            long start = System.nanoTime();
+            for (UUID id : ids) {
+                if (hashMap)
+                    objectsByHashMap.put(id, value);
+                else
+                    objectsByUuidMap.put(id, value);
+            }
+            long putTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (UUID id : lookedUpIds) {
+                if ((hashMap ? objectsByHashMap.get(id) : objectsByUuidMap.get(id)) != null)
+                    found++;
+            }
+            long getTime = System.nanoTime() - start;
+
+            long memory = usedMemory() - emptyMemory;
+
+            start = System.nanoTime();
+            for (UUID id : lookedUpIds) {
+                if (hashMap)
+                    objectsByHashMap.remove(id);
+                else
+                    objectsByUuidMap.remove(id);
+            }
+            long removeTime = System.nanoTime() - start;
+
+            if (round == ROUNDS - 1)
+                System.out.printf("%s, %d ids: put %.0f ns, get %.0f ns, remove %.0f ns, %d bytes per entry (found %d)%n", hashMap ? "HashMap" : "UuidMap", number,
+                        (double) putTime / number, (double) getTime / number, (double) removeTime / number, memory / number, found);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.demo.benchmarks;
+
+import com.example.demo.widgetstorages.SpatialIndex;
+import com.example.demo.widgetstorages.StoredWidget;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.UUID;
+
+// a SpatialIndex on its own, time and heap allocated per operation, the numbers of README.md;
+// not a test, run it with: java -Xmx3g -cp target/classes:target/test-classes com.example.demo.benchmarks.SpatialIndexBenchmark [mode] [widgets] [index]
+// where mode is
+//   operations (the default): puts small widgets (1..20), queries a wide and a narrow viewport, removes half of the widgets; the last of three rounds is printed
+//   viewports: puts widgets of 10..200 and queries viewports from 1 000 x 1 000 to the whole board, after a warm-up round
+// and index is the simple name of a SpatialIndex class of com.example.demo.widgetstorages, MultiTreeMapSpatialIndex by default;
+// the class is found by name, so the benchmark can be run against older versions of an index as well
+public class SpatialIndexBenchmark {
+    private static final int BOARD_SIZE = 100_000;
+    private static final int[] VIEWPORT_SIZES = {1_000, 10_000, 50_000, 100_000};
+
+    private static final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static SpatialIndex newSpatialIndex(String name) throws ReflectiveOperationException {
+        return (SpatialIndex) Class.forName("com.example.demo.widgetstorages." + name).getDeclaredConstructor().newInstance();
+    }
+
+    private static StoredWidget[] newWidgets(Random random, int number, int minSize, int maxSize) {
+        StoredWidget[] widgets = new StoredWidget[number];
+        for (int i = 0; i < number; i++)
+            widgets[i] = new StoredWidget(UUID.randomUUID(), random.nextInt(BOARD_SIZE), random.nextInt(BOARD_SIZE), i,
+                    minSize + random.nextInt(maxSize - minSize + 1), minSize + random.nextInt(maxSize - minSize + 1));
+        return widgets;
+    }
+
+    private static long allocatedBytes() {
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static void measureOperations(String index, int number) throws ReflectiveOperationException {
+        Random random = new Random(1);
+        StoredWidget[] widgets = newWidgets(random, number, 1, 20);
+        int wideQueries = 20;
+        int narrowQueries = 200;
+        for (int round = 0; round < 3; round++) {
+            SpatialIndex spatialIndex = newSpatialIndex(index);
+
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            for (StoredWidget widget : widgets)
+                spatialIndex.put(widget);
+            long putTime = System.nanoTime() - start;
+            long putBytes = allocatedBytes() - bytes;
+
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            for (int i = 0; i < wideQueries; i++) { // half of the board wide, 60% of it high
+                int leftBound = random.nextInt(BOARD_SIZE / 2);
+                spatialIndex.within(leftBound, leftBound + BOARD_SIZE / 2, 80_000, 20_000);
+            }
+            long wideTime = System.nanoTime() - start;
+            long wideBytes = allocatedBytes() - bytes;
+
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            for (int i = 0; i < narrowQueries; i++) { // 1 000 x 1 000
+                int leftBound = random.nextInt(BOARD_SIZE - 1_000);
+                spatialIndex.within(leftBound, leftBound + 1_000, 51_000, 50_000);
+            }
+            long narrowTime = System.nanoTime() - start;
+            long narrowBytes = allocatedBytes() - bytes;
+
+            int removed = number / 2;
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            for (int i = 0; i < removed; i++)
+                spatialIndex.remove(widgets[i]);
+            long removeTime = System.nanoTime() - start;
+            long removeBytes = allocatedBytes() - bytes;
+
+            if (round == 2) {
+                System.out.printf("%s, %d widgets%n", index, number);
+                System.out.printf("put: %.1f us, %d B%n", putTime / 1e3 / number, putBytes / number);
+                System.out.printf("wide within: %.1f ms, %.0f KB%n", wideTime / 1e6 / wideQueries, wideBytes / 1024.0 / wideQueries);
+                System.out.printf("narrow within: %.1f ms, %.0f KB%n", narrowTime / 1e6 / narrowQueries, narrowBytes / 1024.0 / narrowQueries);
+                System.out.printf("remove: %.1f us, %d B%n", removeTime / 1e3 / removed, removeBytes / removed);
+            }
+        }
+    }
+
+    private static void measureViewports(String index, int number) throws ReflectiveOperationException {
+        Random random = new Random(1);
+        StoredWidget[] widgets = newWidgets(random, number, 10, 200);
+        SpatialIndex spatialIndex = newSpatialIndex(index);
+        long start = System.nanoTime();
+        for (StoredWidget widget : widgets)
+            spatialIndex.put(widget);
+        System.out.printf("%s, %d widgets, put: %.1f us%n", index, number, (System.nanoTime() - start) / 1e3 / number);
+
+        for (int size : VIEWPORT_SIZES) {
+            int queries = size >= 50_000 ? 10 : 30;
+            for (int round = 0; round < 2; round++) { // the first round is a warm-up
+                long found = 0;
+                long bytes = allocatedBytes();
+                start = System.nanoTime();
+                for (int i = 0; i < queries; i++) {
+                    int leftBound = random.nextInt(BOARD_SIZE - size + 1);
+                    int lowerBound = random.nextInt(BOARD_SIZE - size + 1);
+                    found += spatialIndex.within(leftBound, leftBound + size, lowerBound + size, lowerBound).size();
+                }
+                long time = System.nanoTime() - start;
+                bytes = allocatedBytes() - bytes;
+                if (round == 1)
+                    System.out.printf("viewport %d x %d: %.1f ms, %.0f KB (~%d widgets)%n", size, size,
+                            time / 1e6 / queries, bytes / 1024.0 / queries, found / queries);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws ReflectiveOperationException {
+        String mode = args.length > 0 ? args[0] : "operations";
+        String index = args.length > 2 ? args[2] : "MultiTreeMapSpatialIndex";
+        switch (mode) {
+            case "operations":
+                measureOperations(index, args.length > 1 ? Integer.parseInt(args[1]) : 200_000);
+                break;
+            case "viewports":
+                measureViewports(index, args.length > 1 ? Integer.parseInt(args[1]) : 500_000);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown mode " + mode);
+        }
+    }
+}